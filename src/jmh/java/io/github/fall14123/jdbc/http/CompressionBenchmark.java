@@ -0,0 +1,129 @@
+package io.github.fall14123.jdbc.http;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and end-to-end time for a 1M-row NDJSON (Flock) result per compression setting.
+ * The stub server pre-compresses the body once, so only transfer and client-side inflate/decode are timed.
+ * bandwidthMbps throttles the stub's writes to emulate a real link; 0 means unthrottled loopback.
+ * The wireBytes counter sums the response bytes received over the measurement iterations, one query each.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CompressionBenchmark {
+    private static final int ROWS = 1_000_000;
+    private static final int CHUNK = 64 * 1024;
+
+    @State(Scope.Benchmark)
+    public static class Endpoint {
+        @Param({"none", "gzip", "deflate"})
+        public String compression;
+
+        @Param({"0", "100"})
+        public int bandwidthMbps;
+
+        StubHttpServer server;
+        Connection connection;
+        byte[] plain;
+        byte[] gzip;
+        byte[] deflate;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            StringBuilder sb = new StringBuilder(ROWS * 64);
+            sb.append("{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"BIGINT\"},{\"name\":\"category\",\"type\":\"VARCHAR\"},")
+                .append("{\"name\":\"amount\",\"type\":\"DOUBLE\"},{\"name\":\"active\",\"type\":\"BOOLEAN\"}]}}\n");
+            for (int i = 0; i < ROWS; i++) {
+                sb.append("{\"id\":").append(i).append(",\"category\":\"category-").append(i % 50)
+                    .append("\",\"amount\":").append(i * 0.25).append(",\"active\":").append(i % 3 == 0).append("}\n");
+            }
+            plain = sb.toString().getBytes(StandardCharsets.UTF_8);
+            gzip = compress(new ByteArrayOutputStream(), true);
+            deflate = compress(new ByteArrayOutputStream(), false);
+
+            server = new StubHttpServer(exchange -> {
+                StubHttpServer.readBody(exchange);
+                String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = plain;
+                if (accept != null && accept.startsWith("gzip")) {
+                    body = gzip;
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                } else if (accept != null && accept.startsWith("deflate")) {
+                    body = deflate;
+                    exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    write(os, body, bandwidthMbps);
+                }
+            });
+            Properties props = new Properties();
+            props.setProperty("schema", "flock");
+            props.setProperty("compression", compression);
+            props.setProperty("logLevel", "ERROR");
+            connection = DriverManager.getConnection(server.jdbcUrl(), props);
+        }
+
+        private byte[] compress(ByteArrayOutputStream out, boolean gzip) throws IOException {
+            try (OutputStream encoder = gzip ? new GZIPOutputStream(out, CHUNK) : new DeflaterOutputStream(out)) {
+                encoder.write(plain);
+            }
+            return out.toByteArray();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws SQLException {
+            connection.close();
+            server.close();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Wire {
+        public long wireBytes;
+    }
+
+    @Benchmark
+    public long query1mRows(Endpoint endpoint, Wire wire) throws SQLException {
+        TransportStats stats = ((HttpJdbcConnection) endpoint.connection).getTransportStats();
+        long before = stats.getBytesReceived();
+        long sum = 0;
+        try (Statement stmt = endpoint.connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM events")) {
+            while (rs.next()) {
+                sum += rs.getLong(1) + rs.getString(2).length() + (long) rs.getDouble(3) + (rs.getBoolean(4) ? 1 : 0);
+            }
+        }
+        wire.wireBytes += stats.getBytesReceived() - before;
+        return sum;
+    }
+
+    // Writes in chunks, pacing them to the requested link speed
+    private static void write(OutputStream os, byte[] body, int bandwidthMbps) throws IOException {
+        long nanosPerByte = bandwidthMbps > 0 ? 8_000L / bandwidthMbps : 0;
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += CHUNK) {
+            int length = Math.min(CHUNK, body.length - offset);
+            os.write(body, offset, length);
+            if (nanosPerByte > 0) {
+                long due = start + (offset + length) * nanosPerByte;
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+        }
+    }
+}
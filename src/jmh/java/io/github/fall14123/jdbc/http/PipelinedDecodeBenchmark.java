@@ -0,0 +1,87 @@
+package io.github.fall14123.jdbc.http;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time to read 10M NDJSON (Flock) rows, decoded on the calling thread vs pipelined
+ * (read-ahead and decode stages on background threads). The stub server streams a pre-encoded block of
+ * rows over and over, so it costs little more than the copy. workTokens adds application work per row,
+ * which is what the pipeline overlaps with reading and decoding; it needs spare cores to pay off.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class PipelinedDecodeBenchmark {
+    private static final int BLOCK_ROWS = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class Endpoint {
+        @Param({"false", "true"})
+        public boolean pipelinedDecode;
+
+        @Param({"10000000"})
+        public int rows;
+
+        @Param({"0", "20"})
+        public int workTokens;
+
+        StubHttpServer server;
+        Connection connection;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            byte[] meta = ("{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"BIGINT\"},{\"name\":\"category\",\"type\":\"VARCHAR\"},"
+                + "{\"name\":\"amount\",\"type\":\"DOUBLE\"},{\"name\":\"active\",\"type\":\"BOOLEAN\"}]}}\n").getBytes(StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder(BLOCK_ROWS * 64);
+            for (int i = 0; i < BLOCK_ROWS; i++) {
+                sb.append("{\"id\":").append(i).append(",\"category\":\"category-").append(i % 50)
+                    .append("\",\"amount\":").append(i * 0.25).append(",\"active\":").append(i % 3 == 0).append("}\n");
+            }
+            byte[] block = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+            server = new StubHttpServer(exchange -> {
+                StubHttpServer.readBody(exchange);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(meta);
+                    for (int written = 0; written < rows; written += BLOCK_ROWS) os.write(block);
+                } catch (IOException ignored) {
+                    // client went away
+                }
+            });
+            Properties props = new Properties();
+            props.setProperty("schema", "flock");
+            props.setProperty("pipelinedDecode", String.valueOf(pipelinedDecode));
+            props.setProperty("logLevel", "ERROR");
+            connection = DriverManager.getConnection(server.jdbcUrl(), props);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws SQLException {
+            connection.close();
+            server.close();
+        }
+    }
+
+    @Benchmark
+    public long query10mRows(Endpoint endpoint) throws SQLException {
+        long sum = 0;
+        try (Statement stmt = endpoint.connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM events")) {
+            while (rs.next()) {
+                sum += rs.getLong(1) + rs.getString(2).length() + (long) rs.getDouble(3) + (rs.getBoolean(4) ? 1 : 0);
+                if (endpoint.workTokens > 0) Blackhole.consumeCPU(endpoint.workTokens);
+            }
+        }
+        return sum;
+    }
+}
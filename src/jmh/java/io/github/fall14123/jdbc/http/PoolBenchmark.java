@@ -0,0 +1,72 @@
+package io.github.fall14123.jdbc.http;
+
+import org.openjdk.jmh.annotations.*;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrows a connection, prepares a statement on it and gives it back: through HttpJdbcDataSource's pool,
+ * and by opening a connection from DriverManager each time. Nothing goes over the network (the server is
+ * never called), so the score is the driver's own cost per borrow; the contended variant has four
+ * threads share a pool of two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+    private static final String SQL = "SELECT id, name FROM users WHERE id = ?";
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        StubHttpServer server;
+        HttpJdbcDataSource dataSource;
+        HttpJdbcDataSource contended;
+        Properties props;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            server = new StubHttpServer(exchange -> StubHttpServer.respond(exchange, 200, "{}"));
+            props = new Properties();
+            props.setProperty("schema", "httpserver");
+            props.setProperty("logLevel", "ERROR");
+            dataSource = new HttpJdbcDataSource(server.jdbcUrl());
+            dataSource.setProperties(props);
+            contended = new HttpJdbcDataSource(server.jdbcUrl());
+            contended.setProperties(props);
+            contended.setMaxPoolSize(2);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            dataSource.close();
+            contended.close();
+            server.close();
+        }
+    }
+
+    private static int borrow(Connection conn) throws SQLException {
+        try (conn; PreparedStatement ps = conn.prepareStatement(SQL)) {
+            ps.setInt(1, 1);
+            return ps.getMaxRows();
+        }
+    }
+
+    @Benchmark
+    public int pooled(Pool pool) throws SQLException {
+        return borrow(pool.dataSource.getConnection());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int pooledContended(Pool pool) throws SQLException {
+        return borrow(pool.contended.getConnection());
+    }
+
+    @Benchmark
+    public int unpooled(Pool pool) throws SQLException {
+        return borrow(DriverManager.getConnection(pool.server.jdbcUrl(), pool.props));
+    }
+}
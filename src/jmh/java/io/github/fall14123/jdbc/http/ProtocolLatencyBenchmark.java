@@ -0,0 +1,76 @@
+package io.github.fall14123.jdbc.http;
+
+import org.openjdk.jmh.annotations.*;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-query latency of HTTP/1.1 against multiplexed HTTP/2 as the number of
+ * concurrent JDBC connections grows. Run in SampleTime mode, so the report includes p99.
+ * Requires a backend at -Djdbc.bench.url (default: DuckDB httpserver on localhost:9999);
+ * use a jdbc:https:// URL with protocol=h2, h2c is attempted as a cleartext upgrade.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ProtocolLatencyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Endpoint {
+        @Param({"http1.1", "h2c"})
+        public String protocol;
+
+        String url = System.getProperty("jdbc.bench.url", "jdbc:http://localhost:9999/");
+        String schema = System.getProperty("jdbc.bench.schema", "httpserver");
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadConnection {
+        Connection connection;
+
+        @Setup(Level.Trial)
+        public void open(Endpoint endpoint) throws SQLException {
+            Properties props = new Properties();
+            props.setProperty("schema", endpoint.schema);
+            props.setProperty("protocol", endpoint.protocol);
+            props.setProperty("user", System.getProperty("jdbc.bench.user", "user"));
+            props.setProperty("password", System.getProperty("jdbc.bench.password", "pass"));
+            props.setProperty("logLevel", "ERROR");
+            connection = DriverManager.getConnection(endpoint.url, props);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int threads001(ThreadConnection state) throws SQLException {
+        return query(state.connection);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int threads016(ThreadConnection state) throws SQLException {
+        return query(state.connection);
+    }
+
+    @Benchmark
+    @Threads(256)
+    public int threads256(ThreadConnection state) throws SQLException {
+        return query(state.connection);
+    }
+
+    private static int query(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 42 as answer")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding cost of a response body per schema: the compiled token-walking decoder against
+ * evaluating the schema's JSONPath strings on every response, as the driver used to.
+ * Runs in memory, no server needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseDecodeBenchmark {
+
+    @Param({"flock", "httpserver"})
+    public String schemaName;
+
+    @Param({"1", "1000"})
+    public int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SchemaConfig schema;
+    private JsonResponseDecoder decoder;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        schema = SchemaConfig.load(schemaName);
+        decoder = new JsonResponseDecoder(objectMapper, schema);
+        StringBuilder sb = new StringBuilder();
+        if (schema.responseNdjson) {
+            sb.append("{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"},{\"name\":\"price\",\"type\":\"DOUBLE\"}]}}\n");
+            for (int i = 0; i < rows; i++) sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\",\"price\":").append(i * 1.5).append("}\n");
+        } else {
+            sb.append("{\"meta\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"},{\"name\":\"price\",\"type\":\"DOUBLE\"}],\"data\":[");
+            for (int i = 0; i < rows; i++) sb.append(i == 0 ? "" : ",").append("[").append(i).append(",\"item-").append(i).append("\",").append(i * 1.5).append("]");
+            sb.append("],\"rows\":").append(rows).append(",\"statistics\":{\"elapsed\":0.001,\"rows_read\":").append(rows).append("}}");
+        }
+        body = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void compiledDecoder(Blackhole bh) throws Exception {
+        QueryResult result = decoder.decode(new TransportResponse(200, Map.of(), new ByteArrayInputStream(body), null));
+        bh.consume(result.materialize().getRows());
+    }
+
+    @Benchmark
+    public void jsonPathPerResponse(Blackhole bh) throws Exception {
+        if (schema.responseNdjson) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body)))) {
+                String firstLine = reader.readLine();
+                try {
+                    bh.consume(JsonPath.<Object>read(firstLine, schema.errorPath));
+                } catch (PathNotFoundException ignored) {}
+                try {
+                    bh.consume(JsonPath.<Object>read(firstLine, schema.updateCountPath));
+                } catch (PathNotFoundException ignored) {}
+                List<Map<String, String>> columnDefs = JsonPath.read(firstLine, schema.columnsPath);
+                List<String> columns = columnDefs.stream().map(c -> c.get(schema.columnNameField)).toList();
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    Map<String, Object> rowMap = objectMapper.readValue(line, Map.class);
+                    bh.consume(columns.stream().map(rowMap::get).toList());
+                }
+            }
+        } else {
+            String text = new String(body, StandardCharsets.UTF_8);
+            try {
+                bh.consume(JsonPath.<Object>read(text, schema.errorPath));
+            } catch (PathNotFoundException ignored) {}
+            List<Map<String, String>> columnDefs = JsonPath.read(text, schema.columnsPath);
+            bh.consume(columnDefs.stream().map(c -> c.get(schema.columnNameField)).toList());
+            try {
+                bh.consume(JsonPath.<Object>read(text, schema.updateCountPath));
+            } catch (PathNotFoundException ignored) {}
+            List<List<Object>> data = JsonPath.read(text, schema.rowsPath);
+            bh.consume(data);
+        }
+    }
+}
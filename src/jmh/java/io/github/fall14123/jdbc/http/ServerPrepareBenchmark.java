@@ -0,0 +1,86 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of a short, repeatedly executed ORM-style prepared query: SQL text on every execute (flock schema)
+ * against prepare once + execute by handle (preparestub schema). The stub server charges planMicros of
+ * busy work whenever it receives SQL text, standing in for the backend's parse and plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without nodelay the stub's separate header and body writes stall on delayed ACKs (~40ms per request)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class ServerPrepareBenchmark {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"BIGINT\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}]}}\n";
+
+    @Param({"flock", "preparestub"})
+    public String schemaName;
+
+    @Param({"0", "1000"})
+    public int planMicros;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, String> statements = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private StubHttpServer server;
+    private Connection connection;
+    private PreparedStatement statement;
+    private long id;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new StubHttpServer(exchange -> {
+            JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+            if (request.has("prepare")) {
+                plan();
+                String statementId = "s" + ids.incrementAndGet();
+                statements.put(statementId, request.get("prepare").asText());
+                StubHttpServer.respond(exchange, 200, "{\"statementId\":\"" + statementId + "\"}");
+                return;
+            }
+            if (request.has("sql")) plan();
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":" + request.get("parameters").get(0).get("value") + ",\"name\":\"n\"}\n");
+        });
+        Properties props = new Properties();
+        props.setProperty("schema", schemaName);
+        props.setProperty("logLevel", "ERROR");
+        connection = DriverManager.getConnection(server.jdbcUrl(), props);
+        StringBuilder sql = new StringBuilder("SELECT u.id, u.name");
+        for (int i = 0; i < 40; i++) sql.append(", u.attribute_").append(i).append(" AS attribute_").append(i);
+        sql.append(" FROM users u LEFT JOIN accounts a ON a.user_id = u.id WHERE u.id = ? AND u.deleted_at IS NULL");
+        statement = connection.prepareStatement(sql.toString());
+    }
+
+    private void plan() {
+        long until = System.nanoTime() + planMicros * 1000L;
+        while (System.nanoTime() < until) Thread.onSpinWait();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        statement.close();
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long repeatedQuery() throws SQLException {
+        statement.setLong(1, ++id);
+        try (ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
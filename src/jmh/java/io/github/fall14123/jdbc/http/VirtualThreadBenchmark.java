@@ -0,0 +1,89 @@
+package io.github.fall14123.jdbc.http;
+
+import org.openjdk.jmh.annotations.*;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs 10,000 concurrent HttpJdbcStatement.executeQuery calls, each on its own virtual thread with its
+ * own connection, against an in-process stub server. The stub's handlers run on platform threads:
+ * com.sun.net.httpserver reads request bodies inside a monitor and would pin (and starve) the carriers
+ * the driver's virtual threads need.
+ * One operation is the whole wave, so the score is the time to complete 10k queries.
+ * The fork traces pinned carriers (-Djdk.tracePinnedThreads=short), so any pinning in the driver
+ * shows up as stack traces in the benchmark output.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class VirtualThreadBenchmark {
+    private static final int THREADS = 10_000;
+    private static final String RESPONSE = "{\"meta\":[{\"name\":\"answer\",\"type\":\"INTEGER\"}],\"data\":[[42]],\"rows\":1}";
+
+    @State(Scope.Benchmark)
+    public static class Endpoint {
+        @Param({"jdk", "urlconnection"})
+        public String transport;
+
+        @Param({"false", "true"})
+        public boolean virtualThreads;
+
+        // Bounds sockets per endpoint, the stub server shares this process's file descriptors
+        @Param({"512"})
+        public int poolSize;
+
+        StubHttpServer server;
+        ExecutorService serverExecutor;
+        Properties props;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            serverExecutor = Executors.newCachedThreadPool();
+            server = new StubHttpServer(exchange -> {
+                StubHttpServer.readBody(exchange);
+                StubHttpServer.respond(exchange, 200, RESPONSE);
+            }, serverExecutor, 4096);
+            props = new Properties();
+            props.setProperty("schema", "httpserver");
+            props.setProperty("transport", transport);
+            props.setProperty("virtualThreads", String.valueOf(virtualThreads));
+            props.setProperty("poolSize", String.valueOf(poolSize));
+            props.setProperty("connectTimeout", "60000");
+            props.setProperty("logLevel", "ERROR");
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            server.close();
+            serverExecutor.close();
+        }
+    }
+
+    @Benchmark
+    public long queries10k(Endpoint endpoint) throws Exception {
+        long sum = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) results.add(executor.submit(() -> query(endpoint)));
+            for (Future<Integer> result : results) sum += result.get();
+        }
+        return sum;
+    }
+
+    private static int query(Endpoint endpoint) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(endpoint.server.jdbcUrl(), endpoint.props);
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 42 AS answer")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
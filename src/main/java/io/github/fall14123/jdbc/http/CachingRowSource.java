@@ -0,0 +1,64 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+// Rows of a cacheable query, handed out as they are decoded and copied aside for the result cache. The
+// copy is stored once the rows are exhausted. Past maxBytes it is dropped and copying stops, so a result
+// too large for the cache streams as it would uncached; a result closed before its end is not stored.
+public class CachingRowSource implements RowSource {
+    private final RowSource source;
+    private final long maxBytes;
+    private final Consumer<RowBatch> complete;
+    private RowBatch copy;
+
+    public CachingRowSource(RowSource source, RowBatch copy, long maxBytes, Consumer<RowBatch> complete) {
+        this.source = source;
+        this.copy = copy;
+        this.maxBytes = maxBytes;
+        this.complete = complete;
+    }
+
+    @Override
+    public int fill(RowBatch batch, int maxRows) throws SQLException {
+        int start = batch.size();
+        int filled = source.fill(batch, maxRows);
+        copied(batch, start, filled);
+        return filled;
+    }
+
+    @Override
+    public RowBatch nextBatch(RowBatch previous, int maxRows) throws SQLException {
+        RowBatch next = source.nextBatch(previous, maxRows);
+        copied(next, 0, next == null ? 0 : next.size());
+        return next;
+    }
+
+    private void copied(RowBatch batch, int start, int rows) {
+        if (copy == null) return;
+        if (rows == 0) {
+            RowBatch rowsSeen = copy;
+            copy = null;
+            complete.accept(rowsSeen);
+            return;
+        }
+        for (int row = start; row < start + rows; row++) copy.appendRow(batch, row);
+        if (copy.estimatedBytes() > maxBytes) copy = null;
+    }
+
+    @Override
+    public String nextPage() {
+        return source.nextPage();
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+        source.setFetchSize(rows);
+    }
+
+    @Override
+    public void close() {
+        copy = null;
+        source.close();
+    }
+}
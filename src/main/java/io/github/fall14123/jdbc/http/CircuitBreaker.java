@@ -0,0 +1,59 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Fails requests to a node fast while it is down, instead of letting every caller wait out its own
+// connect or read timeout. threshold failed exchanges in a row open the breaker; after delay one trial
+// request goes through (half open), and its outcome closes the breaker or opens it again.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int threshold;  // 0 = never open
+    private final long delayNanos;
+    private final AtomicInteger failures = new AtomicInteger();  // consecutive
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+
+    public CircuitBreaker(int threshold, long delayMs) {
+        this.threshold = threshold;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+    }
+
+    public State state() { return state.get(); }
+
+    // Whether allow() would let a request through now, without starting a trial
+    public boolean isAvailable() {
+        State current = state.get();
+        return current == State.CLOSED || current == State.OPEN && System.nanoTime() - openedAt >= delayNanos;
+    }
+
+    // Whether a request may go to the node now; true for at most one trial while half open
+    public boolean allow() {
+        State current = state.get();
+        if (current == State.CLOSED) return true;
+        if (current == State.HALF_OPEN || System.nanoTime() - openedAt < delayNanos) return false;
+        return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    public void succeeded() {
+        failures.set(0);
+        if (state.get() != State.CLOSED) state.set(State.CLOSED);
+    }
+
+    public void failed() {
+        if (threshold <= 0) return;
+        if (state.get() == State.HALF_OPEN || failures.incrementAndGet() >= threshold) open();
+    }
+
+    // The exchange was aborted by its caller, so it says nothing about the node: a trial leaves room for the next
+    public void abandoned() {
+        if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) openedAt = System.nanoTime() - delayNanos;
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        state.set(State.OPEN);
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+
+// A request refused by an open CircuitBreaker: it was never sent
+public class CircuitOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
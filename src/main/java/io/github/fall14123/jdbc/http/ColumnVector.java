@@ -0,0 +1,407 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One column of a RowBatch. Numeric columns are stored unboxed, strings are dictionary-encoded,
+// and a bitmap tracks nulls. Getters assume the caller has already checked isNull().
+public abstract class ColumnVector {
+    protected int capacity;
+    private long[] nulls;
+
+    protected ColumnVector(int capacity) {
+        this.capacity = capacity;
+        this.nulls = new long[(capacity >>> 6) + 1];
+    }
+
+    // Picks the storage (and so the decoder) for a java.sql.Types column type; other types keep their decoded objects.
+    // Temporal values stay strings, where the dictionary keeps repeated dates cheap.
+    public static ColumnVector forSqlType(int sqlType, int capacity) {
+        return switch (sqlType) {
+            case Types.BOOLEAN, Types.BIT -> new BooleanVector(capacity);
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> new IntVector(capacity);
+            case Types.BIGINT -> new LongVector(capacity);
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> new DoubleVector(capacity);
+            case Types.DECIMAL, Types.NUMERIC -> new DecimalVector(capacity);
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                 Types.DATE, Types.TIME, Types.TIME_WITH_TIMEZONE,
+                 Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new StringVector(capacity);
+            default -> new ObjectVector(capacity);
+        };
+    }
+
+    public final boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    final void setNull(int row, boolean isNull) {
+        if (isNull) nulls[row >>> 6] |= 1L << row;
+        else nulls[row >>> 6] &= ~(1L << row);
+    }
+
+    final void ensureCapacity(int rows) {
+        if (rows <= capacity) return;
+        int newCapacity = Math.max(rows, capacity * 2);
+        grow(newCapacity);
+        nulls = Arrays.copyOf(nulls, (newCapacity >>> 6) + 1);
+        capacity = newCapacity;
+    }
+
+    // Stores a decoded value, throwing IllegalArgumentException if it does not fit the column type
+    abstract void set(int row, Object value);
+
+    // Decodes the parser's current (non-null) value straight into the column. Typed vectors override this
+    // to read primitives without boxing, and must throw IllegalArgumentException before consuming anything.
+    void read(int row, JsonParser parser) throws IOException {
+        set(row, JsonRowSource.readValue(parser));
+    }
+
+    protected abstract void grow(int newCapacity);
+
+    // Drops per-batch state such as string dictionaries before the vector is refilled
+    void reset() {}
+
+    public abstract Object getObject(int row);
+
+    // Approximate heap footprint of the first rows, for byte-bounded caches
+    public long estimatedBytes(int rows) {
+        return 16 + rows / 8 + rows * 24L;
+    }
+
+    public int getInt(int row) {
+        Object value = getObject(row);
+        if (value instanceof Number) return ((Number) value).intValue();
+        return Integer.parseInt(value.toString());
+    }
+
+    public long getLong(int row) {
+        Object value = getObject(row);
+        if (value instanceof Number) return ((Number) value).longValue();
+        return Long.parseLong(value.toString());
+    }
+
+    public double getDouble(int row) {
+        Object value = getObject(row);
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        return Double.parseDouble(value.toString());
+    }
+
+    public String getString(int row) {
+        return getObject(row).toString();
+    }
+
+    public boolean getBoolean(int row) {
+        Object value = getObject(row);
+        if (value instanceof Boolean) return (Boolean) value;
+        return Boolean.parseBoolean(value.toString());
+    }
+
+    // Re-stores the first rows of a typed vector as objects, once a value did not fit its type
+    static ColumnVector promote(ColumnVector vector, int rows) {
+        ObjectVector promoted = new ObjectVector(Math.max(vector.capacity, 1));
+        for (int i = 0; i < rows; i++) {
+            boolean isNull = vector.isNull(i);
+            promoted.setNull(i, isNull);
+            if (!isNull) promoted.set(i, vector.getObject(i));
+        }
+        return promoted;
+    }
+
+    public static class IntVector extends ColumnVector {
+        private int[] values;
+
+        IntVector(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                values[row] = ((Number) value).intValue();
+            } else if (value instanceof Number n && n.doubleValue() == n.intValue()) {
+                values[row] = n.intValue();
+            } else if (value instanceof String s) {
+                values[row] = Integer.parseInt(s.trim());
+            } else {
+                throw new IllegalArgumentException("Not an integer: " + value);
+            }
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+                values[row] = parser.getIntValue();
+            } else if (token == JsonToken.VALUE_STRING) {
+                values[row] = Integer.parseInt(parser.getText().trim());
+            } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                set(row, parser.getDoubleValue());
+            } else {
+                throw new IllegalArgumentException("Not an integer: " + token);
+            }
+        }
+
+        @Override public long estimatedBytes(int rows) { return 16 + rows / 8 + rows * 4L; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override public Object getObject(int row) { return values[row]; }
+        @Override public int getInt(int row) { return values[row]; }
+        @Override public long getLong(int row) { return values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public String getString(int row) { return Integer.toString(values[row]); }
+    }
+
+    public static class LongVector extends ColumnVector {
+        private long[] values;
+
+        LongVector(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                values[row] = ((Number) value).longValue();
+            } else if (value instanceof String s) {
+                values[row] = Long.parseLong(s.trim());
+            } else {
+                throw new IllegalArgumentException("Not a long: " + value);
+            }
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                values[row] = parser.getLongValue();
+            } else if (token == JsonToken.VALUE_STRING) {
+                // 64-bit integers are often quoted to survive JavaScript clients
+                values[row] = Long.parseLong(parser.getText().trim());
+            } else {
+                throw new IllegalArgumentException("Not a long: " + token);
+            }
+        }
+
+        @Override public long estimatedBytes(int rows) { return 16 + rows / 8 + rows * 8L; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override public Object getObject(int row) { return values[row]; }
+        @Override public int getInt(int row) { return (int) values[row]; }
+        @Override public long getLong(int row) { return values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public String getString(int row) { return Long.toString(values[row]); }
+    }
+
+    public static class DoubleVector extends ColumnVector {
+        private double[] values;
+
+        DoubleVector(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value instanceof Double || value instanceof Float || value instanceof Integer || value instanceof Long) {
+                values[row] = ((Number) value).doubleValue();
+            } else if (value instanceof String s) {
+                values[row] = Double.parseDouble(s.trim());
+            } else {
+                throw new IllegalArgumentException("Not a double: " + value);
+            }
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+                values[row] = parser.getDoubleValue();
+            } else if (token == JsonToken.VALUE_STRING) {
+                // Covers "NaN" and "Infinity", which JSON cannot carry as numbers
+                values[row] = Double.parseDouble(parser.getText().trim());
+            } else {
+                throw new IllegalArgumentException("Not a double: " + token);
+            }
+        }
+
+        @Override public long estimatedBytes(int rows) { return 16 + rows / 8 + rows * 8L; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override public Object getObject(int row) { return values[row]; }
+        @Override public int getInt(int row) { return (int) values[row]; }
+        @Override public long getLong(int row) { return (long) values[row]; }
+        @Override public double getDouble(int row) { return values[row]; }
+        @Override public String getString(int row) { return Double.toString(values[row]); }
+    }
+
+    public static class BooleanVector extends ColumnVector {
+        private boolean[] values;
+
+        BooleanVector(int capacity) {
+            super(capacity);
+            values = new boolean[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value instanceof Boolean b) values[row] = b;
+            else if (value instanceof String s && (s.equalsIgnoreCase("true") || s.equalsIgnoreCase("false"))) values[row] = Boolean.parseBoolean(s);
+            else throw new IllegalArgumentException("Not a boolean: " + value);
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) values[row] = token == JsonToken.VALUE_TRUE;
+            else if (token == JsonToken.VALUE_STRING) set(row, parser.getText());
+            else throw new IllegalArgumentException("Not a boolean: " + token);
+        }
+
+        @Override public long estimatedBytes(int rows) { return 16 + rows / 8 + rows; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override public Object getObject(int row) { return values[row]; }
+        @Override public boolean getBoolean(int row) { return values[row]; }
+        @Override public int getInt(int row) { return values[row] ? 1 : 0; }
+        @Override public long getLong(int row) { return values[row] ? 1 : 0; }
+        @Override public double getDouble(int row) { return values[row] ? 1 : 0; }
+        @Override public String getString(int row) { return Boolean.toString(values[row]); }
+    }
+
+    // Exact values for DECIMAL/NUMERIC and integers wider than a long, parsed once from the JSON text
+    public static class DecimalVector extends ColumnVector {
+        private BigDecimal[] values;
+
+        DecimalVector(int capacity) {
+            super(capacity);
+            values = new BigDecimal[capacity];
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (value instanceof BigDecimal d) values[row] = d;
+            else if (value instanceof Number || value instanceof String) values[row] = new BigDecimal(value.toString().trim());
+            else throw new IllegalArgumentException("Not a decimal: " + value);
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) values[row] = parser.getDecimalValue();
+            else if (token == JsonToken.VALUE_STRING) values[row] = new BigDecimal(parser.getText().trim());
+            else throw new IllegalArgumentException("Not a decimal: " + token);
+        }
+
+        @Override public long estimatedBytes(int rows) { return 16 + rows / 8 + rows * 48L; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override void reset() { Arrays.fill(values, null); }
+        @Override public Object getObject(int row) { return values[row]; }
+        @Override public String getString(int row) { return values[row].toPlainString(); }
+    }
+
+    // Dictionary-encoded while cardinality is low; falls back to a plain array once most values are distinct
+    public static class StringVector extends ColumnVector {
+        private static final int MIN_DICTIONARY_LIMIT = 256;
+
+        private int[] codes;
+        private List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> lookup = new HashMap<>();
+        private String[] plain;
+        private int rows;
+
+        StringVector(int capacity) {
+            super(capacity);
+            codes = new int[capacity];
+        }
+
+        @Override
+        void read(int row, JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.VALUE_STRING) throw new IllegalArgumentException("Not a string: " + parser.currentToken());
+            set(row, parser.getText());
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (!(value instanceof String s)) throw new IllegalArgumentException("Not a string: " + value);
+            rows = Math.max(rows, row + 1);
+            if (plain != null) {
+                plain[row] = s;
+                return;
+            }
+            Integer code = lookup.get(s);
+            if (code == null) {
+                if (dictionary.size() >= Math.max(MIN_DICTIONARY_LIMIT, rows / 2)) {
+                    switchToPlain();
+                    plain[row] = s;
+                    return;
+                }
+                code = dictionary.size();
+                dictionary.add(s);
+                lookup.put(s, code);
+            }
+            codes[row] = code;
+        }
+
+        private void switchToPlain() {
+            plain = new String[capacity];
+            for (int i = 0; i < rows; i++) {
+                if (!isNull(i) && codes[i] < dictionary.size()) plain[i] = dictionary.get(codes[i]);
+            }
+            codes = null;
+            dictionary = null;
+            lookup = null;
+        }
+
+        @Override
+        protected void grow(int newCapacity) {
+            if (plain != null) plain = Arrays.copyOf(plain, newCapacity);
+            else codes = Arrays.copyOf(codes, newCapacity);
+        }
+
+        @Override
+        void reset() {
+            rows = 0;
+            if (plain != null) {
+                plain = null;
+                codes = new int[capacity];
+            }
+            dictionary = new ArrayList<>();
+            lookup = new HashMap<>();
+        }
+
+        @Override
+        public long estimatedBytes(int rows) {
+            long bytes = 16 + rows / 8;
+            if (plain != null) {
+                for (int i = 0; i < rows; i++) bytes += 8 + (plain[i] != null ? 40 + plain[i].length() : 0);
+                return bytes;
+            }
+            bytes += rows * 4L;
+            for (String value : dictionary) bytes += 80 + value.length();
+            return bytes;
+        }
+
+        @Override public Object getObject(int row) { return getString(row); }
+        @Override public String getString(int row) { return plain != null ? plain[row] : dictionary.get(codes[row]); }
+    }
+
+    public static class ObjectVector extends ColumnVector {
+        private Object[] values;
+
+        ObjectVector(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+
+        @Override void set(int row, Object value) { values[row] = value; }
+        @Override protected void grow(int newCapacity) { values = Arrays.copyOf(values, newCapacity); }
+        @Override void reset() { Arrays.fill(values, null); }
+        @Override public Object getObject(int row) { return values[row]; }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.fall14123.jdbc.http;
+
+import com.jayway.jsonpath.JsonPath;
+
+// A schema JSONPath compiled once. Simple dotted paths ("$.meta[*]", "$._meta.columns[*]") also
+// carry their field segments so decoders can match them while walking tokens, without JsonPath.
+public class CompiledPath {
+    private final String expression;
+    private final JsonPath jsonPath;
+    private final String[] segments;
+
+    private CompiledPath(String expression) {
+        this.expression = expression;
+        this.jsonPath = JsonPath.compile(expression);
+        this.segments = segments(expression);
+    }
+
+    public static CompiledPath compile(String expression) {
+        return new CompiledPath(expression);
+    }
+
+    public String expression() { return expression; }
+    public boolean isSimple() { return segments != null; }
+
+    // Field names from the root, e.g. [_meta, columns]; null when the path is not simple
+    public String[] segments() { return segments; }
+
+    // Evaluates against an already parsed document (Map/List tree) or a JSON string
+    public <T> T read(Object document) {
+        return document instanceof String json ? jsonPath.read(json) : jsonPath.read(document);
+    }
+
+    // "$.a.b[*]" -> [a, b]; null for anything that needs full JSONPath evaluation
+    static String[] segments(String path) {
+        if (path == null || !path.startsWith("$.")) return null;
+        String body = path.endsWith("[*]") ? path.substring(2, path.length() - 3) : path.substring(2);
+        if (body.isEmpty()) return null;
+        String[] parts = body.split("\\.", -1);
+        for (String part : parts) {
+            if (part.isEmpty()) return null;
+            for (int i = 0; i < part.length(); i++) {
+                char c = part.charAt(i);
+                if (c == '[' || c == ']' || c == '*' || c == '?' || c == '(' || c == '@' || c == '\'') return null;
+            }
+        }
+        return parts;
+    }
+
+    @Override
+    public String toString() { return expression; }
+}
@@ -0,0 +1,120 @@
+package io.github.fall14123.jdbc.http;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Properties;
+
+public class ConnectionConfig {
+    public String username = "";
+    public String password = "";
+    public LogLevel logLevel = LogLevel.INFO;
+    public String schemaName = "flock";
+
+    // Transport config
+    public String transport = "jdk";      // "jdk" (java.net.http.HttpClient) or "urlconnection"
+    public String protocol = "http1.1";   // "http1.1", "h2" (TLS + ALPN) or "h2c" (cleartext upgrade)
+    public int connectTimeoutMs = 30000;
+    public int readTimeoutMs = 60000;
+    public boolean keepAlive = true;
+    public int poolSize = 0;              // max concurrent requests per endpoint, 0 = unbounded
+    public boolean virtualThreads = false; // run the HTTP client's internal tasks on virtual threads
+    public String compression = "none";   // "none", "gzip", "deflate" or "auto" (both)
+    public int requestCompressionThreshold = 0; // compress request bodies of at least this many bytes, 0 = never
+    public boolean pipelinedDecode = false; // read and decode streamed rows on background threads, ahead of next()
+
+    // Load balancing config, for URLs listing several hosts
+    public String loadBalance = "roundRobin"; // "roundRobin", "leastOutstanding", "latency" or a LoadBalancer class name
+    public int ejectAfterFailures = 3;    // consecutive failed requests that eject a node, 0 = never eject
+    public long healthCheckIntervalMs = 5000; // how often an ejected node is probed
+    public String readEndpoints = "";     // replicas for reads, host:port,... (scheme and path from the URL), "" = the URL's hosts
+    public String writeEndpoints = "";    // the primary for writes, host:port,..., "" = the URL's hosts
+    public long readYourWritesWindowMs = 0; // reads after a write go to the primary this long, 0 = never
+    public double hedgePercentile = 0;    // hedge reads on read-only connections after this percentile of the node's latency, 0 = off
+    public long hedgeMinDelayMs = 10;     // never hedge sooner than this
+
+    // Retry config
+    public int retries = 0;               // times a statement failing in a retryable way runs again, 0 = never
+    public long retryBackoffMs = 50;      // wait before the first retry, doubled for each one after it
+    public long retryMaxBackoffMs = 2000; // longest wait between retries, also for Retry-After
+    public int circuitBreakerThreshold = 0; // failed requests in a row that make a node fail fast, 0 = never
+    public long circuitBreakerDelayMs = 10000; // how long a node fails fast before a trial request
+
+    // Result cache config
+    public int resultCacheSize = 0;       // max cached results per driver, 0 = caching off
+    public long resultCacheMaxBytes = 64L * 1024 * 1024; // approximate memory bound of the cache
+    public long resultCacheTtlMs = 60000; // how long a cached result may be served
+
+    // Prepared statement cache config
+    public int prepStmtCacheSize = 256;   // parsed statements kept per cache, 0 = off
+    public String prepStmtCacheScope = "connection"; // "connection" or "driver" (one cache shared by all connections)
+
+    public static ConnectionConfig fromProperties(Properties info) {
+        ConnectionConfig config = new ConnectionConfig();
+        config.username = info.getProperty("user", config.username);
+        config.password = info.getProperty("password", config.password);
+        config.logLevel = LogLevel.fromString(info.getProperty("logLevel", System.getProperty("jdbc.http.log.level", "INFO")));
+        config.schemaName = info.getProperty("schema", System.getProperty("jdbc.http.schema", config.schemaName));
+
+        config.transport = info.getProperty("transport", System.getProperty("jdbc.http.transport", config.transport));
+        config.protocol = info.getProperty("protocol", System.getProperty("jdbc.http.protocol", config.protocol));
+        config.connectTimeoutMs = parseInt(info.getProperty("connectTimeout", System.getProperty("jdbc.http.connect.timeout", "30000")), 30000);
+        config.readTimeoutMs = parseInt(info.getProperty("readTimeout", System.getProperty("jdbc.http.read.timeout", "60000")), 60000);
+        config.keepAlive = Boolean.parseBoolean(info.getProperty("keepAlive", System.getProperty("jdbc.http.keep.alive", "true")));
+        config.poolSize = parseInt(info.getProperty("poolSize", System.getProperty("jdbc.http.pool.size", "0")), 0);
+        config.compression = info.getProperty("compression", System.getProperty("jdbc.http.compression", config.compression));
+        config.requestCompressionThreshold = parseInt(info.getProperty("requestCompressionThreshold", System.getProperty("jdbc.http.request.compression.threshold", "0")), 0);
+        config.virtualThreads = Boolean.parseBoolean(info.getProperty("virtualThreads", System.getProperty("jdbc.http.virtual.threads", "false")));
+        config.pipelinedDecode = Boolean.parseBoolean(info.getProperty("pipelinedDecode", System.getProperty("jdbc.http.pipelined.decode", "false")));
+        config.loadBalance = info.getProperty("loadBalance", System.getProperty("jdbc.http.load.balance", config.loadBalance));
+        config.ejectAfterFailures = parseInt(info.getProperty("ejectAfterFailures", System.getProperty("jdbc.http.eject.after.failures", "3")), 3);
+        config.healthCheckIntervalMs = parseLong(info.getProperty("healthCheckInterval", System.getProperty("jdbc.http.health.check.interval", "5000")), 5000L);
+        config.readEndpoints = info.getProperty("readEndpoints", System.getProperty("jdbc.http.read.endpoints", config.readEndpoints)).trim();
+        config.writeEndpoints = info.getProperty("writeEndpoints", System.getProperty("jdbc.http.write.endpoints", config.writeEndpoints)).trim();
+        config.readYourWritesWindowMs = parseLong(info.getProperty("readYourWritesWindow", System.getProperty("jdbc.http.read.your.writes.window", "0")), 0L);
+        config.hedgePercentile = parseDouble(info.getProperty("hedgePercentile", System.getProperty("jdbc.http.hedge.percentile", "0")), 0);
+        config.hedgeMinDelayMs = parseLong(info.getProperty("hedgeMinDelay", System.getProperty("jdbc.http.hedge.min.delay", "10")), 10L);
+        config.retries = parseInt(info.getProperty("retries", System.getProperty("jdbc.http.retries", "0")), 0);
+        config.retryBackoffMs = parseLong(info.getProperty("retryBackoff", System.getProperty("jdbc.http.retry.backoff", "50")), 50L);
+        config.retryMaxBackoffMs = parseLong(info.getProperty("retryMaxBackoff", System.getProperty("jdbc.http.retry.max.backoff", "2000")), 2000L);
+        config.circuitBreakerThreshold = parseInt(info.getProperty("circuitBreakerThreshold", System.getProperty("jdbc.http.circuit.breaker.threshold", "0")), 0);
+        config.circuitBreakerDelayMs = parseLong(info.getProperty("circuitBreakerDelay", System.getProperty("jdbc.http.circuit.breaker.delay", "10000")), 10000L);
+        config.resultCacheSize = parseInt(info.getProperty("resultCacheSize", System.getProperty("jdbc.http.result.cache.size", "0")), 0);
+        config.resultCacheMaxBytes = parseLong(info.getProperty("resultCacheMaxBytes", System.getProperty("jdbc.http.result.cache.max.bytes", "67108864")), 67108864L);
+        config.resultCacheTtlMs = parseLong(info.getProperty("resultCacheTtl", System.getProperty("jdbc.http.result.cache.ttl", "60000")), 60000L);
+        config.prepStmtCacheSize = parseInt(info.getProperty("prepStmtCacheSize", System.getProperty("jdbc.http.prep.stmt.cache.size", "256")), 256);
+        config.prepStmtCacheScope = info.getProperty("prepStmtCacheScope", System.getProperty("jdbc.http.prep.stmt.cache.scope", config.prepStmtCacheScope));
+        return config;
+    }
+
+    // Connections whose transport settings match share one pooled client
+    public String transportKey(URL serverUrl) {
+        return serverUrl.getProtocol() + "://" + serverUrl.getAuthority() + "|" + transport + "|" + protocol + "|" + keepAlive
+            + "|" + connectTimeoutMs + "|" + poolSize + "|" + virtualThreads
+            + "|" + compression + "|" + requestCompressionThreshold;
+    }
+
+    // Connections to the same hosts with the same settings share one endpoint group
+    public String endpointGroupKey(List<URL> serverUrls, String urlSuffix) {
+        StringBuilder key = new StringBuilder();
+        for (URL url : serverUrls) key.append(transportKey(url)).append(url.getFile()).append(',');
+        return key.append(urlSuffix).append('|').append(username).append('|').append(loadBalance)
+            .append('|').append(ejectAfterFailures).append('|').append(healthCheckIntervalMs)
+            .append('|').append(circuitBreakerThreshold).append('|').append(circuitBreakerDelayMs).toString();
+    }
+
+    public boolean isHttp2() {
+        return protocol.equalsIgnoreCase("h2") || protocol.equalsIgnoreCase("h2c");
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try { return Integer.parseInt(value); } catch (NumberFormatException e) { return defaultValue; }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try { return Long.parseLong(value); } catch (NumberFormatException e) { return defaultValue; }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try { return Double.parseDouble(value); } catch (NumberFormatException e) { return defaultValue; }
+    }
+}
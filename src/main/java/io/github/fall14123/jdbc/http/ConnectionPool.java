@@ -0,0 +1,228 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+
+// The pool behind HttpJdbcDataSource. Borrowing takes no lock: a thread first tries the connection it
+// returned last, then claims any idle one with a CAS on its state, then creates one while under
+// maxPoolSize. Only when the pool is exhausted does it wait, for a connection handed over directly by the
+// next thread to return one. Idle connections above minPoolSize are closed after idleTimeout.
+//
+// HTTP connections hold no socket of their own (the transports pool those), so what a pooled connection
+// saves is creating the connection and its statement cache, not a connect.
+public class ConnectionPool implements ConnectionEventListener, AutoCloseable {
+    // One daemon thread for every pool's housekeeping
+    private static final ScheduledThreadPoolExecutor HOUSEKEEPING = housekeeping();
+
+    public interface Factory {
+        HttpJdbcPooledConnection create() throws SQLException;
+    }
+
+    private final Factory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutNanos;  // 0 = idle connections stay
+    private final long borrowTimeoutMs;
+    private final CopyOnWriteArrayList<HttpJdbcPooledConnection> connections = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<HttpJdbcPooledConnection> lastReturned = new ThreadLocal<>();
+    private final SynchronousQueue<HttpJdbcPooledConnection> handoff = new SynchronousQueue<>(true);
+    private final AtomicInteger size = new AtomicInteger();  // connections, counting those being created
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ScheduledFuture<?> housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(Factory factory, int minSize, int maxSize, long idleTimeoutMs, long borrowTimeoutMs) throws SQLException {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleTimeoutMs));
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        fill();
+        long period = idleTimeoutMs > 0 ? Math.max(10, Math.min(idleTimeoutMs / 2, 30000)) : 30000;
+        this.housekeeper = HOUSEKEEPING.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor housekeeping() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "http-jdbc-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public Connection getConnection() throws SQLException {
+        HttpJdbcPooledConnection pooled = borrow();
+        try {
+            return pooled.getConnection();
+        } catch (SQLException e) {
+            discard(pooled);
+            throw e;
+        }
+    }
+
+    HttpJdbcPooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        HttpJdbcPooledConnection last = lastReturned.get();
+        if (last != null && claim(last)) return last;
+        for (HttpJdbcPooledConnection pooled : connections) {
+            if (claim(pooled)) return pooled;
+        }
+        HttpJdbcPooledConnection created = grow();
+        if (created != null) return created;
+
+        // Counted before looking again, so a connection returned from here on is handed over
+        waiters.incrementAndGet();
+        try {
+            for (HttpJdbcPooledConnection pooled : connections) {
+                if (claim(pooled)) return pooled;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+            for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+                HttpJdbcPooledConnection handed = handoff.poll(remaining, TimeUnit.NANOSECONDS);
+                if (handed != null && claim(handed)) return handed;
+                if (closed) throw new SQLException("Connection pool is closed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+        throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs + "ms waiting for a pooled connection"
+            + " (maxPoolSize " + maxSize + ", " + connections.size() + " in use)");
+    }
+
+    private boolean claim(HttpJdbcPooledConnection pooled) {
+        if (!pooled.reserve()) return false;
+        if (pooled.isUsable()) return true;
+        discard(pooled);
+        return false;
+    }
+
+    // A new connection, already reserved; null at maxPoolSize
+    private HttpJdbcPooledConnection grow() throws SQLException {
+        for (int n = size.get(); ; n = size.get()) {
+            if (n >= maxSize) return null;
+            if (size.compareAndSet(n, n + 1)) break;
+        }
+        HttpJdbcPooledConnection pooled;
+        try {
+            pooled = factory.create();
+        } catch (SQLException | RuntimeException e) {
+            size.decrementAndGet();
+            throw e;
+        }
+        pooled.addConnectionEventListener(this);
+        pooled.reserve();
+        connections.add(pooled);
+        return pooled;
+    }
+
+    // A logical connection was closed: its connection goes to a waiting borrower, or back to idle
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        HttpJdbcPooledConnection pooled = (HttpJdbcPooledConnection) event.getSource();
+        lastReturned.set(pooled);
+        requite(pooled);
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        discard((HttpJdbcPooledConnection) event.getSource());
+    }
+
+    private void requite(HttpJdbcPooledConnection pooled) {
+        if (closed) {
+            discard(pooled);
+            return;
+        }
+        pooled.released();
+        // Until a waiter takes it, or claims it while looking through the pool
+        for (int spins = 0; waiters.get() > 0; spins++) {
+            if (!pooled.isIdle() || handoff.offer(pooled)) return;
+            if ((spins & 0xff) == 0xff) LockSupport.parkNanos(10_000);
+            else Thread.yield();
+        }
+    }
+
+    private void discard(HttpJdbcPooledConnection pooled) {
+        if (!pooled.remove()) return;
+        connections.remove(pooled);
+        size.decrementAndGet();
+        close(pooled);
+        // Waiters only watch for returned connections: make one in place of this one
+        if (waiters.get() > 0 && !closed) {
+            try {
+                HttpJdbcPooledConnection created = grow();
+                if (created != null) requite(created);
+            } catch (SQLException | RuntimeException ignored) {
+                // the waiters time out as they would have
+            }
+        }
+    }
+
+    private void housekeep() {
+        long now = System.nanoTime();
+        if (idleTimeoutNanos > 0) {
+            for (HttpJdbcPooledConnection pooled : connections) {
+                if (size.get() <= minSize) break;
+                if (pooled.idleNanos(now) > idleTimeoutNanos && pooled.evict()) {
+                    connections.remove(pooled);
+                    size.decrementAndGet();
+                    close(pooled);
+                }
+            }
+        }
+        try {
+            fill();
+        } catch (SQLException | RuntimeException ignored) {
+            // tried again on the next round, or by the next borrower
+        }
+    }
+
+    private void fill() throws SQLException {
+        while (!closed && size.get() < minSize) {
+            HttpJdbcPooledConnection created = grow();
+            if (created == null) return;
+            requite(created);
+        }
+    }
+
+    private static void close(HttpJdbcPooledConnection pooled) {
+        try {
+            pooled.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    public int getTotalConnections() { return connections.size(); }
+    public int getWaiters() { return waiters.get(); }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (HttpJdbcPooledConnection pooled : connections) {
+            if (pooled.isIdle()) idle++;
+        }
+        return idle;
+    }
+
+    // Closes every connection, in use or not: their logical connections fail from then on
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.cancel(false);
+        for (HttpJdbcPooledConnection pooled : connections) discard(pooled);
+    }
+}
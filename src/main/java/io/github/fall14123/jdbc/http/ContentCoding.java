@@ -0,0 +1,89 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// HTTP content codings for the compression connection property ("none", "gzip", "deflate" or "auto").
+// Responses are inflated as a stream, so rows are decoded while the compressed body is still arriving.
+public class ContentCoding {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Accept-Encoding value to send, or null when compression is off
+    public static String acceptEncoding(String compression) {
+        return switch (compression.toLowerCase(Locale.ROOT)) {
+            case "gzip" -> "gzip";
+            case "deflate" -> "deflate";
+            case "auto" -> "gzip, deflate";
+            default -> null;
+        };
+    }
+
+    // Coding used for compressed request bodies, or null when compression is off
+    public static String requestCoding(String compression) {
+        return switch (compression.toLowerCase(Locale.ROOT)) {
+            case "gzip", "auto" -> "gzip";
+            case "deflate" -> "deflate";
+            default -> null;
+        };
+    }
+
+    // Wraps a response body according to its Content-Encoding; identity and unknown codings pass through
+    public static InputStream decode(String contentEncoding, InputStream body) throws IOException {
+        if (contentEncoding == null) return body;
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip", "x-gzip":
+                try {
+                    return new GZIPInputStream(body, BUFFER_SIZE);
+                } catch (EOFException e) {
+                    // Empty body, nothing to inflate
+                    body.close();
+                    return InputStream.nullInputStream();
+                }
+            case "deflate":
+                return inflate(body);
+            default:
+                return body;
+        }
+    }
+
+    // "deflate" is zlib-wrapped per RFC 9110, but some servers send raw deflate data; the zlib header tells them apart
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int cmf = in.read();
+        if (cmf < 0) return in;
+        int flg = in.read();
+        if (flg >= 0) in.unread(flg);
+        in.unread(cmf);
+        boolean zlib = (cmf & 0x0f) == 8 && flg >= 0 && ((cmf << 8) | flg) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // Streams given their own Inflater do not release its native memory on close
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    public static byte[] encode(String coding, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream encoder = coding.equals("gzip") ? new GZIPOutputStream(out, BUFFER_SIZE) : new DeflaterOutputStream(out)) {
+            encoder.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+
+// Rows of one statement execution: stops at the statement's maxRows, closing the source so the rest of
+// the response is never read or decoded, and reports a failure caused by an abort as its reason (e.g. a
+// query timeout). The execution's deadline ends once the rows are exhausted or the source is closed.
+// After an abort no more rows are handed out, not even those already decoded.
+public class ControlledRowSource implements RowSource {
+    private final RowSource source;
+    private final QueryControl control;
+    private final long execution;
+    private int remaining;  // rows still allowed, Integer.MAX_VALUE without maxRows
+    private boolean done;
+
+    public ControlledRowSource(RowSource source, int maxRows, QueryControl control, long execution) {
+        this.source = source;
+        this.remaining = maxRows > 0 ? maxRows : Integer.MAX_VALUE;
+        this.control = control;
+        this.execution = execution;
+    }
+
+    @Override
+    public int fill(RowBatch batch, int maxRows) throws SQLException {
+        if (done) return 0;
+        if (control.isAborted(execution)) throw failed(new SQLException("Execution aborted"));
+        try {
+            int filled = source.fill(batch, Math.min(maxRows, remaining));
+            return taken(filled);
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+    }
+
+    // Pipelined sources hand out whole batches, which may run past the limit
+    @Override
+    public RowBatch nextBatch(RowBatch previous, int maxRows) throws SQLException {
+        if (done) {
+            previous.clear();
+            return null;
+        }
+        if (control.isAborted(execution)) throw failed(new SQLException("Execution aborted"));
+        RowBatch next;
+        try {
+            next = source.nextBatch(previous, Math.min(maxRows, remaining));
+        } catch (SQLException e) {
+            throw failed(e);
+        }
+        if (next == null) {
+            taken(0);
+            return null;
+        }
+        next.truncate(remaining);
+        taken(next.size());
+        return next;
+    }
+
+    private int taken(int rows) {
+        remaining -= rows;
+        if (rows == 0 || remaining == 0) finish();
+        return rows;
+    }
+
+    private SQLException failed(SQLException e) {
+        SQLException translated = control.translate(execution, e);
+        finish();
+        return translated;
+    }
+
+    // At the limit the source is closed right away, aborting the rest of the response
+    private void finish() {
+        if (done) return;
+        done = true;
+        if (remaining == 0) source.close();
+        control.finish(execution);
+    }
+
+    @Override
+    public String nextPage() {
+        return remaining == 0 ? null : source.nextPage();
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+        source.setFetchSize(rows);
+    }
+
+    @Override
+    public void close() {
+        source.close();
+        finish();
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// One backend node of an EndpointGroup: where its requests go, and what the balancer knows about it.
+// Exchanges through send() feed the node's latency average and histogram, its passive failure detection
+// and its circuit breaker.
+public class Endpoint {
+    // Weight of the newest sample in the latency average
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final int index;
+    private final URI uri;
+    private final HttpTransport transport;
+    private final CircuitBreaker breaker;
+    private final AtomicInteger failures = new AtomicInteger();  // consecutive
+    private final AtomicBoolean ejected = new AtomicBoolean();
+    private volatile double latencyNanos;  // time to response headers, 0 until measured
+    private final LatencyHistogram latency = new LatencyHistogram();  // the same, for percentiles
+    private EndpointGroup group;
+
+    public Endpoint(int index, URI uri, HttpTransport transport) {
+        this(index, uri, transport, new CircuitBreaker(0, 0));
+    }
+
+    public Endpoint(int index, URI uri, HttpTransport transport, CircuitBreaker breaker) {
+        this.index = index;
+        this.uri = uri;
+        this.transport = transport;
+        this.breaker = breaker;
+    }
+
+    void attach(EndpointGroup group) {
+        this.group = group;
+    }
+
+    public int index() { return index; }
+    public URI uri() { return uri; }
+    public HttpTransport transport() { return transport; }
+    public TransportStats stats() { return transport.getStats(); }
+    public CircuitBreaker breaker() { return breaker; }
+
+    // Requests in flight on the node, from every connection sharing its transport
+    public int outstanding() { return transport.getStats().getInFlight(); }
+    public double latencyNanos() { return latencyNanos; }
+    public LatencyHistogram latency() { return latency; }
+    // Neither ejected nor behind an open circuit breaker: a request picked for it would go through
+    public boolean isAvailable() { return !ejected.get() && breaker.isAvailable(); }
+
+    public TransportResponse send(TransportRequest request, Consumer<Runnable> onAbort) throws IOException {
+        // An exchange the caller aborts fails too, but says nothing about the node
+        AtomicBoolean aborted = new AtomicBoolean();
+        if (onAbort != null) onAbort.accept(() -> aborted.set(true));
+        // Aborted while its body was built, e.g. a hedged attempt that has lost the race: nothing to send
+        if (aborted.get()) throw new IOException("HTTP request aborted before it was sent");
+        if (!breaker.allow()) throw new CircuitOpenException("Circuit breaker open for " + uri);
+        // The breaker's one trial, whose outcome it waits for
+        boolean trial = breaker.state() == CircuitBreaker.State.HALF_OPEN;
+        long start = System.nanoTime();
+        TransportResponse response;
+        try {
+            response = transport.send(request, onAbort);
+        } catch (RuntimeException | Error e) {
+            // Says nothing about the node either, but must not hold the breaker half open for good
+            if (trial) breaker.abandoned();
+            throw e;
+        } catch (PoolTimeoutException e) {
+            // The driver's own pool was exhausted: the node never saw the request
+            if (trial) breaker.abandoned();
+            throw e;
+        } catch (IOException e) {
+            if (!aborted.get()) {
+                failed();
+                throw e;
+            }
+            if (trial) breaker.abandoned();
+            // An aborted exchange took at least this long: without it, hedging the slow exchanges away
+            // would drag the node's percentiles down
+            latency.record(System.nanoTime() - start);
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        if (completed(response.statusCode(), nanos)) latency.record(nanos);
+        return response;
+    }
+
+    public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+        if (!breaker.allow()) return CompletableFuture.failedFuture(new CircuitOpenException("Circuit breaker open for " + uri));
+        boolean trial = breaker.state() == CircuitBreaker.State.HALF_OPEN;
+        long start = System.nanoTime();
+        return transport.sendAsync(request).whenComplete((response, error) -> {
+            if (response != null) completed(response.statusCode(), System.nanoTime() - start);
+            else if (error instanceof PoolTimeoutException || error.getCause() instanceof PoolTimeoutException) {
+                if (trial) breaker.abandoned();
+            } else failed();
+        });
+    }
+
+    // False when the response says the node failed
+    private boolean completed(int status, long nanos) {
+        // Gateways answer for a node that is down or overloaded
+        if (status == 502 || status == 503 || status == 504) {
+            failed();
+            return false;
+        }
+        double average = latencyNanos;
+        // Races between threads lose a sample at worst
+        latencyNanos = average == 0 ? nanos : average + EWMA_ALPHA * (nanos - average);
+        failures.set(0);
+        breaker.succeeded();
+        return true;
+    }
+
+    private void failed() {
+        breaker.failed();
+        int threshold = group != null ? group.ejectAfterFailures() : 0;
+        if (threshold > 0 && failures.incrementAndGet() >= threshold && ejected.compareAndSet(false, true)) {
+            group.ejected(this);
+        }
+    }
+
+    // A probe got through: the node takes queries again
+    void reinstate() {
+        failures.set(0);
+        breaker.succeeded();
+        ejected.set(false);
+    }
+
+    @Override
+    public String toString() {
+        return uri + (ejected.get() ? " (ejected)" : "");
+    }
+}
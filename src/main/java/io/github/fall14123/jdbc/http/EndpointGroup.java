@@ -0,0 +1,110 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The replicas behind one JDBC URL (jdbc:http://h1:9999,h2:9999/). Every query picks a node through the
+// balancer, so one long-lived connection spreads its load over all of them. A node failing
+// ejectAfterFailures exchanges in a row is ejected, then probed every healthCheckInterval until it
+// answers again. Connections with the same URL and settings share one group, and with it what is
+// known about each node.
+public class EndpointGroup {
+    // One daemon thread for every driver probe; probes are asynchronous, so it only ever schedules them
+    private static final ScheduledThreadPoolExecutor PROBES = probes();
+
+    private final String name;
+    private final Endpoint[] endpoints;
+    private final LoadBalancer balancer;
+    private final int ejectAfterFailures;
+    private final long healthCheckIntervalMs;
+    private final TransportRequest[] probes;  // per endpoint: a trivial query, answered 200 by a healthy node
+    private final AtomicInteger fallback = new AtomicInteger();
+    private final HttpJdbcLogger logger;
+
+    public EndpointGroup(Endpoint[] endpoints, ConnectionConfig config, Map<String, String> probeHeaders, byte[] probeBody) {
+        this.endpoints = endpoints;
+        this.balancer = LoadBalancer.forName(config.loadBalance);
+        // A single node has nowhere else to send its queries
+        this.ejectAfterFailures = endpoints.length > 1 ? config.ejectAfterFailures : 0;
+        this.healthCheckIntervalMs = Math.max(1, config.healthCheckIntervalMs);
+        this.logger = new HttpJdbcLogger("EndpointGroup", config.logLevel);
+        this.probes = new TransportRequest[endpoints.length];
+        StringBuilder name = new StringBuilder();
+        for (Endpoint endpoint : endpoints) {
+            if (name.length() > 0) name.append(',');
+            name.append(endpoint.uri());
+            probes[endpoint.index()] = new TransportRequest(endpoint.uri(), probeHeaders, probeBody, config.connectTimeoutMs);
+            endpoint.attach(this);
+        }
+        this.name = name.toString();
+    }
+
+    private static ScheduledThreadPoolExecutor probes() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "http-jdbc-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    // The node URIs, comma-separated; identifies the replica set, e.g. in result cache keys
+    public String name() { return name; }
+    public int size() { return endpoints.length; }
+    public Endpoint get(int index) { return endpoints[index]; }
+    int ejectAfterFailures() { return ejectAfterFailures; }
+
+    public Endpoint pick() {
+        if (endpoints.length == 1) return endpoints[0];
+        Endpoint chosen = balancer.choose(endpoints);
+        if (chosen != null) return chosen;
+        // Every node is ejected: keep trying them in turn rather than failing every query up front
+        return endpoints[Math.floorMod(fallback.getAndIncrement(), endpoints.length)];
+    }
+
+    // The available node other than skip with the shortest expected wait, for a hedged request; null when
+    // there is none. Going around the balancer keeps hedges from shifting its rotation.
+    public Endpoint pickOther(Endpoint skip) {
+        Endpoint best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint == skip || !endpoint.isAvailable()) continue;
+            double cost = endpoint.latencyNanos() * (endpoint.outstanding() + 1);
+            if (best == null || cost < bestCost) {
+                best = endpoint;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    void ejected(Endpoint endpoint) {
+        logger.warn("Ejected " + endpoint.uri() + " after " + ejectAfterFailures + " failed requests");
+        scheduleProbe(endpoint);
+    }
+
+    private void scheduleProbe(Endpoint endpoint) {
+        PROBES.schedule(() -> probe(endpoint), healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Straight through the transport, so a probe does not count towards the node's failures
+    private void probe(Endpoint endpoint) {
+        endpoint.transport().sendAsync(probes[endpoint.index()]).whenComplete((response, error) -> {
+            if (response != null) response.close();
+            if (response != null && response.statusCode() == 200) {
+                endpoint.reinstate();
+                logger.info("Reinstated " + endpoint.uri());
+            } else {
+                scheduleProbe(endpoint);
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
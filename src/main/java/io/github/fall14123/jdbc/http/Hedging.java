@@ -0,0 +1,164 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Hedged requests for reads: when the first node has not answered within its hedgePercentile response
+// time (from the node's latency histogram, at least hedgeMinDelay), the same request goes to a second
+// node. The first answer wins and the other exchange is aborted. The first attempt runs on the calling
+// thread, so a query answered in time costs a timer and nothing else.
+public class Hedging {
+    // A node's percentiles mean little until it has answered this many requests
+    static final int MIN_SAMPLES = 20;
+
+    // One daemon thread for every driver's hedge timers; it only hands the second attempts to HEDGES
+    private static final ScheduledThreadPoolExecutor TIMERS = timers();
+    private static final ExecutorService HEDGES = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "http-jdbc-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final double percentile;
+    private final long minDelayNanos;
+
+    public interface Attempt<T> {
+        // onAbort takes the actions that abort the attempt's exchange, see HttpTransport.send
+        T send(Endpoint endpoint, Consumer<Runnable> onAbort) throws IOException, SQLException;
+    }
+
+    public Hedging(double percentile, long minDelayMs) {
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+    }
+
+    private static ScheduledThreadPoolExecutor timers() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "http-jdbc-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most requests are answered before their hedge is due
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    public boolean isEnabled(EndpointGroup endpoints) {
+        return percentile > 0 && endpoints.size() > 1;
+    }
+
+    // How long to wait for the node before hedging, in nanoseconds; -1 while it has too few samples
+    public long delayNanos(Endpoint endpoint) {
+        LatencyHistogram latency = endpoint.latency();
+        if (latency.count() < MIN_SAMPLES) return -1;
+        return Math.max(minDelayNanos, latency.percentile(percentile));
+    }
+
+    // Sends through the primary node, hedged to another one of the group. A result that loses the race is passed to
+    // discard. A failed attempt yields to the other one still under way; a server's error answer wins
+    // like any other answer.
+    public <T> T send(EndpointGroup endpoints, Endpoint primary, Attempt<T> attempt, Consumer<T> discard) throws IOException, SQLException {
+        long delay = delayNanos(primary);
+        if (delay < 0) return attempt.send(primary, null);
+
+        Exchange first = new Exchange();
+        Exchange second = new Exchange();
+        AtomicReference<Exchange> winner = new AtomicReference<>();
+        CompletableFuture<T> hedge = new CompletableFuture<>();
+        ScheduledFuture<?> timer = TIMERS.schedule(() -> HEDGES.execute(() -> {
+            Endpoint backup = winner.get() == null ? endpoints.pickOther(primary) : null;
+            if (backup == null) {
+                hedge.completeExceptionally(new IOException("No node to hedge to"));
+                return;
+            }
+            try {
+                T result = attempt.send(backup, second::onAbort);
+                if (winner.compareAndSet(null, second)) {
+                    first.abort();
+                    hedge.complete(result);
+                } else {
+                    discard.accept(result);
+                    hedge.completeExceptionally(new IOException("Hedged request lost"));
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                hedge.completeExceptionally(e);
+            }
+        }), delay, TimeUnit.NANOSECONDS);
+
+        T result;
+        try {
+            result = attempt.send(primary, first::onAbort);
+        } catch (SQLException e) {
+            // The node answered, with an error: unless the hedge got there first, that is the answer
+            if (!winner.compareAndSet(null, first)) return hedged(hedge, e);
+            timer.cancel(false);
+            second.abort();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // No answer: the hedge, once sent, may still bring one
+            if (timer.cancel(false)) throw e;
+            return hedged(hedge, e);
+        }
+        if (winner.compareAndSet(null, first)) {
+            timer.cancel(false);
+            second.abort();
+            return result;
+        }
+        discard.accept(result);
+        return hedged(hedge, null);
+    }
+
+    // The hedge's result; when it fails too, the first attempt's failure is the one reported
+    private static <T> T hedged(CompletableFuture<T> hedge, Exception failure) throws IOException, SQLException {
+        try {
+            return hedge.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a hedged request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = failure != null ? failure : e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(cause);
+        }
+    }
+
+    // The abort actions of one attempt; aborting the loser tears down its exchange
+    private static class Exchange {
+        private List<Runnable> actions = new ArrayList<>();
+        private boolean aborted;
+
+        void onAbort(Runnable action) {
+            synchronized (this) {
+                if (!aborted) {
+                    actions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        void abort() {
+            List<Runnable> pending;
+            synchronized (this) {
+                if (aborted) return;
+                aborted = true;
+                pending = actions;
+                actions = List.of();
+            }
+            for (Runnable action : pending) action.run();
+        }
+    }
+}
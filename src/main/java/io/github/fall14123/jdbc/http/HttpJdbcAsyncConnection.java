@@ -0,0 +1,15 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Non-blocking query execution, obtained with connection.unwrap(HttpJdbcAsyncConnection.class).
+// No thread waits on the network while a query is in flight; the future completes with a fully
+// buffered result, or exceptionally with the SQLException the blocking API would have thrown.
+public interface HttpJdbcAsyncConnection {
+    CompletableFuture<QueryResult> executeQueryAsync(String sql, List<QueryRequest.Parameter> parameters);
+
+    default CompletableFuture<QueryResult> executeQueryAsync(String sql) {
+        return executeQueryAsync(sql, List.of());
+    }
+}
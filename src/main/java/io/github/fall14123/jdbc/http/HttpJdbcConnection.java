@@ -1,42 +1,103 @@
 package io.github.fall14123.jdbc.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-public class HttpJdbcConnection implements Connection {
-    private final URL serverUrl;
-    private final String username;
-    private final String password;
+public class HttpJdbcConnection implements Connection, HttpJdbcAsyncConnection {
+    // SQLState for an invalid SQL statement name, used when the server does not know a statement handle
+    private static final String UNKNOWN_STATEMENT = "26000";
+    private static final String PROBE_SQL = "SELECT 1";
+
+    private final EndpointGroup endpoints;      // the primary: writes, and reads not routed to the replicas
+    private final EndpointGroup readEndpoints;  // the replicas, or endpoints when reads are not split off
     private final ObjectMapper objectMapper;
     private final HttpJdbcLogger logger;
-    private final int connectTimeoutMs;
     private final int readTimeoutMs;
-    private final boolean keepAlive;
+    private final boolean pipelinedDecode;
+    private final Map<String, String> requestHeaders;
     private final SchemaConfig schema;
+    private final JsonResponseDecoder decoder;
+    private final ResultCache resultCache;
+    private final StatementCache statementCache;
+    private final boolean cacheResults;
+    private final long resultCacheTtlMs;
+    private final String cacheUser;
+    private final Map<Endpoint, String> handleScopes = new IdentityHashMap<>();  // statement handles are reused per endpoint and user
+    private final long readYourWritesNanos;
+    private final Hedging hedging;
+    private final RetryPolicy retryPolicy;
     private boolean closed = false;
     private boolean autoCommit = true;
+    private volatile boolean readOnly = false;
+    private volatile long readsFromPrimaryUntil;  // nanoTime, when a write opened a read-your-writes window
+    private volatile boolean wrote;
 
-    public HttpJdbcConnection(URL serverUrl, String username, String password, ObjectMapper objectMapper, 
-                             LogLevel logLevel, int connectTimeoutMs, int readTimeoutMs, boolean keepAlive, 
-                             SchemaConfig schema) {
-        this.serverUrl = serverUrl;
-        this.username = username;
-        this.password = password;
+    public HttpJdbcConnection(EndpointGroup endpoints, EndpointGroup readEndpoints, ConnectionConfig config, ObjectMapper objectMapper,
+                             SchemaConfig schema, ResultCache resultCache, StatementCache statementCache) {
+        this.endpoints = endpoints;
+        this.readEndpoints = readEndpoints;
         this.objectMapper = objectMapper;
-        this.logger = new HttpJdbcLogger("HttpJdbcConnection", logLevel);
-        this.connectTimeoutMs = connectTimeoutMs;
-        this.readTimeoutMs = readTimeoutMs;
-        this.keepAlive = keepAlive;
+        this.logger = new HttpJdbcLogger("HttpJdbcConnection", config.logLevel);
+        this.readTimeoutMs = config.readTimeoutMs;
+        this.pipelinedDecode = config.pipelinedDecode;
         this.schema = schema;
+        this.decoder = new JsonResponseDecoder(objectMapper, schema);
+        this.resultCache = resultCache;
+        this.statementCache = statementCache;
+        this.cacheResults = config.resultCacheSize > 0;
+        this.resultCacheTtlMs = config.resultCacheTtlMs;
+        this.cacheUser = config.username;
+        for (EndpointGroup group : List.of(endpoints, readEndpoints)) {
+            for (int i = 0; i < group.size(); i++) handleScopes.put(group.get(i), group.get(i).uri() + "|" + config.username);
+        }
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(config.readYourWritesWindowMs);
+        this.requestHeaders = requestHeaders(config, schema);
+        this.hedging = new Hedging(config.hedgePercentile, config.hedgeMinDelayMs);
+        this.retryPolicy = new RetryPolicy(config.retries, config.retryBackoffMs, config.retryMaxBackoffMs);
+    }
+
+    static Map<String, String> requestHeaders(ConnectionConfig config, SchemaConfig schema) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", schema.requestContentType);
+        String acceptEncoding = ContentCoding.acceptEncoding(config.compression);
+        if (acceptEncoding != null) headers.put("Accept-Encoding", acceptEncoding);
+        if (config.username != null && !config.username.isEmpty()) {
+            headers.put("Authorization", "Basic " + Base64.getEncoder().encodeToString((config.username + ":" + config.password).getBytes()));
+        }
+        return Map.copyOf(headers);
+    }
+
+    // A trivial query, to check that a node answers
+    static byte[] probeBody(SchemaConfig schema) throws IOException {
+        RequestBuffer out = new RequestBuffer();
+        if (schema.requestContentType.equals("text/plain") || schema.parameterTemplate.isEmpty()) {
+            out.writeUtf8(PROBE_SQL);
+        } else {
+            schema.compiledRequestTemplate.write(out, (index, quoted, buf) -> {
+                if (index == 0) writeText(PROBE_SQL, quoted, buf);
+                else buf.writeUtf8(index == 1 ? "[]" : "0");
+            });
+        }
+        return out.toByteArray();
     }
 
     public SchemaConfig getSchemaConfig() { return schema; }
+    public EndpointGroup getEndpointGroup() { return endpoints; }
+    public EndpointGroup getReadEndpointGroup() { return readEndpoints; }
+    // Of the first node in the URL; see getEndpointGroup() for the others
+    public TransportStats getTransportStats() { return endpoints.get(0).stats(); }
+    public ResultCache getResultCache() { return resultCache; }
+    public StatementCache getStatementCache() { return statementCache; }
 
     @Override
     public Statement createStatement() throws SQLException {
@@ -47,7 +108,7 @@ public class HttpJdbcConnection implements Connection {
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
         checkClosed();
-        return new HttpJdbcPreparedStatement(this, sql, logger.getLogLevel());
+        return new HttpJdbcPreparedStatement(this, statementCache.plan(sql), ResultSet.TYPE_FORWARD_ONLY, logger.getLogLevel());
     }
 
     @Override
@@ -63,8 +124,8 @@ public class HttpJdbcConnection implements Connection {
     @Override public void close() { closed = true; }
     @Override public boolean isClosed() { return closed; }
     @Override public DatabaseMetaData getMetaData() throws SQLException { checkClosed(); return new HttpJdbcDatabaseMetaData(this); }
-    @Override public void setReadOnly(boolean readOnly) throws SQLException { checkClosed(); }
-    @Override public boolean isReadOnly() throws SQLException { checkClosed(); return false; }
+    @Override public void setReadOnly(boolean readOnly) throws SQLException { checkClosed(); this.readOnly = readOnly; }
+    @Override public boolean isReadOnly() throws SQLException { checkClosed(); return readOnly; }
     @Override public void setCatalog(String catalog) throws SQLException { checkClosed(); }
     @Override public String getCatalog() throws SQLException { checkClosed(); return null; }
     @Override public void setTransactionIsolation(int level) throws SQLException { checkClosed(); }
@@ -81,175 +142,600 @@ public class HttpJdbcConnection implements Connection {
     }
 
     public QueryResult executeQuery(String sql, List<QueryRequest.Parameter> parameters) throws SQLException {
+        return executeQuery(sql, parameters, new StatementOptions());
+    }
+
+    public QueryResult executeQuery(String sql, List<QueryRequest.Parameter> parameters, StatementOptions options) throws SQLException {
+        return executeQuery(parse(sql, parameters), parameters, new RequestBuffer(), options);
+    }
+
+    // Plain statements are sent as written; only parameterized ones are scanned for placeholders
+    private static ParsedSql parse(String sql, List<QueryRequest.Parameter> parameters) {
+        return parameters.isEmpty() ? ParsedSql.plain(sql) : ParsedSql.parse(sql);
+    }
+
+    // The request body is built in buffer, which the caller may reuse once this returns
+    public QueryResult executeQuery(ParsedSql sql, List<QueryRequest.Parameter> parameters, RequestBuffer buffer,
+                                    StatementOptions options) throws SQLException {
+        ParsedSql sent = limited(sql, options.maxRows);
+        byte[] body;
         try {
-            URL requestUrl = schema.urlSuffix.isEmpty() ? serverUrl : new URL(serverUrl.toString() + schema.urlSuffix);
-            HttpURLConnection conn = (HttpURLConnection) requestUrl.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", schema.requestContentType);
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(connectTimeoutMs);
-            conn.setReadTimeout(readTimeoutMs);
-            conn.setRequestProperty("Connection", keepAlive ? "keep-alive" : "close");
-
-            if (username != null && !username.isEmpty()) {
-                conn.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes()));
-            }
+            body = buildRequestBody(sent, parameters, pageSize(options), options.queryTimeoutMs, buffer);
+        } catch (IOException e) {
+            throw new SQLException("Failed to execute query over HTTP", e);
+        }
+        // Built once: retries and hedged attempts send the same bytes
+        return execute(sent, parameters, buffer, options, call -> send(body, false, call));
+    }
 
-            String body = buildRequestBody(sql, parameters);
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(body.getBytes());
-            }
+    // Prepared statements run through the schema's prepare/execute templates when it has them
+    public QueryResult executeQuery(StatementCache.Plan plan, List<QueryRequest.Parameter> parameters, RequestBuffer buffer,
+                                    StatementOptions options) throws SQLException {
+        if (!supportsServerPrepare()) return executeQuery(plan.sql(), parameters, buffer, options);
+        int fetchSize = pageSize(options);
+        return execute(plan.sql(), parameters, buffer, options,
+            call -> sendPrepared(plan, call.parameters(), fetchSize, call.buffer(), call));
+    }
 
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                return schema.responseNdjson ? parseNdjsonResponse(conn.getInputStream()) : parseJsonResponse(conn.getInputStream());
-            } else {
-                String errorBody = readFully(conn.getErrorStream());
+    private interface Request {
+        QueryResult send(Call call) throws IOException, SQLException;
+    }
+
+    // One statement execution as its requests see it: all of them go to the node picked for it. queryId is
+    // null unless the schema names queries; onAbort takes the actions that abort the requests' exchanges,
+    // see HttpTransport.send. Bodies built per request are built from parameters, in buffer: the statement's
+    // own, or for a hedged attempt a copy and a buffer of its own, as the attempt that loses the race may
+    // still be building its body when the statement runs again.
+    private record Call(Endpoint endpoint, String queryId, long timeoutMs, Consumer<Runnable> onAbort,
+                        List<QueryRequest.Parameter> parameters, RequestBuffer buffer) {}
+
+    // Runs a request under the statement's control: its query timeout aborts the exchange, and the
+    // result set stops at maxRows. Reads on a read-only connection may be hedged to a second node, and a
+    // failure the retry policy deems safe runs the request again.
+    private QueryResult execute(ParsedSql sql, List<QueryRequest.Parameter> parameters, RequestBuffer buffer,
+                                StatementOptions options, Request first) throws SQLException {
+        QueryControl control = options.control;
+        long execution = control.begin(options.queryTimeoutMs);
+        EndpointGroup group = route(sql);
+        Endpoint endpoint = group.pick();
+        Consumer<Runnable> onAbort = action -> control.onAbort(execution, action);
+        Request request = call -> paged(first.send(call), options, call);
+        boolean write = sql.kind() == SqlClassifier.Kind.WRITE;
+        boolean hedged = readOnly && hedging.isEnabled(group) && !write;
+        // Parameter lists may hold nulls, which List.copyOf rejects
+        List<QueryRequest.Parameter> snapshot = hedged ? Collections.unmodifiableList(new ArrayList<>(parameters)) : parameters;
+        QueryResult result;
+        try {
+            for (int retry = 0; ; retry++) {
                 try {
-                    String error = JsonPath.read(errorBody, schema.errorPath);
-                    throw new SQLException(error);
-                } catch (PathNotFoundException e) {
-                    throw new SQLException("Server error: " + errorBody);
+                    result = hedged
+                        ? cached(sql, parameters, hedged(group, request, onAbort), new Call(endpoint, null, options.queryTimeoutMs, onAbort, snapshot, null))
+                        : cached(sql, parameters, request, call(endpoint, options.queryTimeoutMs, onAbort, parameters, buffer));
+                    break;
+                } catch (SQLException e) {
+                    long backoff = control.isAborted(execution) ? -1 : retryPolicy.backoffMs(e, retry, write);
+                    // An open breaker fails fast: waiting is only worth it when another node can take the statement
+                    if (backoff >= 0 && isCircuitOpen(e) && group.pickOther(endpoint) == null) backoff = -1;
+                    if (backoff < 0 || !backOff(backoff, control, execution)) throw e;
+                    // Another node, when there is one, may not share the failure
+                    Endpoint other = group.pickOther(endpoint);
+                    logger.debug("Retrying on " + (other != null ? other : endpoint) + " after " + backoff + "ms: " + e.getMessage());
+                    if (other != null) endpoint = other;
                 }
             }
-        } catch (IOException e) {
-            throw new SQLException("Failed to execute query over HTTP", e);
+        } catch (SQLException e) {
+            SQLException translated = control.translate(execution, e);
+            control.finish(execution);
+            throw translated;
+        } catch (RuntimeException e) {
+            control.finish(execution);
+            throw e;
         }
+        return controlled(result, options.maxRows, control, execution);
     }
 
-    private String buildRequestBody(String sql, List<QueryRequest.Parameter> parameters) throws IOException {
-        // For plain text requests or empty parameter template, inline parameters into SQL
-        if (schema.requestContentType.equals("text/plain") || schema.parameterTemplate.isEmpty()) {
-            return inlineParameters(sql, parameters);
+    private static boolean isCircuitOpen(SQLException e) {
+        return e.getCause() instanceof CircuitOpenException;
+    }
+
+    // Waits out a retry backoff; false when the execution is aborted meanwhile
+    private static boolean backOff(long ms, QueryControl control, long execution) {
+        CountDownLatch aborted = new CountDownLatch(1);
+        control.onAbort(execution, aborted::countDown);
+        try {
+            return !aborted.await(ms, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        String paramsJson = "[]";
-        if (!parameters.isEmpty()) {
-            List<String> paramStrings = new ArrayList<>();
-            for (QueryRequest.Parameter p : parameters) {
-                String valueJson = p == null || p.value() == null ? "null" : objectMapper.writeValueAsString(p.value());
-                String typeStr = p == null ? "null" : p.type();
-                paramStrings.add(schema.parameterTemplate.replace("${value}", valueJson).replace("${type}", typeStr));
+    }
+
+    // Writes go to the primary. Reads go to the replicas when the connection is read-only or the statement
+    // is a plain query, except within readYourWritesWindow of this connection's last write.
+    private EndpointGroup route(ParsedSql sql) {
+        if (readEndpoints == endpoints) return endpoints;
+        SqlClassifier.Kind kind = sql.kind();
+        if (kind == SqlClassifier.Kind.WRITE) return endpoints;
+        if (!readOnly && !SqlClassifier.isQuery(sql.normalized())) return endpoints;
+        if (wrote && System.nanoTime() - readsFromPrimaryUntil < 0) return endpoints;
+        return readEndpoints;
+    }
+
+    // Replicas lag behind the primary: for a while, this connection's reads see its writes only there
+    private void wrote() {
+        if (readYourWritesNanos <= 0) return;
+        readsFromPrimaryUntil = System.nanoTime() + readYourWritesNanos;
+        wrote = true;
+    }
+
+    // A call naming its query when the schema does, so that an abort also cancels it on the server.
+    // The cancel is registered first, so the server is told before the exchange is torn down.
+    private Call call(Endpoint endpoint, long timeoutMs, Consumer<Runnable> onAbort,
+                      List<QueryRequest.Parameter> parameters, RequestBuffer buffer) {
+        String queryId = schema.queryIdHeader.isEmpty() && schema.cancelTemplate.isEmpty() ? null : UUID.randomUUID().toString();
+        if (queryId != null && supportsCancel()) onAbort.accept(() -> cancelOnServer(endpoint, queryId));
+        return new Call(endpoint, queryId, timeoutMs, onAbort, parameters, buffer);
+    }
+
+    // Each attempt is a call of its own, aborted by the statement's control as well as by losing the race
+    private Request hedged(EndpointGroup group, Request request, Consumer<Runnable> control) {
+        return call -> hedging.send(group, call.endpoint(), (endpoint, onAbort) -> request.send(call(endpoint, call.timeoutMs(),
+            onAbort == null ? control : action -> {
+                onAbort.accept(action);
+                control.accept(action);
+            }, call.parameters(), new RequestBuffer())), QueryResult::close);
+    }
+
+    // Applies the result cache around a request: writes invalidate it, cacheable reads go through it
+    private QueryResult cached(ParsedSql sql, List<QueryRequest.Parameter> parameters, Request request,
+                               Call call) throws SQLException {
+        SqlClassifier.Kind kind = sql.kind();
+        if (kind == SqlClassifier.Kind.WRITE) {
+            resultCache.invalidateAll();
+            try {
+                return send(request, call);
+            } finally {
+                // Again afterwards, dropping results read while the write was in flight
+                resultCache.invalidateAll();
+                wrote();
             }
-            paramsJson = "[" + String.join(",", paramStrings) + "]";
         }
-        return schema.requestTemplate.replace("${sql}", sql).replace("${parameters}", paramsJson);
+        if (!cacheResults || kind != SqlClassifier.Kind.CACHEABLE_READ) return send(request, call);
+
+        // Every hit shares the same decoded rows. A streamed result keeps streaming: its rows are copied
+        // for the cache as they are read, up to the size the cache would take
+        ResultCache.Key key = cacheKey(sql.normalized(), parameters);
+        QueryResult cached = resultCache.get(key);
+        if (cached != null) return cached;
+        long generation = resultCache.generation();
+        QueryResult result = send(request, call);
+        if (!result.isStreaming() || result.getColumns() == null) {
+            resultCache.put(key, result, resultCacheTtlMs, generation);
+            return result;
+        }
+        QueryResult caching = new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(),
+            new CachingRowSource(result.takeRowSource(), result.newRowBatch(), resultCache.maxResultBytes(key),
+                rows -> resultCache.put(key, new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(), rows),
+                    resultCacheTtlMs, generation)));
+        caching.setNextPage(result.getNextPage());
+        return caching;
     }
 
-    private String inlineParameters(String sql, List<QueryRequest.Parameter> parameters) {
-        String result = sql;
-        for (QueryRequest.Parameter p : parameters) {
-            String replacement = formatParameterValue(p);
-            result = result.replaceFirst("\\?", replacement);
+    // Pushes maxRows into a query through the schema's limit template, so the server stops early too
+    private ParsedSql limited(ParsedSql sql, int maxRows) {
+        int at = schema.limitTemplate.indexOf("${sql}");
+        if (maxRows <= 0 || at < 0 || !SqlClassifier.isQuery(sql.normalized())) return sql;
+        String rows = Integer.toString(maxRows);
+        return sql.wrap(schema.limitTemplate.substring(0, at).replace("${maxRows}", rows),
+            schema.limitTemplate.substring(at + "${sql}".length()).replace("${maxRows}", rows));
+    }
+
+    // Streamed rows stay under control until consumed; a buffered result is complete, so its execution
+    // ends here. Buffered rows beyond maxRows are dropped from a copy, as cached batches are shared.
+    private static QueryResult controlled(QueryResult result, int maxRows, QueryControl control, long execution) {
+        if (result.isStreaming()) {
+            QueryResult controlled = new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(),
+                new ControlledRowSource(result.takeRowSource(), maxRows, control, execution));
+            controlled.setNextPage(result.getNextPage());
+            return controlled;
         }
-        return result;
+        control.finish(execution);
+        RowBatch rows = result.getRowBatch();
+        if (maxRows <= 0 || rows == null || rows.size() <= maxRows) return result;
+        RowBatch limited = result.newRowBatch();
+        for (int row = 0; row < maxRows; row++) limited.appendRow(rows, row);
+        return new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(), limited);
     }
 
-    private String formatParameterValue(QueryRequest.Parameter p) {
-        if (p == null || p.value() == null) return "NULL";
-        Object v = p.value();
-        return switch (p.type()) {
-            case "string", "date", "time", "timestamp" -> "'" + v.toString().replace("'", "''") + "'";
-            case "boolean" -> ((Boolean) v) ? "TRUE" : "FALSE";
-            default -> v.toString();
-        };
-    }
-
-    private QueryResult parseNdjsonResponse(InputStream is) throws IOException, SQLException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-            String firstLine = reader.readLine();
-            if (firstLine == null || firstLine.isEmpty()) {
-                return new QueryResult(null, null, 0);
-            }
+    private ResultCache.Key cacheKey(String normalized, List<QueryRequest.Parameter> parameters) {
+        // Parameter lists may hold nulls, which List.copyOf rejects
+        List<QueryRequest.Parameter> copy = Collections.unmodifiableList(new ArrayList<>(parameters));
+        return new ResultCache.Key(endpoints.name(), cacheUser, normalized, copy);
+    }
 
-            // Check for error
-            try {
-                String error = JsonPath.read(firstLine, schema.errorPath);
-                if (error != null) throw new SQLException(error);
-            } catch (PathNotFoundException ignored) {}
+    private static QueryResult send(Request request, Call call) throws SQLException {
+        try {
+            return request.send(call);
+        } catch (IOException e) {
+            throw new SQLException("Failed to execute query over HTTP", e);
+        }
+    }
 
-            // Check for update count
-            try {
-                Object updateCount = JsonPath.read(firstLine, schema.updateCountPath);
-                if (updateCount instanceof Number) {
-                    return new QueryResult(null, null, ((Number) updateCount).intValue());
-                }
-            } catch (PathNotFoundException ignored) {}
-
-            // Parse columns
-            List<Map<String, String>> columnDefs = JsonPath.read(firstLine, schema.columnsPath);
-            List<String> columns = columnDefs.stream().map(c -> c.get(schema.columnNameField)).toList();
-
-            // Parse rows
-            List<List<Object>> rows = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null && !line.isEmpty()) {
-                if (schema.rowsAsObjects) {
-                    Map<String, Object> rowMap = objectMapper.readValue(line, Map.class);
-                    rows.add(columns.stream().map(rowMap::get).toList());
-                } else {
-                    rows.add(objectMapper.readValue(line, List.class));
-                }
+    // executesHandle marks an execute-by-handle request, whose failure may mean the handle is gone
+    private QueryResult send(byte[] body, boolean executesHandle, Call call) throws IOException, SQLException {
+        Endpoint endpoint = call.endpoint();
+        TransportResponse response = endpoint.send(new TransportRequest(endpoint.uri(), headers(call), body, readTimeoutMs), call.onAbort());
+        if (pipelinedDecode) response = ReadAheadInputStream.wrap(response);
+        boolean streaming = false;
+        try {
+            if (executesHandle && (response.statusCode() == 404 || response.statusCode() == 410)) {
+                String errorBody = readFully(response.body());
+                String error = decoder.decodeError(errorBody);
+                throw new SQLException(error != null ? error : "Unknown statement: " + errorBody, UNKNOWN_STATEMENT);
             }
-            return new QueryResult(columns, rows, -1);
+            QueryResult result = readResult(response);
+            // A streaming result owns the response until its result set is closed
+            streaming = result.isStreaming();
+            return streaming && pipelinedDecode ? pipelined(result, response) : result;
+        } finally {
+            if (!streaming) response.close();
         }
     }
 
-    private QueryResult parseJsonResponse(InputStream is) throws IOException, SQLException {
-        String body = readFully(is);
-        if (body == null || body.isEmpty()) {
-            return new QueryResult(null, null, 0);
+    // Rows are decoded on a background thread from the read-ahead body, batches ahead of next()
+    private static QueryResult pipelined(QueryResult result, TransportResponse response) {
+        QueryResult pipelined = new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(),
+            new PipelinedRowSource(result.takeRowSource(), result::newRowBatch, response::close));
+        pipelined.setNextPage(result.getNextPage());
+        return pipelined;
+    }
+
+    // The schema's timeout header tells the server how long the client waits for the query, its query ID
+    // header names the query for a later cancel request
+    private Map<String, String> headers(Call call) {
+        boolean timeout = call.timeoutMs() > 0 && !schema.timeoutHeader.isEmpty();
+        boolean queryId = call.queryId() != null && !schema.queryIdHeader.isEmpty();
+        if (!timeout && !queryId) return requestHeaders;
+        Map<String, String> headers = new HashMap<>(requestHeaders);
+        if (timeout) headers.put(schema.timeoutHeader, Long.toString(call.timeoutMs()));
+        if (queryId) headers.put(schema.queryIdHeader, call.queryId());
+        return headers;
+    }
+
+    public boolean supportsCancel() {
+        return !schema.cancelTemplate.isEmpty();
+    }
+
+    // Best effort: the exchange is aborted either way, this only saves the server from finishing the query
+    private void cancelOnServer(Endpoint endpoint, String queryId) {
+        RequestBuffer buffer = new RequestBuffer();
+        try {
+            // The template's only placeholder is ${queryId}
+            schema.compiledCancelTemplate.write(buffer, (index, quoted, out) -> writeText(queryId, quoted, out));
+        } catch (IOException e) {
+            return;
         }
+        endpoint.transport().sendAsync(new TransportRequest(endpoint.uri(), requestHeaders, buffer.toByteArray(), readTimeoutMs))
+            .whenComplete((response, error) -> {
+                if (response != null) response.close();
+                if (error != null) logger.debug("Cancel request for query " + queryId + " failed: " + error.getMessage());
+            });
+    }
 
-        // Check for error
+    public boolean supportsPaging() {
+        return !schema.pageTemplate.isEmpty() && schema.compiledNextPagePath != null;
+    }
+
+    // Rows per page to ask for: the statement's fetch size when the schema pages results, 0 (all) otherwise
+    private int pageSize(StatementOptions options) {
+        return supportsPaging() ? options.fetchSize : 0;
+    }
+
+    // A result with more pages continues through the page template as its rows are consumed
+    // Cursors live on the node that ran the query, so its pages come from there too
+    private QueryResult paged(QueryResult result, StatementOptions options, Call call) {
+        if (pageSize(options) <= 0 || result.getColumns() == null) return result;
+        // A buffered response without a token is the whole result already
+        if (!result.isStreaming() && result.getNextPage() == null) return result;
+        return new QueryResult(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(),
+            new PagedRowSource(result, options.fetchSize, (token, fetchSize) -> fetchPage(call, token, fetchSize)));
+    }
+
+    // Pages arrive whole (see HttpTransport.sendAsync) and are decoded as they are consumed. An abort
+    // fails the page right away, rather than leaving the reader waiting for it to arrive.
+    private CompletableFuture<QueryResult> fetchPage(Call call, String token, int fetchSize) {
+        RequestBuffer buffer = new RequestBuffer();
         try {
-            String error = JsonPath.read(body, schema.errorPath);
-            if (error != null) throw new SQLException(error);
-        } catch (PathNotFoundException ignored) {}
+            // Placeholders are ${cursor} (0) and ${fetchSize} (1)
+            schema.compiledPageTemplate.write(buffer, (index, quoted, out) -> {
+                if (index == 0) writeText(token, quoted, out);
+                else out.writeUtf8(Integer.toString(fetchSize));
+            });
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new SQLException("Failed to fetch the next page", e));
+        }
+        CompletableFuture<QueryResult> page = sendAsync(call.endpoint(), buffer.toByteArray(), false);
+        call.onAbort().accept(() -> page.completeExceptionally(new SQLException("Page fetch aborted")));
+        return page;
+    }
 
-        // Try to parse columns first
-        List<String> columns = null;
+    public boolean supportsServerPrepare() {
+        return !schema.prepareTemplate.isEmpty() && !schema.executeTemplate.isEmpty() && !schema.parameterTemplate.isEmpty();
+    }
+
+    // Executes by handle, preparing first when this endpoint has none for the statement yet. A handle the
+    // server no longer knows (evicted, or lost in a restart) is replaced by preparing again, once.
+    private QueryResult sendPrepared(StatementCache.Plan plan, List<QueryRequest.Parameter> parameters, int fetchSize,
+                                     RequestBuffer buffer, Call call) throws IOException, SQLException {
+        String handleScope = handleScopes.get(call.endpoint());
+        String statementId = plan.statementId(handleScope);
+        boolean fresh = statementId == null;
+        if (fresh) statementId = prepare(plan, call);
         try {
-            List<Map<String, String>> columnDefs = JsonPath.read(body, schema.columnsPath);
-            columns = columnDefs.stream().map(c -> c.get(schema.columnNameField)).toList();
-        } catch (PathNotFoundException ignored) {}
+            return send(buildExecuteBody(statementId, parameters, fetchSize, call.timeoutMs(), buffer), true, call);
+        } catch (SQLException e) {
+            if (fresh || !isUnknownStatement(e)) throw e;
+            plan.forgetStatementId(handleScope, statementId);
+            return send(buildExecuteBody(prepare(plan, call), parameters, fetchSize, call.timeoutMs(), buffer), true, call);
+        }
+    }
 
-        // If no columns, check for update count
-        if (columns == null || columns.isEmpty()) {
+    private boolean isUnknownStatement(SQLException e) {
+        return UNKNOWN_STATEMENT.equals(e.getSQLState())
+            || e.getMessage() != null && schema.compiledUnknownStatementError.matcher(e.getMessage()).find();
+    }
+
+    private String prepare(StatementCache.Plan plan, Call call) throws IOException, SQLException {
+        RequestBuffer buffer = new RequestBuffer();
+        // The template's only placeholder is ${sql}
+        schema.compiledPrepareTemplate.write(buffer, (index, quoted, out) -> writeText(plan.sql().sql(), quoted, out));
+        Endpoint endpoint = call.endpoint();
+        try (TransportResponse response = endpoint.send(new TransportRequest(endpoint.uri(), requestHeaders, buffer.toByteArray(), readTimeoutMs), call.onAbort())) {
+            String body = readFully(response.body());
+            String error = decoder.decodeError(body);
+            if (response.statusCode() != 200 || error != null) throw serverError(response, error != null ? error : "Server error: " + body);
+            Object statementId;
             try {
-                Object updateCount = JsonPath.read(body, schema.updateCountPath);
-                if (updateCount instanceof Number) {
-                    return new QueryResult(null, null, ((Number) updateCount).intValue());
+                statementId = schema.compiledStatementIdPath.read(body);
+            } catch (RuntimeException e) {
+                statementId = null;
+            }
+            if (statementId == null) throw new SQLException("Prepare response has no statement id at " + schema.statementIdPath);
+            plan.statementId(handleScopes.get(endpoint), statementId.toString());
+            return statementId.toString();
+        }
+    }
+
+    private byte[] buildExecuteBody(String statementId, List<QueryRequest.Parameter> parameters, int fetchSize,
+                                    long timeoutMs, RequestBuffer buffer) throws IOException {
+        buffer.reset();
+        // Placeholders are ${statementId} (0), ${parameters} (1), ${fetchSize} (2) and ${timeoutMs} (3)
+        schema.compiledExecuteTemplate.write(buffer, (index, quoted, out) -> {
+            if (index == 0) writeText(statementId, quoted, out);
+            else if (index == 1) writeParameters(parameters, out);
+            else if (index == 2) out.writeUtf8(Integer.toString(fetchSize));
+            else out.writeUtf8(Long.toString(timeoutMs));
+        });
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public CompletableFuture<QueryResult> executeQueryAsync(String sql, List<QueryRequest.Parameter> parameters) {
+        ParsedSql parsed = parse(sql, parameters);
+        byte[] body;
+        try {
+            checkClosed();
+            body = buildRequestBody(parsed, parameters, new RequestBuffer());
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new SQLException("Failed to execute query over HTTP", e));
+        }
+        SqlClassifier.Kind kind = parsed.kind();
+        EndpointGroup group = route(parsed);
+        if (kind == SqlClassifier.Kind.WRITE) {
+            resultCache.invalidateAll();
+            return sendAsync(group, body).whenComplete((result, error) -> {
+                resultCache.invalidateAll();
+                wrote();
+            });
+        }
+        if (!cacheResults || kind != SqlClassifier.Kind.CACHEABLE_READ) return sendAsync(group, body);
+
+        ResultCache.Key key = cacheKey(parsed.normalized(), parameters);
+        QueryResult cached = resultCache.get(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        long generation = resultCache.generation();
+        return sendAsync(group, body).thenApply(result -> {
+            resultCache.put(key, result, resultCacheTtlMs, generation);
+            return result;
+        });
+    }
+
+    private CompletableFuture<QueryResult> sendAsync(EndpointGroup group, byte[] body) {
+        return sendAsync(group.pick(), body, true);
+    }
+
+    // Without materialize, rows are decoded from the in-memory body as they are consumed
+    private CompletableFuture<QueryResult> sendAsync(Endpoint endpoint, byte[] body, boolean materialize) {
+        return endpoint.sendAsync(new TransportRequest(endpoint.uri(), requestHeaders, body, readTimeoutMs))
+            .handle((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    throw new CompletionException(new SQLException("Failed to execute query over HTTP", cause));
                 }
-            } catch (PathNotFoundException ignored) {}
-            return new QueryResult(null, null, 0);
+                // The body is already in memory, so decoding it here never blocks
+                boolean streaming = false;
+                try {
+                    QueryResult result = readResult(response);
+                    if (materialize) result.materialize();
+                    streaming = result.isStreaming();
+                    return result;
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                } catch (IOException e) {
+                    throw new CompletionException(new SQLException("Failed to execute query over HTTP", e));
+                } finally {
+                    if (!streaming) response.close();
+                }
+            });
+    }
+
+    private QueryResult readResult(TransportResponse response) throws IOException, SQLException {
+        if (response.statusCode() == 200) return decoder.decode(response);
+        String errorBody = readFully(response.body());
+        String error = decoder.decodeError(errorBody);
+        throw serverError(response, error != null ? error : "Server error: " + errorBody);
+    }
+
+    // Marks the answers saying the server could not take the request now, which may be retried
+    private static SQLException serverError(TransportResponse response, String message) {
+        if (!ServerUnavailableException.isUnavailable(response.statusCode())) return new SQLException(message);
+        return new ServerUnavailableException(message, response.statusCode(), RetryPolicy.retryAfterMs(response.header("Retry-After")));
+    }
+
+    public boolean supportsBatchRequests() {
+        return !schema.batchTemplate.isEmpty();
+    }
+
+    // Sends all statements in one request through the schema's batch template, under the statement's
+    // control like a single statement: its query timeout and cancel() abort the request
+    public int[] executeBatch(List<QueryRequest> requests, StatementOptions options) throws SQLException {
+        QueryControl control = options.control;
+        long execution = control.begin(options.queryTimeoutMs);
+        try {
+            return sendBatch(requests, call(endpoints.pick(), options.queryTimeoutMs,
+                action -> control.onAbort(execution, action), List.of(), null));
+        } catch (SQLException e) {
+            throw control.translate(execution, e);
+        } finally {
+            control.finish(execution);
         }
+    }
 
-        // Parse rows
-        List<List<Object>> rows = new ArrayList<>();
-        if (schema.rowsAsObjects) {
-            List<Map<String, Object>> rowMaps = JsonPath.read(body, schema.rowsPath);
-            for (Map<String, Object> rowMap : rowMaps) {
-                rows.add(columns.stream().map(rowMap::get).toList());
+    private int[] sendBatch(List<QueryRequest> requests, Call call) throws SQLException {
+        resultCache.invalidateAll();
+        try {
+            RequestBuffer buffer = new RequestBuffer();
+            // The template's only placeholder is ${statements}
+            schema.compiledBatchTemplate.write(buffer, (index, quoted, out) -> {
+                for (int i = 0; i < requests.size(); i++) {
+                    if (i > 0) out.write(',');
+                    writeRequestBody(parse(requests.get(i).sql(), requests.get(i).parameters()), requests.get(i).parameters(), 0, call.timeoutMs(), out);
+                }
+            });
+            byte[] body = buffer.toByteArray();
+            Endpoint endpoint = call.endpoint();
+            try (TransportResponse response = endpoint.send(new TransportRequest(endpoint.uri(), headers(call), body, readTimeoutMs), call.onAbort())) {
+                String responseBody = readFully(response.body());
+                resultCache.invalidateAll();
+                wrote();
+                if (response.statusCode() == 200) return decoder.decodeBatchCounts(responseBody, requests.size());
+                String error = decoder.decodeError(responseBody);
+                throw serverError(response, error != null ? error : "Server error: " + responseBody);
             }
+        } catch (IOException e) {
+            throw new SQLException("Failed to execute batch over HTTP", e);
+        }
+    }
+
+    byte[] buildRequestBody(ParsedSql sql, List<QueryRequest.Parameter> parameters, RequestBuffer buffer) throws IOException {
+        return buildRequestBody(sql, parameters, 0, 0, buffer);
+    }
+
+    private byte[] buildRequestBody(ParsedSql sql, List<QueryRequest.Parameter> parameters, int fetchSize, long timeoutMs,
+                                    RequestBuffer buffer) throws IOException {
+        buffer.reset();
+        writeRequestBody(sql, parameters, fetchSize, timeoutMs, buffer);
+        return buffer.toByteArray();
+    }
+
+    private void writeRequestBody(ParsedSql sql, List<QueryRequest.Parameter> parameters, int fetchSize, long timeoutMs,
+                                  RequestBuffer out) throws IOException {
+        // For plain text requests or empty parameter template, inline parameters into SQL
+        if (schema.requestContentType.equals("text/plain") || schema.parameterTemplate.isEmpty()) {
+            sql.write(out, parameters, this::writeInlineValue);
+            return;
+        }
+        // Placeholders are ${sql} (0), ${parameters} (1), ${fetchSize} (2) and ${timeoutMs} (3)
+        schema.compiledRequestTemplate.write(out, (index, quoted, buf) -> {
+            if (index == 0) writeText(sql.sql(), quoted, buf);
+            else if (index == 1) writeParameters(parameters, buf);
+            else if (index == 2) buf.writeUtf8(Integer.toString(fetchSize));
+            else buf.writeUtf8(Long.toString(timeoutMs));
+        });
+    }
+
+    private void writeParameters(List<QueryRequest.Parameter> parameters, RequestBuffer out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) out.write(',');
+            QueryRequest.Parameter p = parameters.get(i);
+            // Placeholders are ${value} (0) and ${type} (1)
+            schema.compiledParameterTemplate.write(out, (index, quoted, buf) -> {
+                if (index == 0) writeJsonValue(p == null ? null : p.value(), buf);
+                else writeText(p == null ? "null" : p.type(), quoted, buf);
+            });
+        }
+        out.write(']');
+    }
+
+    private void writeJsonValue(Object value, RequestBuffer out) throws IOException {
+        if (value == null) {
+            out.writeUtf8("null");
+        } else if (value instanceof String s) {
+            out.write('"');
+            out.writeJsonString(s);
+            out.write('"');
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                   || value instanceof Byte || value instanceof Boolean) {
+            out.writeUtf8(value.toString());
         } else {
-            rows = JsonPath.read(body, schema.rowsPath);
+            objectMapper.writeValue(out, value);
+        }
+    }
+
+    private static void writeText(String text, boolean quoted, RequestBuffer out) {
+        if (quoted) out.writeJsonString(text);
+        else out.writeUtf8(text);
+    }
+
+    private void writeInlineValue(QueryRequest.Parameter p, RequestBuffer out) {
+        if (p == null || p.value() == null) {
+            out.writeUtf8("NULL");
+            return;
+        }
+        Object v = p.value();
+        switch (p.type()) {
+            case "string", "date", "time", "timestamp" -> writeSqlString(v.toString(), out);
+            case "boolean" -> out.writeUtf8(((Boolean) v) ? "TRUE" : "FALSE");
+            default -> out.writeUtf8(v.toString());
+        }
+    }
+
+    // Single-quoted SQL literal, embedded quotes doubled
+    private static void writeSqlString(String s, RequestBuffer out) {
+        out.write('\'');
+        int start = 0;
+        for (int quote = s.indexOf('\''); quote >= 0; quote = s.indexOf('\'', start)) {
+            out.writeUtf8(s, start, quote + 1);
+            out.write('\'');
+            start = quote + 1;
         }
-        return new QueryResult(columns, rows, -1);
+        out.writeUtf8(s, start, s.length());
+        out.write('\'');
     }
 
     private String readFully(InputStream is) throws IOException {
         if (is == null) return "";
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) sb.append(line).append("\n");
-            return sb.toString().trim();
+        try (is) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8).trim();
         }
     }
 
     // Remaining Connection interface methods
-    @Override public Statement createStatement(int t, int c) throws SQLException { return createStatement(); }
-    @Override public PreparedStatement prepareStatement(String sql, int t, int c) throws SQLException { return prepareStatement(sql); }
+    @Override public Statement createStatement(int t, int c) throws SQLException { checkClosed(); return new HttpJdbcStatement(this, t, logger.getLogLevel()); }
+    @Override public PreparedStatement prepareStatement(String sql, int t, int c) throws SQLException { checkClosed(); return new HttpJdbcPreparedStatement(this, statementCache.plan(sql), t, logger.getLogLevel()); }
     @Override public CallableStatement prepareCall(String sql, int t, int c) throws SQLException { throw new SQLFeatureNotSupportedException("CallableStatement not supported"); }
     @Override public Map<String, Class<?>> getTypeMap() { return new HashMap<>(); }
     @Override public void setTypeMap(Map<String, Class<?>> map) {}
@@ -259,8 +745,8 @@ public class HttpJdbcConnection implements Connection {
     @Override public Savepoint setSavepoint(String name) throws SQLException { throw new SQLFeatureNotSupportedException("Savepoints not supported"); }
     @Override public void rollback(Savepoint sp) throws SQLException { throw new SQLFeatureNotSupportedException("Savepoints not supported"); }
     @Override public void releaseSavepoint(Savepoint sp) throws SQLException { throw new SQLFeatureNotSupportedException("Savepoints not supported"); }
-    @Override public Statement createStatement(int t, int c, int h) throws SQLException { return createStatement(); }
-    @Override public PreparedStatement prepareStatement(String sql, int t, int c, int h) throws SQLException { return prepareStatement(sql); }
+    @Override public Statement createStatement(int t, int c, int h) throws SQLException { return createStatement(t, c); }
+    @Override public PreparedStatement prepareStatement(String sql, int t, int c, int h) throws SQLException { return prepareStatement(sql, t, c); }
     @Override public CallableStatement prepareCall(String sql, int t, int c, int h) throws SQLException { throw new SQLFeatureNotSupportedException("CallableStatement not supported"); }
     @Override public PreparedStatement prepareStatement(String sql, int k) throws SQLException { return prepareStatement(sql); }
     @Override public PreparedStatement prepareStatement(String sql, int[] idx) throws SQLException { return prepareStatement(sql); }
@@ -281,6 +767,6 @@ public class HttpJdbcConnection implements Connection {
     @Override public void abort(Executor executor) { closed = true; }
     @Override public void setNetworkTimeout(Executor executor, int ms) {}
     @Override public int getNetworkTimeout() { return 0; }
-    @Override public <T> T unwrap(Class<T> iface) throws SQLException { throw new SQLException("Cannot unwrap to " + iface.getName()); }
-    @Override public boolean isWrapperFor(Class<?> iface) { return false; }
+    @Override public <T> T unwrap(Class<T> iface) throws SQLException { if (iface.isInstance(this)) return iface.cast(this); throw new SQLException("Cannot unwrap to " + iface.getName()); }
+    @Override public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
 }
@@ -0,0 +1,127 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.logging.Logger;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+
+// A pooling DataSource for the driver, configured as a JavaBean: url, user, password and the driver's
+// connection properties, plus the pool's size and timeouts. The pool starts with the first getConnection(),
+// after which its settings are fixed. As a ConnectionPoolDataSource it also hands unpooled
+// PooledConnections to an application server's own pool.
+public class HttpJdbcDataSource implements DataSource, ConnectionPoolDataSource, AutoCloseable {
+    private String url;
+    private String user;
+    private String password;
+    private final Properties properties = new Properties();
+    private int minPoolSize = 0;
+    private int maxPoolSize = 10;
+    private long idleTimeout = 600000;  // ms an idle connection above minPoolSize is kept
+    private long connectionTimeout = 30000;  // ms getConnection() waits for a connection at maxPoolSize
+    private PrintWriter logWriter;
+    private int loginTimeout;
+    private volatile ConnectionPool pool;
+
+    public HttpJdbcDataSource() {}
+
+    public HttpJdbcDataSource(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) current = startPool();
+        return current.getConnection();
+    }
+
+    // Other credentials than the pool's get a connection of their own
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (Objects.equals(username, user) && Objects.equals(password, this.password)) return getConnection();
+        return connect(username, password);
+    }
+
+    private synchronized ConnectionPool startPool() throws SQLException {
+        if (pool == null) {
+            if (url == null) throw new SQLException("HttpJdbcDataSource has no url");
+            pool = new ConnectionPool(this::getPooledConnection, minPoolSize, maxPoolSize, idleTimeout, connectionTimeout);
+        }
+        return pool;
+    }
+
+    @Override
+    public HttpJdbcPooledConnection getPooledConnection() throws SQLException {
+        return getPooledConnection(user, password);
+    }
+
+    @Override
+    public HttpJdbcPooledConnection getPooledConnection(String username, String password) throws SQLException {
+        return new HttpJdbcPooledConnection(connect(username, password));
+    }
+
+    private HttpJdbcConnection connect(String username, String password) throws SQLException {
+        Properties info = new Properties();
+        info.putAll(properties);
+        if (username != null) info.setProperty("user", username);
+        if (password != null) info.setProperty("password", password);
+        Connection connection = HttpJdbcDriver.instance().connect(url, info);
+        if (connection == null) throw new SQLException("Not an HTTP JDBC URL: " + url);
+        return (HttpJdbcConnection) connection;
+    }
+
+    // Closes the pool and its connections; the next getConnection() starts a new one
+    @Override
+    public synchronized void close() {
+        if (pool != null) pool.close();
+        pool = null;
+    }
+
+    // The running pool, null before the first getConnection()
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    private void checkNotStarted() {
+        if (pool != null) throw new IllegalStateException("The pool has started: its settings can no longer change");
+    }
+
+    public String getUrl() { return url; }
+    public String getUser() { return user; }
+    public int getMinPoolSize() { return minPoolSize; }
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public long getIdleTimeout() { return idleTimeout; }
+    public long getConnectionTimeout() { return connectionTimeout; }
+
+    public synchronized void setUrl(String url) { checkNotStarted(); this.url = url; }
+    public synchronized void setUser(String user) { checkNotStarted(); this.user = user; }
+    public synchronized void setPassword(String password) { checkNotStarted(); this.password = password; }
+    public synchronized void setMinPoolSize(int minPoolSize) { checkNotStarted(); this.minPoolSize = minPoolSize; }
+    public synchronized void setMaxPoolSize(int maxPoolSize) { checkNotStarted(); this.maxPoolSize = maxPoolSize; }
+    public synchronized void setIdleTimeout(long idleTimeout) { checkNotStarted(); this.idleTimeout = idleTimeout; }
+    public synchronized void setConnectionTimeout(long connectionTimeout) { checkNotStarted(); this.connectionTimeout = connectionTimeout; }
+
+    // Any of the driver's connection properties (see CONFIGURATION.md)
+    public synchronized void setProperty(String name, String value) { checkNotStarted(); properties.setProperty(name, value); }
+    public synchronized void setProperties(Properties properties) { checkNotStarted(); this.properties.putAll(properties); }
+
+    @Override public PrintWriter getLogWriter() { return logWriter; }
+    @Override public void setLogWriter(PrintWriter out) { this.logWriter = out; }
+    @Override public void setLoginTimeout(int seconds) { this.loginTimeout = seconds; }
+    @Override public int getLoginTimeout() { return loginTimeout; }
+    @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+}
@@ -1,46 +1,112 @@
 package io.github.fall14123.jdbc.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.net.*;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class HttpJdbcDriver implements Driver {
     private static final String URL_PREFIX = "jdbc:http://";
     private static final String URL_PREFIX_SSL = "jdbc:https://";
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, HttpTransport> transports = new ConcurrentHashMap<>();
+    private final Map<String, EndpointGroup> endpointGroups = new ConcurrentHashMap<>();
+    private final ResultCache resultCache = new ResultCache();
+    private final AtomicReference<StatementCache> sharedStatementCache = new AtomicReference<>();
+
+    // The registered driver; a DataSource connects through it too, sharing its transports and caches
+    private static final HttpJdbcDriver INSTANCE = new HttpJdbcDriver();
 
     static {
         try {
-            DriverManager.registerDriver(new HttpJdbcDriver());
+            DriverManager.registerDriver(INSTANCE);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to register HttpJdbcDriver", e);
         }
     }
 
+    static HttpJdbcDriver instance() {
+        return INSTANCE;
+    }
+
     @Override
     public Connection connect(String url, Properties info) throws SQLException {
         if (!acceptsURL(url)) return null;
 
         try {
-            URL serverUrl = parseJdbcUrl(url);
-            String username = info.getProperty("user", "");
-            String password = info.getProperty("password", "");
-            LogLevel logLevel = LogLevel.fromString(info.getProperty("logLevel", System.getProperty("jdbc.http.log.level", "INFO")));
-            int connectTimeout = parseInt(info.getProperty("connectTimeout", System.getProperty("jdbc.http.connect.timeout", "30000")), 30000);
-            int readTimeout = parseInt(info.getProperty("readTimeout", System.getProperty("jdbc.http.read.timeout", "60000")), 60000);
-            boolean keepAlive = Boolean.parseBoolean(info.getProperty("keepAlive", System.getProperty("jdbc.http.keep.alive", "true")));
-            
+            List<URL> serverUrls = parseJdbcUrl(url);
+            ConnectionConfig config = ConnectionConfig.fromProperties(info);
+            // Anything else would quietly run as HTTP/1.1, e.g. a misspelled "http2"
+            if (!config.protocol.equalsIgnoreCase("http1.1") && !config.isHttp2()) {
+                throw new SQLException("Unknown protocol: " + config.protocol + ", expected http1.1, h2 or h2c");
+            }
+            if (config.protocol.equalsIgnoreCase("h2") && !serverUrls.get(0).getProtocol().equals("https")) {
+                throw new SQLException("protocol=h2 requires a jdbc:https:// URL, use protocol=h2c for cleartext");
+            }
+
             // Load schema config - default to "flock", can be overridden via property
-            String schemaName = info.getProperty("schema", System.getProperty("jdbc.http.schema", "flock"));
-            SchemaConfig schema = SchemaConfig.load(schemaName);
-            
-            return new HttpJdbcConnection(serverUrl, username, password, objectMapper, logLevel, connectTimeout, readTimeout, keepAlive, schema);
+            SchemaConfig schema = SchemaConfig.load(config.schemaName);
+
+            // readEndpoints and writeEndpoints split reads and writes over two groups of nodes
+            EndpointGroup endpoints = endpointGroup(serverUrls, config, schema);
+            EndpointGroup writeEndpoints = config.writeEndpoints.isEmpty() ? endpoints
+                : endpointGroup(endpointUrls(config.writeEndpoints, serverUrls.get(0)), config, schema);
+            EndpointGroup readEndpoints = config.readEndpoints.isEmpty() ? endpoints
+                : endpointGroup(endpointUrls(config.readEndpoints, serverUrls.get(0)), config, schema);
+            // One result cache per driver, so a write through any connection invalidates it
+            if (config.resultCacheSize > 0) resultCache.configure(config.resultCacheSize, config.resultCacheMaxBytes);
+            return new HttpJdbcConnection(writeEndpoints, readEndpoints, config, objectMapper, schema, resultCache, statementCache(config));
         } catch (Exception e) {
             throw new SQLException("Failed to connect to HTTP JDBC server", e);
         }
     }
 
+    // Connections to the same hosts share the group, and each host's pooled transport
+    private EndpointGroup endpointGroup(List<URL> serverUrls, ConnectionConfig config, SchemaConfig schema)
+            throws URISyntaxException, IOException {
+        String key = config.endpointGroupKey(serverUrls, schema.urlSuffix);
+        EndpointGroup group = endpointGroups.get(key);
+        if (group != null) return group;
+        Endpoint[] endpoints = new Endpoint[serverUrls.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            URL serverUrl = serverUrls.get(i);
+            endpoints[i] = new Endpoint(i, new URI(serverUrl + schema.urlSuffix), transport(serverUrl, config),
+                new CircuitBreaker(config.circuitBreakerThreshold, config.circuitBreakerDelayMs));
+        }
+        group = new EndpointGroup(endpoints, config, HttpJdbcConnection.requestHeaders(config, schema), HttpJdbcConnection.probeBody(schema));
+        EndpointGroup existing = endpointGroups.putIfAbsent(key, group);
+        return existing != null ? existing : group;
+    }
+
+    // Built outside the map: computeIfAbsent would hold a bin lock while the client starts,
+    // blocking (and pinning, for virtual threads) every other connect hashing to that bin
+    private HttpTransport transport(URL serverUrl, ConnectionConfig config) {
+        String key = config.transportKey(serverUrl);
+        HttpTransport transport = transports.get(key);
+        if (transport != null) return transport;
+        HttpTransport created = HttpTransport.create(serverUrl, config);
+        transport = transports.putIfAbsent(key, created);
+        if (transport == null) return created;
+        created.close();
+        return transport;
+    }
+
+    // The driver-wide cache is sized by the first connection that asks for it
+    private StatementCache statementCache(ConnectionConfig config) {
+        if (!config.prepStmtCacheScope.equalsIgnoreCase("driver")) return new StatementCache(config.prepStmtCacheSize);
+        StatementCache cache = sharedStatementCache.get();
+        if (cache != null) return cache;
+        sharedStatementCache.compareAndSet(null, new StatementCache(config.prepStmtCacheSize));
+        return sharedStatementCache.get();
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
     @Override
     public boolean acceptsURL(String url) {
         return url != null && (url.startsWith(URL_PREFIX) || url.startsWith(URL_PREFIX_SSL));
@@ -52,13 +118,35 @@ public class HttpJdbcDriver implements Driver {
     @Override public boolean jdbcCompliant() { return false; }
     @Override public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
 
-    private URL parseJdbcUrl(String url) throws MalformedURLException {
-        if (url.startsWith(URL_PREFIX)) return new URL("http://" + url.substring(URL_PREFIX.length()));
-        if (url.startsWith(URL_PREFIX_SSL)) return new URL("https://" + url.substring(URL_PREFIX_SSL.length()));
-        throw new MalformedURLException("Invalid JDBC URL: " + url);
+    // readEndpoints=h1:9999,h2:9999 names hosts only, reached with the scheme, path and query of the URL
+    static List<URL> endpointUrls(String hosts, URL url) throws MalformedURLException {
+        return parseJdbcUrl("jdbc:" + url.getProtocol() + "://" + hosts + url.getFile());
     }
 
-    private int parseInt(String value, int defaultValue) {
-        try { return Integer.parseInt(value); } catch (NumberFormatException e) { return defaultValue; }
+    // jdbc:http://h1:9999,h2:9999/path lists replicas: one URL per host, each with the same path and query
+    static List<URL> parseJdbcUrl(String url) throws MalformedURLException {
+        String scheme;
+        String rest;
+        if (url.startsWith(URL_PREFIX)) {
+            scheme = "http://";
+            rest = url.substring(URL_PREFIX.length());
+        } else if (url.startsWith(URL_PREFIX_SSL)) {
+            scheme = "https://";
+            rest = url.substring(URL_PREFIX_SSL.length());
+        } else {
+            throw new MalformedURLException("Invalid JDBC URL: " + url);
+        }
+        int end = rest.length();
+        for (char c : new char[] {'/', '?', '#'}) {
+            int at = rest.indexOf(c);
+            if (at >= 0) end = Math.min(end, at);
+        }
+        String file = rest.substring(end);
+        List<URL> urls = new ArrayList<>();
+        for (String host : rest.substring(0, end).split(",")) {
+            if (host.isBlank()) throw new MalformedURLException("Empty host in JDBC URL: " + url);
+            urls.add(new URL(scheme + host.trim() + file));
+        }
+        return urls;
     }
 }
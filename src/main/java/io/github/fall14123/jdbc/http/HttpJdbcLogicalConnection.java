@@ -0,0 +1,147 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+// What a pool hands out: the physical connection until close(), which closes the statements opened
+// through it, undoes its changes to the connection's settings and returns the physical connection to the
+// pool. A closed logical connection fails every call, as a closed connection would.
+public class HttpJdbcLogicalConnection implements Connection {
+    private final HttpJdbcConnection connection;
+    private final HttpJdbcPooledConnection pooled;
+    private final List<Statement> statements = new ArrayList<>();
+    private Boolean autoCommitBefore;  // the settings to restore, once changed
+    private Boolean readOnlyBefore;
+    private boolean closed;
+
+    HttpJdbcLogicalConnection(HttpJdbcConnection connection, HttpJdbcPooledConnection pooled) {
+        this.connection = connection;
+        this.pooled = pooled;
+    }
+
+    private HttpJdbcConnection live() throws SQLException {
+        if (closed) throw new SQLException("Connection is closed");
+        return connection;
+    }
+
+    private <T extends Statement> T track(T statement) throws SQLException {
+        // A connection held for long may go through many statements: forget the closed ones now and then
+        if (statements.size() >= 64) {
+            for (int i = statements.size() - 1; i >= 0; i--) {
+                if (statements.get(i).isClosed()) statements.remove(i);
+            }
+        }
+        statements.add(statement);
+        // getConnection() must not lead past the pool to the physical connection
+        if (statement instanceof HttpJdbcStatement http) http.handOut(this);
+        return statement;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        reset();
+        pooled.logicalClosed(this);
+    }
+
+    // Closed by the pooled connection itself, which stays where it is
+    void detach() {
+        if (closed) return;
+        try {
+            reset();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void reset() throws SQLException {
+        closed = true;
+        for (Statement statement : statements) statement.close();
+        statements.clear();
+        if (autoCommitBefore != null) connection.setAutoCommit(autoCommitBefore);
+        if (readOnlyBefore != null) connection.setReadOnly(readOnlyBefore);
+    }
+
+    @Override
+    public void abort(Executor executor) throws SQLException {
+        if (closed) return;
+        closed = true;
+        connection.abort(executor);
+        pooled.logicalFailed(new SQLException("Connection was aborted"));
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        if (autoCommitBefore == null) autoCommitBefore = live().getAutoCommit();
+        connection.setAutoCommit(autoCommit);
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        if (readOnlyBefore == null) readOnlyBefore = live().isReadOnly();
+        connection.setReadOnly(readOnly);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        return live().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || live().isWrapperFor(iface);
+    }
+
+    @Override public boolean isClosed() { return closed || connection.isClosed(); }
+    @Override public boolean isValid(int timeout) { return !isClosed(); }
+    @Override public Statement createStatement() throws SQLException { return track(live().createStatement()); }
+    @Override public PreparedStatement prepareStatement(String sql) throws SQLException { return track(live().prepareStatement(sql)); }
+    @Override public CallableStatement prepareCall(String sql) throws SQLException { return track(live().prepareCall(sql)); }
+    @Override public Statement createStatement(int t, int c) throws SQLException { return track(live().createStatement(t, c)); }
+    @Override public PreparedStatement prepareStatement(String sql, int t, int c) throws SQLException { return track(live().prepareStatement(sql, t, c)); }
+    @Override public CallableStatement prepareCall(String sql, int t, int c) throws SQLException { return track(live().prepareCall(sql, t, c)); }
+    @Override public Statement createStatement(int t, int c, int h) throws SQLException { return track(live().createStatement(t, c, h)); }
+    @Override public PreparedStatement prepareStatement(String sql, int t, int c, int h) throws SQLException { return track(live().prepareStatement(sql, t, c, h)); }
+    @Override public CallableStatement prepareCall(String sql, int t, int c, int h) throws SQLException { return track(live().prepareCall(sql, t, c, h)); }
+    @Override public PreparedStatement prepareStatement(String sql, int k) throws SQLException { return track(live().prepareStatement(sql, k)); }
+    @Override public PreparedStatement prepareStatement(String sql, int[] idx) throws SQLException { return track(live().prepareStatement(sql, idx)); }
+    @Override public PreparedStatement prepareStatement(String sql, String[] names) throws SQLException { return track(live().prepareStatement(sql, names)); }
+    @Override public String nativeSQL(String sql) throws SQLException { return live().nativeSQL(sql); }
+    @Override public boolean getAutoCommit() throws SQLException { return live().getAutoCommit(); }
+    @Override public void commit() throws SQLException { live().commit(); }
+    @Override public void rollback() throws SQLException { live().rollback(); }
+    @Override public DatabaseMetaData getMetaData() throws SQLException { live(); return new HttpJdbcDatabaseMetaData(this); }
+    @Override public boolean isReadOnly() throws SQLException { return live().isReadOnly(); }
+    @Override public void setCatalog(String catalog) throws SQLException { live().setCatalog(catalog); }
+    @Override public String getCatalog() throws SQLException { return live().getCatalog(); }
+    @Override public void setTransactionIsolation(int level) throws SQLException { live().setTransactionIsolation(level); }
+    @Override public int getTransactionIsolation() throws SQLException { return live().getTransactionIsolation(); }
+    @Override public SQLWarning getWarnings() throws SQLException { return live().getWarnings(); }
+    @Override public void clearWarnings() throws SQLException { live().clearWarnings(); }
+    @Override public Map<String, Class<?>> getTypeMap() throws SQLException { return live().getTypeMap(); }
+    @Override public void setTypeMap(Map<String, Class<?>> map) throws SQLException { live().setTypeMap(map); }
+    @Override public void setHoldability(int h) throws SQLException { live().setHoldability(h); }
+    @Override public int getHoldability() throws SQLException { return live().getHoldability(); }
+    @Override public Savepoint setSavepoint() throws SQLException { return live().setSavepoint(); }
+    @Override public Savepoint setSavepoint(String name) throws SQLException { return live().setSavepoint(name); }
+    @Override public void rollback(Savepoint sp) throws SQLException { live().rollback(sp); }
+    @Override public void releaseSavepoint(Savepoint sp) throws SQLException { live().releaseSavepoint(sp); }
+    @Override public Clob createClob() throws SQLException { return live().createClob(); }
+    @Override public Blob createBlob() throws SQLException { return live().createBlob(); }
+    @Override public NClob createNClob() throws SQLException { return live().createNClob(); }
+    @Override public SQLXML createSQLXML() throws SQLException { return live().createSQLXML(); }
+    @Override public void setClientInfo(String name, String value) throws SQLClientInfoException { if (!closed) connection.setClientInfo(name, value); }
+    @Override public void setClientInfo(Properties props) throws SQLClientInfoException { if (!closed) connection.setClientInfo(props); }
+    @Override public String getClientInfo(String name) throws SQLException { return live().getClientInfo(name); }
+    @Override public Properties getClientInfo() throws SQLException { return live().getClientInfo(); }
+    @Override public Array createArrayOf(String typeName, Object[] elements) throws SQLException { return live().createArrayOf(typeName, elements); }
+    @Override public Struct createStruct(String typeName, Object[] attrs) throws SQLException { return live().createStruct(typeName, attrs); }
+    @Override public void setSchema(String schema) throws SQLException { live().setSchema(schema); }
+    @Override public String getSchema() throws SQLException { return live().getSchema(); }
+    @Override public void setNetworkTimeout(Executor executor, int ms) throws SQLException { live().setNetworkTimeout(executor, ms); }
+    @Override public int getNetworkTimeout() throws SQLException { return live().getNetworkTimeout(); }
+}
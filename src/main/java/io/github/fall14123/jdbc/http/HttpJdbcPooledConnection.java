@@ -0,0 +1,85 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+
+// A physical connection as a pool holds it, ours (ConnectionPool) or an application server's.
+// getConnection() hands out a logical connection whose close() gives this one back to the pool, through
+// the listeners, instead of closing it. The physical connection keeps its statement cache, so parsed
+// statements and server-side handles outlive each borrow.
+public class HttpJdbcPooledConnection implements PooledConnection {
+    static final int IDLE = 0;
+    static final int IN_USE = 1;
+    static final int REMOVED = -1;
+
+    private final HttpJdbcConnection connection;
+    private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StatementEventListener> statementListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger state = new AtomicInteger(IDLE);  // for ConnectionPool
+    private volatile long idleSince = System.nanoTime();
+    private HttpJdbcLogicalConnection handle;  // the open logical connection, if any
+
+    public HttpJdbcPooledConnection(HttpJdbcConnection connection) {
+        this.connection = connection;
+    }
+
+    // A new logical connection; the previous one, if still open, is closed without returning to the pool
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (connection.isClosed()) throw new SQLException("Pooled connection is closed");
+        if (handle != null) handle.detach();
+        handle = new HttpJdbcLogicalConnection(connection, this);
+        return handle;
+    }
+
+    void logicalClosed(HttpJdbcLogicalConnection closed) {
+        if (handle != closed) return;
+        handle = null;
+        ConnectionEvent event = new ConnectionEvent(this);
+        for (ConnectionEventListener listener : listeners) listener.connectionClosed(event);
+    }
+
+    // The physical connection is no longer usable, e.g. after abort()
+    void logicalFailed(SQLException e) {
+        ConnectionEvent event = new ConnectionEvent(this, e);
+        for (ConnectionEventListener listener : listeners) listener.connectionErrorOccurred(event);
+    }
+
+    HttpJdbcConnection physical() { return connection; }
+
+    // Pool bookkeeping: a connection is reserved by one borrower at a time
+    boolean reserve() { return state.compareAndSet(IDLE, IN_USE); }
+    boolean isIdle() { return state.get() == IDLE; }
+    boolean evict() { return state.compareAndSet(IDLE, REMOVED); }
+    boolean remove() { return state.getAndSet(REMOVED) != REMOVED; }
+    long idleNanos(long now) { return now - idleSince; }
+
+    void released() {
+        idleSince = System.nanoTime();
+        state.set(IDLE);
+    }
+
+    // Cheap: HTTP connections hold no socket of their own, so a connection that is not closed works
+    boolean isUsable() {
+        return !connection.isClosed();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (handle != null) handle.detach();
+        handle = null;
+        connection.close();
+    }
+
+    @Override public void addConnectionEventListener(ConnectionEventListener listener) { listeners.add(listener); }
+    @Override public void removeConnectionEventListener(ConnectionEventListener listener) { listeners.remove(listener); }
+    @Override public void addStatementEventListener(StatementEventListener listener) { statementListeners.add(listener); }
+    @Override public void removeStatementEventListener(StatementEventListener listener) { statementListeners.remove(listener); }
+}
@@ -6,45 +6,130 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 public class HttpJdbcPreparedStatement extends HttpJdbcStatement implements PreparedStatement {
+    // Rows per rewritten multi-row INSERT, keeping request bodies bounded
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
     private final String sql;
+    private final StatementCache.Plan plan;
+    private final ParsedSql parsedSql;
+    private final RequestBuffer requestBuffer = new RequestBuffer();
     private final List<QueryRequest.Parameter> parameters;
+    private final List<List<QueryRequest.Parameter>> batchParameters = new ArrayList<>();
 
     public HttpJdbcPreparedStatement(HttpJdbcConnection connection, String sql, LogLevel logLevel) {
-        super(connection, logLevel);
-        this.sql = sql;
-        int count = (int) sql.chars().filter(c -> c == '?').count();
-        this.parameters = new ArrayList<>(count);
-        for (int i = 0; i < count; i++) parameters.add(null);
+        this(connection, sql, ResultSet.TYPE_FORWARD_ONLY, logLevel);
+    }
+
+    public HttpJdbcPreparedStatement(HttpJdbcConnection connection, String sql, int resultSetType, LogLevel logLevel) {
+        this(connection, new StatementCache.Plan(sql), resultSetType, logLevel);
+    }
+
+    public HttpJdbcPreparedStatement(HttpJdbcConnection connection, StatementCache.Plan plan, int resultSetType, LogLevel logLevel) {
+        super(connection, resultSetType, logLevel);
+        this.sql = plan.text();
+        this.plan = plan;
+        this.parsedSql = plan.sql();
+        this.parameters = plan.parameters();
     }
 
     @Override
     public ResultSet executeQuery() throws SQLException {
-        QueryResult result = connection.executeQuery(sql, parameters);
-        currentResultSet = new HttpJdbcResultSet(result);
+        checkClosed();
+        closeCurrentResultSet();
+        QueryResult result = connection.executeQuery(plan, parameters, requestBuffer, options);
+        currentResultSet = openResultSet(result);
         return currentResultSet;
     }
 
     @Override
     public int executeUpdate() throws SQLException {
-        return connection.executeQuery(sql, parameters).getUpdateCount();
+        checkClosed();
+        closeCurrentResultSet();
+        currentUpdateCount = updateCountOf(connection.executeQuery(plan, parameters, requestBuffer, options));
+        return currentUpdateCount;
     }
 
     @Override
     public boolean execute() throws SQLException {
-        QueryResult result = connection.executeQuery(sql, parameters);
+        checkClosed();
+        closeCurrentResultSet();
+        QueryResult result = connection.executeQuery(plan, parameters, requestBuffer, options);
         if (result.getColumns() != null) {
-            currentResultSet = new HttpJdbcResultSet(result);
+            currentResultSet = openResultSet(result);
+            currentUpdateCount = -1;
             return true;
         }
         currentUpdateCount = result.getUpdateCount();
         return false;
     }
 
+    @Override
+    public void addBatch() throws SQLException {
+        checkClosed();
+        batchParameters.add(new ArrayList<>(parameters));
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        throw new SQLException("addBatch(String) cannot be called on a PreparedStatement");
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkClosed();
+        batchParameters.clear();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkClosed();
+        closeCurrentResultSet();
+        List<List<QueryRequest.Parameter>> parameterSets = new ArrayList<>(batchParameters);
+        batchParameters.clear();
+        MultiRowInsert insert = connection.supportsBatchRequests() ? null : plan.multiRowInsert();
+        if (insert == null || parameters.isEmpty()) {
+            List<QueryRequest> requests = new ArrayList<>(parameterSets.size());
+            for (List<QueryRequest.Parameter> parameterSet : parameterSets) requests.add(new QueryRequest(sql, parameterSet));
+            return executeBatch(requests);
+        }
+        return executeMultiRowInsert(insert, parameterSets);
+    }
+
+    // Sends the parameter sets as multi-row INSERTs. Rows get an update count of 1 when the
+    // statement's total matches its row count, SUCCESS_NO_INFO otherwise.
+    private int[] executeMultiRowInsert(MultiRowInsert insert, List<List<QueryRequest.Parameter>> parameterSets) throws SQLException {
+        int[] counts = new int[parameterSets.size()];
+        StatementOptions batchOptions = options.forBatch();
+        for (int start = 0; start < counts.length; start += MAX_ROWS_PER_INSERT) {
+            int rows = Math.min(MAX_ROWS_PER_INSERT, counts.length - start);
+            List<QueryRequest.Parameter> flattened = new ArrayList<>(rows * parameters.size());
+            for (int i = start; i < start + rows; i++) flattened.addAll(parameterSets.get(i));
+            try {
+                int total = updateCountOf(connection.executeQuery(insert.sql(rows), flattened, batchOptions));
+                Arrays.fill(counts, start, start + rows, total == rows ? 1 : SUCCESS_NO_INFO);
+            } catch (SQLException e) {
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(counts, start), e);
+            }
+        }
+        return counts;
+    }
+
+    // Hands the parameter list back to the plan for the next statement prepared from the same SQL
+    @Override
+    public void close() throws SQLException {
+        if (isClosed()) return;
+        super.close();
+        plan.release(parameters);
+    }
+
     private void setParam(int i, Object v, String t) throws SQLException {
+        checkClosed();
         if (i < 1 || i > parameters.size()) throw new SQLException("Parameter index out of range: " + i);
         parameters.set(i - 1, new QueryRequest.Parameter(v, t));
     }
@@ -72,7 +157,7 @@ public class HttpJdbcPreparedStatement extends HttpJdbcStatement implements Prep
     @Override public void setNull(int i, int t, String n) throws SQLException { setNull(i, t); }
     @Override public void setURL(int i, URL x) throws SQLException { setParam(i, x != null ? x.toString() : null, "string"); }
     @Override public void setNString(int i, String x) throws SQLException { setString(i, x); }
-    @Override public void clearParameters() { for (int i = 0; i < parameters.size(); i++) parameters.set(i, null); }
+    @Override public void clearParameters() throws SQLException { checkClosed(); Collections.fill(parameters, null); }
 
     // Unsupported operations
     @Override public void setAsciiStream(int i, InputStream x, int len) throws SQLException { throw new SQLFeatureNotSupportedException(); }
@@ -102,5 +187,4 @@ public class HttpJdbcPreparedStatement extends HttpJdbcStatement implements Prep
     @Override public void setClob(int i, Reader r) throws SQLException { throw new SQLFeatureNotSupportedException(); }
     @Override public void setBlob(int i, InputStream s) throws SQLException { throw new SQLFeatureNotSupportedException(); }
     @Override public void setNClob(int i, Reader r) throws SQLException { throw new SQLFeatureNotSupportedException(); }
-    @Override public void addBatch() throws SQLException { throw new SQLFeatureNotSupportedException(); }
 }
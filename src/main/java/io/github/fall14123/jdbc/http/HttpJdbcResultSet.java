@@ -10,50 +10,87 @@ import java.util.List;
 import java.util.Map;
 
 public class HttpJdbcResultSet implements ResultSet {
+    private static final int MAX_BATCH_ROWS = 1024;
+
     private final List<String> columns;
-    private final List<List<Object>> rows;
+    private final List<String> columnTypes;
+    private final int[] sqlTypes;
+    private final RowSource rowSource;
+    private RowBatch batch;
+    private int batchRow = -1;
     private int currentRowIndex = -1;
+    private int nextBatchSize = 1;
+    private int fetchSize = 0;
+    private boolean afterLast = false;
+    private boolean wasNull = false;
     private boolean closed = false;
 
     public HttpJdbcResultSet(QueryResult result) {
         this.columns = result.getColumns();
-        this.rows = result.getRows() != null ? result.getRows() : List.of();
+        this.columnTypes = result.getColumnTypes();
+        this.sqlTypes = result.getSqlTypes();
+        this.rowSource = result.takeRowSource();
+        this.batch = rowSource != null || result.getRowBatch() == null ? result.newRowBatch() : result.getRowBatch();
     }
 
     public HttpJdbcResultSet(List<String> columns, List<List<Object>> rows) {
         this.columns = columns;
-        this.rows = rows != null ? rows : List.of();
+        this.columnTypes = null;
+        this.sqlTypes = null;
+        this.rowSource = null;
+        this.batch = RowBatch.of(columns, null, rows);
     }
 
     @Override
     public boolean next() throws SQLException {
         checkClosed();
+        if (rowSource == null) {
+            currentRowIndex++;
+            batchRow = currentRowIndex;
+            return currentRowIndex < batch.size();
+        }
+        if (afterLast) return false;
+        if (batchRow + 1 < batch.size()) {
+            batchRow++;
+            currentRowIndex++;
+            return true;
+        }
+        RowBatch next = rowSource.nextBatch(batch, nextBatchSize);
+        // Batches grow geometrically, so the first row is available as soon as it arrives
+        nextBatchSize = Math.min(nextBatchSize * 2, MAX_BATCH_ROWS);
+        if (next == null) {
+            afterLast = true;
+            batchRow = -1;
+            return false;
+        }
+        batch = next;
+        batchRow = 0;
         currentRowIndex++;
-        return currentRowIndex < rows.size();
+        return true;
     }
 
+    // Releases the HTTP response, aborting it if rows are still unread
     @Override
     public void close() throws SQLException {
         closed = true;
+        if (rowSource != null) rowSource.close();
     }
 
     @Override
     public boolean wasNull() throws SQLException {
-        return false;
+        return wasNull;
     }
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        return value == null ? null : value.toString();
+        ColumnVector column = column(columnIndex);
+        return wasNull ? null : column.getString(batchRow);
     }
 
     @Override
     public boolean getBoolean(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        if (value == null) return false;
-        if (value instanceof Boolean) return (Boolean) value;
-        return Boolean.parseBoolean(value.toString());
+        ColumnVector column = column(columnIndex);
+        return !wasNull && column.getBoolean(batchRow);
     }
 
     @Override
@@ -74,34 +111,26 @@ public class HttpJdbcResultSet implements ResultSet {
 
     @Override
     public int getInt(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        if (value == null) return 0;
-        if (value instanceof Number) return ((Number) value).intValue();
-        return Integer.parseInt(value.toString());
+        ColumnVector column = column(columnIndex);
+        return wasNull ? 0 : column.getInt(batchRow);
     }
 
     @Override
     public long getLong(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        if (value == null) return 0;
-        if (value instanceof Number) return ((Number) value).longValue();
-        return Long.parseLong(value.toString());
+        ColumnVector column = column(columnIndex);
+        return wasNull ? 0 : column.getLong(batchRow);
     }
 
     @Override
     public float getFloat(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        if (value == null) return 0;
-        if (value instanceof Number) return ((Number) value).floatValue();
-        return Float.parseFloat(value.toString());
+        ColumnVector column = column(columnIndex);
+        return wasNull ? 0 : (float) column.getDouble(batchRow);
     }
 
     @Override
     public double getDouble(int columnIndex) throws SQLException {
-        Object value = getValue(columnIndex);
-        if (value == null) return 0;
-        if (value instanceof Number) return ((Number) value).doubleValue();
-        return Double.parseDouble(value.toString());
+        ColumnVector column = column(columnIndex);
+        return wasNull ? 0 : column.getDouble(batchRow);
     }
 
     @Override
@@ -218,7 +247,7 @@ public class HttpJdbcResultSet implements ResultSet {
 
     @Override
     public ResultSetMetaData getMetaData() throws SQLException {
-        return new HttpJdbcResultSetMetaData(columns);
+        return new HttpJdbcResultSetMetaData(columns, columnTypes, sqlTypes);
     }
 
     @Override
@@ -232,16 +261,22 @@ public class HttpJdbcResultSet implements ResultSet {
     }
 
     private Object getValue(int columnIndex) throws SQLException {
+        ColumnVector column = column(columnIndex);
+        return wasNull ? null : column.getObject(batchRow);
+    }
+
+    // Positions on the current row's vector for a column and records whether the value is null
+    private ColumnVector column(int columnIndex) throws SQLException {
         checkClosed();
-        if (currentRowIndex < 0 || currentRowIndex >= rows.size()) {
+        if (batchRow < 0 || batchRow >= batch.size() || afterLast) {
             throw new SQLException("No current row");
         }
         if (columnIndex < 1 || columnIndex > columns.size()) {
             throw new SQLException("Column index out of range: " + columnIndex);
         }
-        
-        List<Object> currentRow = rows.get(currentRowIndex);
-        return currentRow.get(columnIndex - 1);
+        ColumnVector column = batch.column(columnIndex - 1);
+        wasNull = column.isNull(batchRow);
+        return column;
     }
 
     private void checkClosed() throws SQLException {
@@ -250,60 +285,73 @@ public class HttpJdbcResultSet implements ResultSet {
         }
     }
 
+    private void checkScrollable() throws SQLException {
+        if (rowSource != null) {
+            throw new SQLException("Operation not supported on a TYPE_FORWARD_ONLY ResultSet");
+        }
+    }
+
     @Override
     public boolean isBeforeFirst() throws SQLException {
-        return currentRowIndex == -1;
+        return currentRowIndex == -1 && !afterLast;
     }
 
     @Override
     public boolean isAfterLast() throws SQLException {
-        return currentRowIndex >= rows.size();
+        return rowSource != null ? afterLast : currentRowIndex >= batch.size();
     }
 
     @Override
     public boolean isFirst() throws SQLException {
-        return currentRowIndex == 0;
+        return currentRowIndex == 0 && !afterLast;
     }
 
     @Override
     public boolean isLast() throws SQLException {
-        return currentRowIndex == rows.size() - 1;
+        if (rowSource != null) throw new SQLFeatureNotSupportedException("isLast is not supported on a streaming ResultSet");
+        return currentRowIndex == batch.size() - 1;
     }
 
     @Override
     public void beforeFirst() throws SQLException {
-        currentRowIndex = -1;
+        checkScrollable();
+        currentRowIndex = batchRow = -1;
     }
 
     @Override
     public void afterLast() throws SQLException {
-        currentRowIndex = rows.size();
+        checkScrollable();
+        currentRowIndex = batchRow = batch.size();
     }
 
     @Override
     public boolean first() throws SQLException {
-        if (rows.isEmpty()) return false;
-        currentRowIndex = 0;
+        checkScrollable();
+        if (batch.size() == 0) return false;
+        currentRowIndex = batchRow = 0;
         return true;
     }
 
     @Override
     public boolean last() throws SQLException {
-        if (rows.isEmpty()) return false;
-        currentRowIndex = rows.size() - 1;
+        checkScrollable();
+        if (batch.size() == 0) return false;
+        currentRowIndex = batchRow = batch.size() - 1;
         return true;
     }
 
     @Override
     public int getRow() throws SQLException {
-        if (currentRowIndex < 0 || currentRowIndex >= rows.size()) return 0;
+        if (rowSource != null) return afterLast ? 0 : currentRowIndex + 1;
+        if (currentRowIndex < 0 || currentRowIndex >= batch.size()) return 0;
         return currentRowIndex + 1;
     }
 
     @Override
     public boolean absolute(int row) throws SQLException {
-        if (row > 0 && row <= rows.size()) {
-            currentRowIndex = row - 1;
+        checkScrollable();
+        if (row > 0 && row <= batch.size()) {
+            currentRowIndex = batchRow = row - 1;
             return true;
         }
         return false;
@@ -316,8 +364,9 @@ public class HttpJdbcResultSet implements ResultSet {
 
     @Override
     public boolean previous() throws SQLException {
+        checkScrollable();
         if (currentRowIndex > 0) {
-            currentRowIndex--;
+            currentRowIndex = --batchRow;
             return true;
         }
         return false;
@@ -400,18 +449,24 @@ public class HttpJdbcResultSet implements ResultSet {
         return FETCH_FORWARD;
     }
 
+    // For a paged result, the size of the pages requested from now on
     @Override
     public void setFetchSize(int rows) throws SQLException {
+        checkClosed();
+        if (rows < 0) throw new SQLException("Fetch size must be >= 0: " + rows);
+        fetchSize = rows;
+        if (rowSource != null && rows > 0) rowSource.setFetchSize(rows);
     }
 
     @Override
     public int getFetchSize() throws SQLException {
-        return 0;
+        checkClosed();
+        return fetchSize;
     }
 
     @Override
     public int getType() throws SQLException {
-        return TYPE_SCROLL_INSENSITIVE;
+        return rowSource != null ? TYPE_FORWARD_ONLY : TYPE_SCROLL_INSENSITIVE;
     }
 
     @Override
@@ -1,14 +1,25 @@
 package io.github.fall14123.jdbc.http;
 
+import java.sql.JDBCType;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.List;
 
 public class HttpJdbcResultSetMetaData implements ResultSetMetaData {
     private final List<String> columnNames;
+    private final List<String> typeNames;
+    private final int[] sqlTypes;
 
     public HttpJdbcResultSetMetaData(List<String> columnNames) {
+        this(columnNames, null, null);
+    }
+
+    // typeNames are the server's names, sqlTypes their java.sql.Types mapping; untyped columns report VARCHAR
+    public HttpJdbcResultSetMetaData(List<String> columnNames, List<String> typeNames, int[] sqlTypes) {
         this.columnNames = columnNames;
+        this.typeNames = typeNames;
+        this.sqlTypes = sqlTypes;
     }
 
     @Override
@@ -43,7 +54,11 @@ public class HttpJdbcResultSetMetaData implements ResultSetMetaData {
 
     @Override
     public boolean isSigned(int column) throws SQLException {
-        return false;
+        return switch (getColumnType(column)) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT,
+                 Types.REAL, Types.FLOAT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC -> true;
+            default -> false;
+        };
     }
 
     @Override
@@ -71,12 +86,12 @@ public class HttpJdbcResultSetMetaData implements ResultSetMetaData {
 
     @Override
     public int getPrecision(int column) throws SQLException {
-        return 0;
+        return typeParameter(column, 0);
     }
 
     @Override
     public int getScale(int column) throws SQLException {
-        return 0;
+        return typeParameter(column, 1);
     }
 
     @Override
@@ -91,12 +106,20 @@ public class HttpJdbcResultSetMetaData implements ResultSetMetaData {
 
     @Override
     public int getColumnType(int column) throws SQLException {
-        return java.sql.Types.VARCHAR;
+        getColumnName(column);
+        if (sqlTypes == null || column > sqlTypes.length) return Types.VARCHAR;
+        return sqlTypes[column - 1];
     }
 
     @Override
     public String getColumnTypeName(int column) throws SQLException {
-        return "VARCHAR";
+        String typeName = typeName(column);
+        if (typeName != null) return typeName;
+        try {
+            return JDBCType.valueOf(getColumnType(column)).getName();
+        } catch (IllegalArgumentException e) {
+            return "OTHER";
+        }
     }
 
     @Override
@@ -116,7 +139,29 @@ public class HttpJdbcResultSetMetaData implements ResultSetMetaData {
 
     @Override
     public String getColumnClassName(int column) throws SQLException {
-        return String.class.getName();
+        if (sqlTypes == null) return String.class.getName();
+        return TypeMapping.className(getColumnType(column));
+    }
+
+    private String typeName(int column) throws SQLException {
+        getColumnName(column);
+        return typeNames != null && column <= typeNames.size() ? typeNames.get(column - 1) : null;
+    }
+
+    // Numeric parameters of a type name such as DECIMAL(18,3); 0 when absent
+    private int typeParameter(int column, int index) throws SQLException {
+        String typeName = typeName(column);
+        if (typeName == null) return 0;
+        int open = typeName.indexOf('(');
+        int close = typeName.indexOf(')', open + 1);
+        if (open < 0 || close < 0) return 0;
+        String[] params = typeName.substring(open + 1, close).split(",");
+        if (index >= params.length) return 0;
+        try {
+            return Integer.parseInt(params[index].trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     @Override
@@ -1,26 +1,38 @@
 package io.github.fall14123.jdbc.http;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class HttpJdbcStatement implements Statement {
     protected final HttpJdbcConnection connection;
     private final HttpJdbcLogger logger;
+    private final int resultSetType;
+    protected final StatementOptions options = new StatementOptions();
     protected ResultSet currentResultSet;
     protected int currentUpdateCount = -1;
+    private final List<String> batch = new ArrayList<>();
     private boolean closed = false;
+    private Connection handle;  // what getConnection() reports when a pool's logical connection opened this
 
     public HttpJdbcStatement(HttpJdbcConnection connection, LogLevel logLevel) {
+        this(connection, ResultSet.TYPE_FORWARD_ONLY, logLevel);
+    }
+
+    public HttpJdbcStatement(HttpJdbcConnection connection, int resultSetType, LogLevel logLevel) {
         this.connection = connection;
+        this.resultSetType = resultSetType;
         this.logger = new HttpJdbcLogger("HttpJdbcStatement", logLevel);
     }
 
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
         checkClosed();
-        QueryResult result = connection.executeQuery(sql);
+        closeCurrentResultSet();
+        QueryResult result = connection.executeQuery(sql, List.of(), options);
         if (result.getColumns() != null) {
-            currentResultSet = new HttpJdbcResultSet(result);
+            currentResultSet = openResultSet(result);
             currentUpdateCount = -1;
             return currentResultSet;
         }
@@ -30,70 +42,139 @@ public class HttpJdbcStatement implements Statement {
     @Override
     public int executeUpdate(String sql) throws SQLException {
         checkClosed();
-        QueryResult result = connection.executeQuery(sql);
+        closeCurrentResultSet();
+        currentUpdateCount = updateCountOf(connection.executeQuery(sql, List.of(), options));
+        return currentUpdateCount;
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        checkClosed();
+        closeCurrentResultSet();
+        QueryResult result = connection.executeQuery(sql, List.of(), options);
+        if (result.getColumns() != null) {
+            currentResultSet = openResultSet(result);
+            currentUpdateCount = -1;
+            return true;
+        }
+        currentUpdateCount = result.getUpdateCount();
+        currentResultSet = null;
+        return false;
+    }
+
+    // Forward-only result sets stream rows from the response; scrollable ones buffer it
+    protected ResultSet openResultSet(QueryResult result) throws SQLException {
+        if (resultSetType != ResultSet.TYPE_FORWARD_ONLY) result.materialize();
+        HttpJdbcResultSet resultSet = new HttpJdbcResultSet(result);
+        resultSet.setFetchSize(options.fetchSize);
+        return resultSet;
+    }
+
+    protected int updateCountOf(QueryResult result) throws SQLException {
+        // DML results are tiny, buffer them so the response is released
+        result.materialize();
         // Check if this looks like a DML result (single "Count" column)
         if (result.getColumns() != null && result.getColumns().size() == 1 
             && result.getColumns().get(0).equalsIgnoreCase("Count")
             && result.getRows() != null && result.getRows().size() == 1) {
             Object count = result.getRows().get(0).get(0);
-            currentUpdateCount = count instanceof Number ? ((Number) count).intValue() : 0;
-            currentResultSet = null;
-            return currentUpdateCount;
+            return count instanceof Number ? ((Number) count).intValue() : 0;
         }
         // Allow empty result sets (DDL returns columns but no rows)
         if (result.getColumns() != null && result.getRows() != null && !result.getRows().isEmpty()) {
             throw new SQLException("Query returned a result set, use executeQuery instead");
         }
-        currentUpdateCount = result.getUpdateCount() >= 0 ? result.getUpdateCount() : 0;
-        currentResultSet = null;
-        return currentUpdateCount;
+        return result.getUpdateCount() >= 0 ? result.getUpdateCount() : 0;
     }
 
     @Override
-    public boolean execute(String sql) throws SQLException {
+    public void addBatch(String sql) throws SQLException {
         checkClosed();
-        QueryResult result = connection.executeQuery(sql);
-        if (result.getColumns() != null) {
-            currentResultSet = new HttpJdbcResultSet(result);
-            currentUpdateCount = -1;
-            return true;
+        batch.add(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        checkClosed();
+        batch.clear();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkClosed();
+        closeCurrentResultSet();
+        List<QueryRequest> requests = new ArrayList<>(batch.size());
+        for (String sql : batch) requests.add(new QueryRequest(sql, List.of()));
+        batch.clear();
+        return executeBatch(requests);
+    }
+
+    // One request through the schema's batch template when it has one, otherwise one request per
+    // statement, in order, over the pooled connection. The query timeout applies to each request, and
+    // cancel() aborts the one in flight.
+    protected int[] executeBatch(List<QueryRequest> requests) throws SQLException {
+        if (requests.isEmpty()) return new int[0];
+        StatementOptions batchOptions = options.forBatch();
+        if (connection.supportsBatchRequests()) {
+            try {
+                return connection.executeBatch(requests, batchOptions);
+            } catch (SQLException e) {
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), new int[0], e);
+            }
         }
-        currentUpdateCount = result.getUpdateCount();
+        int[] counts = new int[requests.size()];
+        for (int i = 0; i < counts.length; i++) {
+            QueryRequest request = requests.get(i);
+            try {
+                counts[i] = updateCountOf(connection.executeQuery(request.sql(), request.parameters(), batchOptions));
+            } catch (SQLException e) {
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(counts, i), e);
+            }
+        }
+        return counts;
+    }
+
+    protected void checkClosed() throws SQLException { if (closed) throw new SQLException("Statement is closed"); }
+
+    protected void closeCurrentResultSet() throws SQLException {
+        if (currentResultSet != null) currentResultSet.close();
         currentResultSet = null;
-        return false;
+    }
+
+    // Opened through a pooled connection's handle: callers see the handle, never the physical connection
+    void handOut(Connection handle) {
+        this.handle = handle;
     }
 
     @Override public void close() throws SQLException { if (currentResultSet != null) currentResultSet.close(); closed = true; }
     @Override public ResultSet getResultSet() throws SQLException { checkClosed(); return currentResultSet; }
     @Override public int getUpdateCount() throws SQLException { checkClosed(); return currentUpdateCount; }
-    @Override public Connection getConnection() { return connection; }
+    @Override public Connection getConnection() { return handle != null ? handle : connection; }
     @Override public boolean isClosed() { return closed; }
     @Override public boolean getMoreResults() throws SQLException { checkClosed(); return false; }
     @Override public boolean getMoreResults(int current) { return false; }
 
-    private void checkClosed() throws SQLException { if (closed) throw new SQLException("Statement is closed"); }
+    // Statement settings, applied to every execution of the statement
+    @Override public int getMaxRows() throws SQLException { checkClosed(); return options.maxRows; }
+    @Override public void setMaxRows(int max) throws SQLException { checkClosed(); if (max < 0) throw new SQLException("Max rows must be >= 0: " + max); options.maxRows = max; }
+    @Override public int getQueryTimeout() throws SQLException { checkClosed(); return (int) (options.queryTimeoutMs / 1000); }
+    @Override public void setQueryTimeout(int seconds) throws SQLException { checkClosed(); if (seconds < 0) throw new SQLException("Query timeout must be >= 0: " + seconds); options.queryTimeoutMs = seconds * 1000L; }
+    // From another thread: aborts the running execution, whose statement or result set then fails with SQLState 57014
+    @Override public void cancel() throws SQLException { checkClosed(); options.control.cancel(); }
+    @Override public void setFetchSize(int rows) throws SQLException { checkClosed(); if (rows < 0) throw new SQLException("Fetch size must be >= 0: " + rows); options.fetchSize = rows; }
+    @Override public int getFetchSize() throws SQLException { checkClosed(); return options.fetchSize; }
 
     // Stub implementations
     @Override public int getMaxFieldSize() { return 0; }
     @Override public void setMaxFieldSize(int max) {}
-    @Override public int getMaxRows() { return 0; }
-    @Override public void setMaxRows(int max) {}
     @Override public void setEscapeProcessing(boolean enable) {}
-    @Override public int getQueryTimeout() { return 0; }
-    @Override public void setQueryTimeout(int seconds) {}
-    @Override public void cancel() throws SQLException { throw new SQLFeatureNotSupportedException("Cancel not supported"); }
     @Override public SQLWarning getWarnings() { return null; }
     @Override public void clearWarnings() {}
     @Override public void setCursorName(String name) throws SQLException { throw new SQLFeatureNotSupportedException("Named cursors not supported"); }
     @Override public void setFetchDirection(int direction) {}
     @Override public int getFetchDirection() { return ResultSet.FETCH_FORWARD; }
-    @Override public void setFetchSize(int rows) {}
-    @Override public int getFetchSize() { return 0; }
     @Override public int getResultSetConcurrency() { return ResultSet.CONCUR_READ_ONLY; }
-    @Override public int getResultSetType() { return ResultSet.TYPE_FORWARD_ONLY; }
-    @Override public void addBatch(String sql) throws SQLException { throw new SQLFeatureNotSupportedException("Batch updates not supported"); }
-    @Override public void clearBatch() throws SQLException { throw new SQLFeatureNotSupportedException("Batch updates not supported"); }
-    @Override public int[] executeBatch() throws SQLException { throw new SQLFeatureNotSupportedException("Batch updates not supported"); }
+    @Override public int getResultSetType() { return resultSetType; }
     @Override public ResultSet getGeneratedKeys() throws SQLException { throw new SQLFeatureNotSupportedException("Generated keys not supported"); }
     @Override public int executeUpdate(String sql, int k) throws SQLException { return executeUpdate(sql); }
     @Override public int executeUpdate(String sql, int[] idx) throws SQLException { return executeUpdate(sql); }
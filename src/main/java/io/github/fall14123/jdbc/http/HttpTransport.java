@@ -0,0 +1,201 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public abstract class HttpTransport implements AutoCloseable {
+    // Runs the blocking parts of async requests (permit waits, legacy exchanges) without tying up platform threads
+    private static final Executor VIRTUAL_THREADS = task -> Thread.ofVirtual().name("http-jdbc-async").start(task);
+
+    protected final TransportStats stats = new TransportStats();
+    private final Semaphore permits;
+    private final int acquireTimeoutMs;
+    private final String requestCoding;
+    private final int requestCompressionThreshold;
+
+    protected HttpTransport(ConnectionConfig config) {
+        this.permits = config.poolSize > 0 ? new Semaphore(config.poolSize) : null;
+        this.acquireTimeoutMs = config.connectTimeoutMs;
+        this.requestCoding = config.requestCompressionThreshold > 0 ? ContentCoding.requestCoding(config.compression) : null;
+        this.requestCompressionThreshold = config.requestCompressionThreshold;
+    }
+
+    public static HttpTransport create(URL serverUrl, ConnectionConfig config) {
+        if (!config.isHttp2() && (config.transport.equalsIgnoreCase("urlconnection") || !config.keepAlive)) {
+            // java.net.http cannot send "Connection: close", keep the legacy client for that case
+            return new UrlConnectionTransport(config);
+        }
+        return new JdkHttpTransport(config);
+    }
+
+    public TransportStats getStats() { return stats; }
+
+    // A permit is held until the response body is closed, so poolSize bounds the sockets per endpoint
+    public TransportResponse send(TransportRequest request) throws IOException {
+        return send(request, null);
+    }
+
+    // onAbort, when given, receives the actions that abort this exchange from another thread: first the
+    // pending send, then closing the response once it has arrived
+    public TransportResponse send(TransportRequest request, Consumer<Runnable> onAbort) throws IOException {
+        TransportRequest encoded = encode(request);
+        acquire();
+        stats.requestStarted(encoded.body().length);
+        TransportResponse response;
+        InputStream body;
+        try {
+            response = exchange(encoded, onAbort);
+        } catch (IOException | RuntimeException e) {
+            stats.requestFailed();
+            release();
+            throw e;
+        }
+        try {
+            body = decode(response);
+        } catch (IOException | RuntimeException e) {
+            stats.requestFailed();
+            response.close();
+            release();
+            throw e;
+        }
+        TransportResponse wrapped = new TransportResponse(response.statusCode(), response.headers(), body, () -> {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+            } finally {
+                response.close();
+                release();
+            }
+        });
+        if (onAbort != null) onAbort.accept(wrapped::close);
+        return wrapped;
+    }
+
+    protected abstract TransportResponse exchange(TransportRequest request, Consumer<Runnable> onAbort) throws IOException;
+
+    // Completes once the whole body has arrived, so the caller can decode it without blocking on the socket.
+    // The permit is released as soon as the exchange completes.
+    public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+        TransportRequest encoded;
+        try {
+            encoded = encode(request);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> acquired = permits == null || permits.tryAcquire()
+            ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.runAsync(() -> {
+                try {
+                    acquire();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, VIRTUAL_THREADS);
+        return acquired.thenCompose(ignored -> {
+            stats.requestStarted(encoded.body().length);
+            CompletableFuture<TransportResponse> exchange;
+            try {
+                exchange = exchangeAsync(encoded);
+            } catch (RuntimeException e) {
+                exchange = CompletableFuture.failedFuture(e);
+            }
+            return exchange.whenComplete((response, error) -> {
+                if (error != null) stats.requestFailed();
+                release();
+            });
+        }).thenApply(response -> {
+            try {
+                return new TransportResponse(response.statusCode(), response.headers(), decode(response), null);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    // Transports without a non-blocking client run the exchange on a virtual thread
+    protected CompletableFuture<TransportResponse> exchangeAsync(TransportRequest request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (TransportResponse response = exchange(request, null)) {
+                return new TransportResponse(response.statusCode(), response.headers(),
+                    new ByteArrayInputStream(response.body().readAllBytes()), null);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, VIRTUAL_THREADS);
+    }
+
+    // Compresses bodies above the threshold when the compression property allows it
+    private TransportRequest encode(TransportRequest request) throws IOException {
+        if (requestCoding == null || request.body().length < requestCompressionThreshold) return request;
+        Map<String, String> headers = new HashMap<>(request.headers());
+        headers.put("Content-Encoding", requestCoding);
+        return new TransportRequest(request.uri(), headers, ContentCoding.encode(requestCoding, request.body()), request.timeoutMs());
+    }
+
+    // Counts the bytes as transferred, then inflates them as they are read
+    private InputStream decode(TransportResponse response) throws IOException {
+        return ContentCoding.decode(response.header("Content-Encoding"), new CountingInputStream(response.body(), stats));
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final TransportStats stats;
+
+        CountingInputStream(InputStream in, TransportStats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) stats.bytesReceived(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) stats.bytesReceived(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            stats.bytesReceived(skipped);
+            return skipped;
+        }
+    }
+
+    private void acquire() throws IOException {
+        if (permits == null) return;
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new PoolTimeoutException("Timed out after " + acquireTimeoutMs + "ms waiting for a pooled HTTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a pooled HTTP connection");
+        }
+    }
+
+    private void release() {
+        stats.requestFinished();
+        if (permits != null) permits.release();
+    }
+
+    @Override
+    public void close() {}
+}
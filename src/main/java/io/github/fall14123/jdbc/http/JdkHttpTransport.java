@@ -0,0 +1,100 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class JdkHttpTransport extends HttpTransport {
+    private final HttpClient client;
+    private final ExecutorService executor;
+
+    // With HTTP/2 every connection to the endpoint multiplexes its requests as streams over
+    // the client's single socket; servers without h2 support are downgraded to HTTP/1.1.
+    // The client's own pool settings are JVM-wide system properties, left to the application: poolSize
+    // bounds this client's sockets through the permits every request holds.
+    public JdkHttpTransport(ConnectionConfig config) {
+        super(config);
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(config.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(config.connectTimeoutMs));
+        // By default the client runs its internal tasks on a cached pool of platform threads
+        this.executor = config.virtualThreads ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-jdbc-io-", 0).factory()) : null;
+        if (executor != null) builder.executor(executor);
+        this.client = builder.build();
+    }
+
+    private static HttpRequest toHttpRequest(TransportRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+            .timeout(Duration.ofMillis(request.timeoutMs()))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(request.body()));
+        request.headers().forEach(builder::header);
+        return builder.build();
+    }
+
+    @Override
+    protected TransportResponse exchange(TransportRequest request, Consumer<Runnable> onAbort) throws IOException {
+        if (onAbort == null) {
+            try {
+                HttpResponse<InputStream> response = client.send(toHttpRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+                return response(response, request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while executing HTTP request");
+            }
+        }
+        // What send() does internally, with the future exposed: cancelling it aborts the exchange
+        CompletableFuture<HttpResponse<InputStream>> future = client.sendAsync(toHttpRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+        onAbort.accept(() -> future.cancel(true));
+        try {
+            return response(future.get(), request);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while executing HTTP request");
+        } catch (CancellationException e) {
+            throw new IOException("HTTP request aborted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("HTTP request failed", e.getCause());
+        }
+    }
+
+    // The request's timeout covered the wait for the headers; the body's reads get one of their own
+    private static TransportResponse response(HttpResponse<InputStream> response, TransportRequest request) {
+        InputStream body = response.body();
+        if (request.timeoutMs() > 0) body = ReadTimeout.wrap(body, request.timeoutMs(), () -> {
+            try {
+                response.body().close();
+            } catch (IOException ignored) {
+            }
+        });
+        return new TransportResponse(response.statusCode(), response.headers().map(), body, null);
+    }
+
+    // Non-blocking: the body is collected by the client's selector thread, no thread waits per request
+    @Override
+    protected CompletableFuture<TransportResponse> exchangeAsync(TransportRequest request) {
+        HttpResponse.BodyHandler<byte[]> handler = HttpResponse.BodyHandlers.ofByteArray();
+        if (request.timeoutMs() > 0) handler = ReadTimeout.wrap(handler, request.timeoutMs());
+        return client.sendAsync(toHttpRequest(request), handler)
+            .thenApply(response -> new TransportResponse(response.statusCode(), response.headers().map(),
+                new ByteArrayInputStream(response.body()), null));
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        if (executor != null) executor.shutdown();
+    }
+}
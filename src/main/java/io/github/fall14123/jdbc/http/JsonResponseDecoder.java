@@ -0,0 +1,273 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.PathNotFoundException;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Decodes successful responses for a schema. When the schema's paths are simple, the token stream
+// is walked once, picking up the error, columns and update count on the way, and rows are handed to
+// a JsonRowSource as soon as they start: the rows array (JSON) or the lines after the header (NDJSON).
+// Other paths fall back to evaluating the precompiled JSONPaths over a parsed document.
+public class JsonResponseDecoder {
+    private static final TypeReference<List<Map<String, Object>>> COLUMN_DEFS = new TypeReference<>() {};
+    // Rows are objects or arrays depending on the server
+    private static final TypeReference<List<Object>> ROWS = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final SchemaConfig schema;
+    private final String[] errorPath;
+    private final String[] columnsPath;
+    private final String[] updateCountPath;
+    private final String[] rowsPath;
+    private final String[] nextPagePath;
+    private final String nextPageField;  // last segment of nextPagePath when it is a sibling of the rows array
+    private final boolean tokenWalk;
+    private final int maxDepth;
+
+    public JsonResponseDecoder(ObjectMapper objectMapper, SchemaConfig schema) {
+        this.objectMapper = objectMapper;
+        this.schema = schema;
+        this.errorPath = schema.compiledErrorPath.segments();
+        this.columnsPath = schema.compiledColumnsPath.segments();
+        this.updateCountPath = schema.compiledUpdateCountPath.segments();
+        // NDJSON rows are the lines after the header, not a path inside it
+        this.rowsPath = schema.responseNdjson ? new String[0] : schema.compiledRowsPath.segments();
+        this.nextPagePath = schema.compiledNextPagePath != null ? schema.compiledNextPagePath.segments() : new String[0];
+        this.nextPageField = nextPagePath != null && rowsPath != null && isSibling(nextPagePath, rowsPath)
+            ? nextPagePath[nextPagePath.length - 1] : null;
+        this.tokenWalk = errorPath != null && columnsPath != null && updateCountPath != null && rowsPath != null && nextPagePath != null;
+        this.maxDepth = tokenWalk ? Math.max(Math.max(Math.max(errorPath.length, columnsPath.length),
+            Math.max(updateCountPath.length, rowsPath.length)), nextPagePath.length) : 0;
+    }
+
+    private static class State {
+        List<String> columns;
+        List<String> columnTypes;
+        Integer updateCount;
+        List<Object> bufferedRows;
+        boolean streamRows;
+        String nextPage;
+    }
+
+    public QueryResult decode(TransportResponse response) throws IOException, SQLException {
+        JsonParser parser = objectMapper.getFactory().createParser(response.body());
+        try {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                parser.close();
+                return new QueryResult(null, null, 0);
+            }
+            if (!tokenWalk || first != JsonToken.START_OBJECT) {
+                return decodeDocument(parser, response);
+            }
+
+            State state = new State();
+            walkObject(parser, new String[maxDepth], 0, state);
+
+            // NDJSON reports an update count in place of the column header
+            if (schema.responseNdjson && state.updateCount != null) {
+                parser.close();
+                return new QueryResult(null, null, state.updateCount);
+            }
+            if (state.columns == null || state.columns.isEmpty()) {
+                parser.close();
+                return new QueryResult(null, null, state.updateCount != null ? state.updateCount : 0);
+            }
+            QueryResult result;
+            if (schema.responseNdjson || state.streamRows) {
+                result = new QueryResult(state.columns, state.columnTypes, schema.typeMapping.sqlTypes(state.columnTypes),
+                    new JsonRowSource(parser, response, state.columns, schema.rowsAsObjects, !schema.responseNdjson, nextPageField));
+            } else {
+                // Rows preceded the column definitions (or were absent), so they had to be buffered
+                parser.close();
+                int[] sqlTypes = schema.typeMapping.sqlTypes(state.columnTypes);
+                result = new QueryResult(state.columns, state.columnTypes, sqlTypes, toRows(state.bufferedRows, state.columns, sqlTypes));
+            }
+            result.setNextPage(state.nextPage);
+            return result;
+        } catch (IOException | SQLException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    // Extracts the error message from a non-200 body, or null when it has none
+    public String decodeError(String body) {
+        try {
+            Object error = schema.compiledErrorPath.read(body);
+            return error != null ? error.toString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Per-statement update counts of a batch response; SUCCESS_NO_INFO for any the server did not report
+    public int[] decodeBatchCounts(String body, int statements) throws SQLException {
+        String error = decodeError(body);
+        if (error != null) throw new SQLException(error);
+        int[] counts = new int[statements];
+        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+        try {
+            Object reported = schema.compiledBatchUpdateCountsPath.read(body);
+            if (reported instanceof List<?> list && list.size() == statements) {
+                for (int i = 0; i < statements; i++) {
+                    if (list.get(i) instanceof Number n) counts[i] = n.intValue();
+                }
+            }
+        } catch (RuntimeException ignored) {}
+        return counts;
+    }
+
+    // Parser is positioned on START_OBJECT; returns early once the rows array is ready to stream
+    private void walkObject(JsonParser parser, String[] stack, int depth, State state) throws IOException, SQLException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            stack[depth] = parser.currentName();
+            JsonToken token = parser.nextToken();
+            int length = depth + 1;
+
+            if (matches(errorPath, stack, length)) {
+                Object error = JsonRowSource.readValue(parser);
+                if (error != null) throw new SQLException(error.toString());
+            } else if (matches(nextPagePath, stack, length)) {
+                Object nextPage = JsonRowSource.readValue(parser);
+                state.nextPage = nextPage != null ? nextPage.toString() : null;
+            } else if (matches(updateCountPath, stack, length)) {
+                Object updateCount = JsonRowSource.readValue(parser);
+                if (updateCount instanceof Number) state.updateCount = ((Number) updateCount).intValue();
+            } else if (matches(columnsPath, stack, length) && token == JsonToken.START_ARRAY) {
+                List<Map<String, Object>> columnDefs = objectMapper.readValue(parser, COLUMN_DEFS);
+                state.columns = columnNames(columnDefs);
+                state.columnTypes = columnTypes(columnDefs);
+            } else if (matches(rowsPath, stack, length) && token == JsonToken.START_ARRAY) {
+                if (state.columns != null && !state.columns.isEmpty()) {
+                    state.streamRows = true;
+                    return;
+                }
+                state.bufferedRows = objectMapper.readValue(parser, ROWS);
+            } else if (token == JsonToken.START_OBJECT && length < maxDepth && isPrefix(stack, length)) {
+                walkObject(parser, stack, length, state);
+                if (state.streamRows) return;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // Full JSONPath evaluation over one parsed copy of the document (NDJSON: of the header line)
+    private QueryResult decodeDocument(JsonParser parser, TransportResponse response) throws IOException, SQLException {
+        Object document = objectMapper.readValue(parser, Object.class);
+
+        // Check for error
+        try {
+            Object error = schema.compiledErrorPath.read(document);
+            if (error != null) throw new SQLException(error.toString());
+        } catch (PathNotFoundException ignored) {}
+
+        Integer updateCount = null;
+        try {
+            Object count = schema.compiledUpdateCountPath.read(document);
+            if (count instanceof Number) updateCount = ((Number) count).intValue();
+        } catch (PathNotFoundException ignored) {}
+
+        List<String> columns = null;
+        List<String> columnTypes = null;
+        if (!schema.responseNdjson || updateCount == null) {
+            try {
+                List<Map<String, Object>> columnDefs = schema.compiledColumnsPath.read(document);
+                columns = columnNames(columnDefs);
+                columnTypes = columnTypes(columnDefs);
+            } catch (PathNotFoundException ignored) {}
+        }
+        if (columns == null || columns.isEmpty()) {
+            parser.close();
+            return new QueryResult(null, null, updateCount != null ? updateCount : 0);
+        }
+        int[] sqlTypes = schema.typeMapping.sqlTypes(columnTypes);
+        QueryResult result;
+        if (schema.responseNdjson) {
+            result = new QueryResult(columns, columnTypes, sqlTypes, new JsonRowSource(parser, response, columns, schema.rowsAsObjects, false));
+        } else {
+            parser.close();
+            List<Object> rows;
+            try {
+                rows = schema.compiledRowsPath.read(document);
+            } catch (PathNotFoundException e) {
+                rows = null;
+            }
+            result = new QueryResult(columns, columnTypes, sqlTypes, toRows(rows, columns, sqlTypes));
+        }
+        if (schema.compiledNextPagePath != null) {
+            try {
+                Object nextPage = schema.compiledNextPagePath.read(document);
+                result.setNextPage(nextPage != null ? nextPage.toString() : null);
+            } catch (PathNotFoundException ignored) {}
+        }
+        return result;
+    }
+
+    private List<String> columnNames(List<Map<String, Object>> columnDefs) {
+        return columnDefs.stream().map(c -> (String) c.get(schema.columnNameField)).toList();
+    }
+
+    private List<String> columnTypes(List<Map<String, Object>> columnDefs) {
+        return columnDefs.stream().map(c -> {
+            Object type = c.get(schema.columnTypeField);
+            return type != null ? type.toString() : null;
+        }).toList();
+    }
+
+    private RowBatch toRows(List<Object> rawRows, List<String> columns, int[] sqlTypes) {
+        RowBatch batch = new RowBatch(columns.size(), sqlTypes);
+        if (rawRows == null) return batch;
+        for (Object raw : rawRows) {
+            int row = batch.beginRow();
+            if (schema.rowsAsObjects) {
+                Map<?, ?> rowMap = (Map<?, ?>) raw;
+                for (int c = 0; c < columns.size(); c++) batch.set(c, row, rowMap.get(columns.get(c)));
+            } else {
+                List<?> values = (List<?>) raw;
+                for (int c = 0; c < columns.size() && c < values.size(); c++) batch.set(c, row, values.get(c));
+            }
+        }
+        return batch;
+    }
+
+    // Same parent object, e.g. $.page.next and $.page.rows[*]
+    private static boolean isSibling(String[] path, String[] other) {
+        if (path.length != other.length || path.length == 0) return false;
+        for (int i = 0; i < path.length - 1; i++) {
+            if (!path[i].equals(other[i])) return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String[] path, String[] stack, int length) {
+        if (path.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (!path[i].equals(stack[i])) return false;
+        }
+        return true;
+    }
+
+    private boolean isPrefix(String[] stack, int length) {
+        return startsWith(errorPath, stack, length) || startsWith(columnsPath, stack, length)
+            || startsWith(updateCountPath, stack, length) || startsWith(rowsPath, stack, length)
+            || startsWith(nextPagePath, stack, length);
+    }
+
+    private static boolean startsWith(String[] path, String[] stack, int length) {
+        if (path.length <= length) return false;
+        for (int i = 0; i < length; i++) {
+            if (!path[i].equals(stack[i])) return false;
+        }
+        return true;
+    }
+}
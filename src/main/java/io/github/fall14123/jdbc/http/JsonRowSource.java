@@ -0,0 +1,124 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Decodes one row per call straight from the response stream. Rows are either
+// consecutive root values (NDJSON) or the elements of an array the parser is inside of.
+public class JsonRowSource implements RowSource {
+    private final JsonParser parser;
+    private final TransportResponse response;
+    private final int columnCount;
+    private final Map<String, Integer> columnIndex;
+    private final boolean rowsAsObjects;
+    private final boolean inArray;
+    private final String nextPageField;
+    private String nextPage;
+    private boolean exhausted = false;
+
+    public JsonRowSource(JsonParser parser, TransportResponse response, List<String> columns, boolean rowsAsObjects, boolean inArray) {
+        this(parser, response, columns, rowsAsObjects, inArray, null);
+    }
+
+    // nextPageField names a field next to the rows array holding the next page token, if any
+    public JsonRowSource(JsonParser parser, TransportResponse response, List<String> columns, boolean rowsAsObjects,
+                         boolean inArray, String nextPageField) {
+        this.parser = parser;
+        this.response = response;
+        this.columnCount = columns.size();
+        this.columnIndex = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) columnIndex.putIfAbsent(columns.get(i), i);
+        this.rowsAsObjects = rowsAsObjects;
+        this.inArray = inArray;
+        this.nextPageField = nextPageField;
+    }
+
+    @Override
+    public int fill(RowBatch batch, int maxRows) throws SQLException {
+        int filled = 0;
+        try {
+            while (filled < maxRows && !exhausted) {
+                JsonToken token = parser.nextToken();
+                if (token == null || (inArray && token == JsonToken.END_ARRAY)) {
+                    exhausted = true;
+                    if (token != null) readTrailer();
+                    close();
+                    break;
+                }
+                int row = batch.beginRow();
+                if (rowsAsObjects) {
+                    if (token != JsonToken.START_OBJECT) throw new SQLException("Expected a JSON object row but got " + token);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        Integer index = columnIndex.get(parser.currentName());
+                        parser.nextToken();
+                        if (index != null) batch.read(index, row, parser);
+                        else parser.skipChildren();
+                    }
+                } else {
+                    if (token != JsonToken.START_ARRAY) throw new SQLException("Expected a JSON array row but got " + token);
+                    int i = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (i < columnCount) batch.read(i++, row, parser);
+                        else parser.skipChildren();
+                    }
+                }
+                filled++;
+            }
+            return filled;
+        } catch (IOException e) {
+            close();
+            throw new SQLException("Failed to read result row", e);
+        }
+    }
+
+    @Override
+    public String nextPage() {
+        return nextPage;
+    }
+
+    // Consumes the fields after the rows so the connection can go back to the pool, keeping the next
+    // page token when it is one of the rows array's siblings
+    private void readTrailer() throws IOException {
+        int depth = 0;
+        for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+            if (token == JsonToken.FIELD_NAME && depth == 0 && parser.currentName().equals(nextPageField)) {
+                parser.nextToken();
+                Object value = readValue(parser);
+                nextPage = value != null ? value.toString() : null;
+            } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // Same Java types a Map/List binding through ObjectMapper would produce
+    static Object readValue(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_STRING -> parser.getText();
+            case VALUE_NUMBER_INT -> parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_NULL -> null;
+            default -> parser.readValueAs(Object.class);
+        };
+    }
+
+    // Closing before the end aborts the HTTP exchange rather than draining the remaining rows
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+        } finally {
+            response.close();
+        }
+    }
+}
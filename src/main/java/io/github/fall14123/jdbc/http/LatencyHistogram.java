@@ -0,0 +1,70 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Recent response times of one node, for percentiles: log-linear buckets of microseconds, eight per power
+// of two (within 12.5%). Lock-free; every DECAY_EVERY samples all counts are halved, so the percentiles
+// follow the node as it speeds up or slows down.
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int MAX_EXPONENT = 40;  // 2^41 us, about 25 days: anything slower lands in the last bucket
+    private static final int DECAY_EVERY = 1024;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+        total.incrementAndGet();
+        if (samples.incrementAndGet() % DECAY_EVERY == 0) decay();
+    }
+
+    // Samples currently counted, after decay
+    public long count() {
+        return total.get();
+    }
+
+    // The time, in nanoseconds, that percent of the counted samples took at most; -1 without samples
+    public long percentile(double percent) {
+        long count = total.get();
+        if (count <= 0) return -1;
+        long target = Math.max(1, (long) Math.ceil(count * Math.min(percent, 100) / 100));
+        long seen = 0;
+        int last = -1;
+        for (int i = 0; i < counts.length(); i++) {
+            long c = counts.get(i);
+            if (c == 0) continue;
+            seen += c;
+            last = i;
+            if (seen >= target) break;
+        }
+        // Concurrent decay may leave the walk short of the target; the slowest bucket seen stands in
+        return last < 0 ? -1 : upperBound(last) * 1000;
+    }
+
+    private void decay() {
+        for (int i = 0; i < counts.length(); i++) {
+            long before = counts.getAndUpdate(i, c -> c >> 1);
+            total.addAndGet(-(before - (before >> 1)));
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT && micros >= 2L << MAX_EXPONENT) return (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // The largest value, in microseconds, that falls in the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) * width + width - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Picks the node for each query of an EndpointGroup. The loadBalance property names a built-in strategy
+// or a class implementing this interface with a no-argument constructor.
+public interface LoadBalancer {
+    // One of the available endpoints, or null when none is
+    Endpoint choose(Endpoint[] endpoints);
+
+    static LoadBalancer forName(String name) {
+        return switch (name) {
+            case "roundRobin" -> new RoundRobin();
+            case "leastOutstanding" -> new LeastOutstanding();
+            case "latency" -> new LatencyEwma();
+            default -> {
+                try {
+                    yield (LoadBalancer) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("Unknown loadBalance strategy: " + name, e);
+                }
+            }
+        };
+    }
+
+    class RoundRobin implements LoadBalancer {
+        private final AtomicInteger next = new AtomicInteger();
+
+        @Override
+        public Endpoint choose(Endpoint[] endpoints) {
+            int start = Math.floorMod(next.getAndIncrement(), endpoints.length);
+            for (int i = 0; i < endpoints.length; i++) {
+                Endpoint endpoint = endpoints[(start + i) % endpoints.length];
+                if (endpoint.isAvailable()) return endpoint;
+            }
+            return null;
+        }
+    }
+
+    // Two random candidates, the better one wins: close to comparing every node, without a herd of
+    // connections piling onto the one that looked best a moment ago
+    abstract class PowerOfTwoChoices implements LoadBalancer {
+        abstract double cost(Endpoint endpoint);
+
+        @Override
+        public Endpoint choose(Endpoint[] endpoints) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Endpoint first = available(endpoints, random.nextInt(endpoints.length));
+            if (first == null || endpoints.length == 1) return first;
+            Endpoint second = available(endpoints, (first.index() + 1 + random.nextInt(endpoints.length - 1)) % endpoints.length);
+            return second == null || cost(first) <= cost(second) ? first : second;
+        }
+
+        // The first available endpoint from index on
+        private static Endpoint available(Endpoint[] endpoints, int index) {
+            for (int i = 0; i < endpoints.length; i++) {
+                Endpoint endpoint = endpoints[(index + i) % endpoints.length];
+                if (endpoint.isAvailable()) return endpoint;
+            }
+            return null;
+        }
+    }
+
+    class LeastOutstanding extends PowerOfTwoChoices {
+        @Override
+        double cost(Endpoint endpoint) {
+            return endpoint.outstanding();
+        }
+    }
+
+    // Expected wait: the node's average latency for each request queued on it, its own included.
+    // Unmeasured nodes cost nothing, so every node is tried early on.
+    class LatencyEwma extends PowerOfTwoChoices {
+        @Override
+        double cost(Endpoint endpoint) {
+            return endpoint.latencyNanos() * (endpoint.outstanding() + 1);
+        }
+    }
+}
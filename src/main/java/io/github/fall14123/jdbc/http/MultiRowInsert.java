@@ -0,0 +1,91 @@
+package io.github.fall14123.jdbc.http;
+
+// Splits a single-row "INSERT ... VALUES (...)" into its prefix and row tuple, so a batch of
+// parameter sets can be sent as one multi-row INSERT. Anything else (INSERT ... SELECT, ON CONFLICT,
+// RETURNING, several tuples, placeholders outside the tuple) is not rewritten.
+public class MultiRowInsert {
+    private final String prefix;
+    private final String tuple;
+
+    private MultiRowInsert(String prefix, String tuple) {
+        this.prefix = prefix;
+        this.tuple = tuple;
+    }
+
+    // Returns null when the statement cannot be rewritten
+    public static MultiRowInsert parse(String sql) {
+        String trimmed = sql.trim();
+        if (!trimmed.regionMatches(true, 0, "INSERT", 0, 6)) return null;
+        int values = -1;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(trimmed, i);
+                if (i < 0) return null;
+            } else if (c == '?') {
+                return null;
+            } else if ((c == 'V' || c == 'v') && isKeyword(trimmed, i, "VALUES")) {
+                values = i + 6;
+                break;
+            }
+        }
+        if (values < 0) return null;
+
+        int open = values;
+        while (open < trimmed.length() && Character.isWhitespace(trimmed.charAt(open))) open++;
+        if (open >= trimmed.length() || trimmed.charAt(open) != '(') return null;
+        int close = matchingParen(trimmed, open);
+        if (close < 0) return null;
+
+        String rest = trimmed.substring(close + 1).trim();
+        if (!rest.isEmpty() && !rest.equals(";")) return null;
+        return new MultiRowInsert(trimmed.substring(0, open), trimmed.substring(open, close + 1));
+    }
+
+    // The statement with its tuple repeated for the given number of rows
+    public String sql(int rows) {
+        StringBuilder sb = new StringBuilder(prefix.length() + rows * (tuple.length() + 2));
+        sb.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(tuple);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isKeyword(String sql, int at, String keyword) {
+        if (!sql.regionMatches(true, at, keyword, 0, keyword.length())) return false;
+        boolean startsWord = at == 0 || !Character.isLetterOrDigit(sql.charAt(at - 1)) && sql.charAt(at - 1) != '_';
+        int end = at + keyword.length();
+        boolean endsWord = end == sql.length() || !Character.isLetterOrDigit(sql.charAt(end)) && sql.charAt(end) != '_';
+        return startsWord && endsWord;
+    }
+
+    // Index of the closing quote, doubled quotes being escapes; -1 if unterminated
+    private static int skipQuoted(String sql, int start) {
+        char quote = sql.charAt(start);
+        for (int i = start + 1; i < sql.length(); i++) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) i++;
+                else return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int matchingParen(String sql, int open) {
+        int depth = 0;
+        for (int i = open; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i);
+                if (i < 0) return -1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
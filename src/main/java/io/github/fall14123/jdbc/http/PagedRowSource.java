@@ -0,0 +1,121 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// Rows of a result the server returns in pages. Once a page is exhausted the next one is requested with
+// its continuation token through the schema's page template. A token that comes before the rows is
+// followed right away, so page N+1 arrives while page N is consumed; at most two pages are held.
+public class PagedRowSource implements RowSource {
+    public interface PageFetcher {
+        CompletableFuture<QueryResult> fetch(String token, int fetchSize);
+    }
+
+    private final PageFetcher fetcher;
+    private int fetchSize;
+    private RowSource page;
+    private String token;         // token that produced the current page, null for the first one
+    private String nextToken;     // token for the page after the current one, when known up front
+    private CompletableFuture<QueryResult> prefetched;
+    private boolean pageHadRows;
+    private boolean exhausted;
+
+    public PagedRowSource(QueryResult first, int fetchSize, PageFetcher fetcher) {
+        this.fetchSize = fetchSize;
+        this.fetcher = fetcher;
+        open(first, null);
+    }
+
+    // Applies to the pages requested from now on
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    private void open(QueryResult result, String pageToken) {
+        page = result.isStreaming() ? result.takeRowSource() : new BatchRowSource(result.getRowBatch());
+        token = pageToken;
+        nextToken = result.getNextPage();
+        pageHadRows = false;
+        if (followable(nextToken)) prefetched = fetcher.fetch(nextToken, fetchSize);
+    }
+
+    @Override
+    public int fill(RowBatch batch, int maxRows) throws SQLException {
+        while (!exhausted) {
+            int filled = page.fill(batch, maxRows);
+            if (filled > 0) {
+                pageHadRows = true;
+                return filled;
+            }
+            page.close();
+            String next = nextToken != null ? nextToken : page.nextPage();
+            if (prefetched == null) {
+                if (!followable(next)) {
+                    exhausted = true;
+                    break;
+                }
+                prefetched = fetcher.fetch(next, fetchSize);
+            }
+            QueryResult result = await(prefetched);
+            prefetched = null;
+            if (result.getColumns() == null) {
+                exhausted = true;
+                break;
+            }
+            open(result, next);
+        }
+        return 0;
+    }
+
+    // Empty pages are fine (some servers send them while a query is still running), but an empty
+    // page pointing back at itself would never end
+    private boolean followable(String next) {
+        return next != null && !next.isEmpty() && (pageHadRows || !next.equals(token));
+    }
+
+    private static QueryResult await(CompletableFuture<QueryResult> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while fetching the next page", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Failed to fetch the next page", e.getCause());
+        }
+    }
+
+    // Releases the current page and, once it arrives, the prefetched one
+    @Override
+    public void close() {
+        exhausted = true;
+        page.close();
+        if (prefetched != null) {
+            prefetched.thenAccept(QueryResult::close);
+            prefetched = null;
+        }
+    }
+
+    // A page the decoder had to buffer, handed out like a streamed one
+    private static class BatchRowSource implements RowSource {
+        private final RowBatch rows;
+        private int position;
+
+        BatchRowSource(RowBatch rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int fill(RowBatch batch, int maxRows) {
+            if (rows == null) return 0;
+            int filled = 0;
+            for (; filled < maxRows && position < rows.size(); filled++, position++) batch.appendRow(rows, position);
+            return filled;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
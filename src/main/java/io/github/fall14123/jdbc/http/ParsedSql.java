@@ -0,0 +1,186 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.Arrays;
+import java.util.List;
+
+// SQL split once at its ? placeholders by a single-pass lexer, so parameters are inlined by writing the
+// segments in turn instead of rescanning the text per parameter. A ? inside a string literal, quoted
+// identifier, dollar-quoted string or comment is not a placeholder, nor are the JSON operators ?| and ?&;
+// ?? stands for a literal ? where the driver inlines the parameters; a server that binds them itself gets
+// the text as written. Also memoizes the result cache's view of the statement.
+public class ParsedSql {
+    private static final int[] NONE = new int[0];
+
+    private final String sql;
+    private final String inlined;      // sql with each ?? collapsed; the same string when it has none
+    private final int[] placeholders;  // offsets of the ? characters in inlined
+    private String normalized;
+    private SqlClassifier.Kind kind;
+
+    private ParsedSql(String sql, String inlined, int[] placeholders) {
+        this.sql = sql;
+        this.inlined = inlined;
+        this.placeholders = placeholders;
+    }
+
+    // Statement text used as is, for statements executed without parameters
+    public static ParsedSql plain(String sql) {
+        return new ParsedSql(sql, sql, NONE);
+    }
+
+    public static ParsedSql parse(String sql) {
+        int[] placeholders = NONE;
+        int count = 0;
+        // Only allocated once a ?? escape is found: the text with each ?? collapsed, up to copied
+        StringBuilder unescaped = null;
+        int copied = 0;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+            switch (c) {
+                case '\'' -> i = skipString(sql, i, isEscapeString(sql, i));
+                case '"' -> i = skipString(sql, i, false);
+                case '-' -> { if (next == '-') i = skipLineComment(sql, i); }
+                case '/' -> { if (next == '*') i = skipBlockComment(sql, i); }
+                case '$' -> i = skipDollarQuoted(sql, i);
+                case '?' -> {
+                    if (next == '?') {
+                        if (unescaped == null) unescaped = new StringBuilder(length);
+                        unescaped.append(sql, copied, i + 1);
+                        copied = i + 2;
+                        i++;
+                    } else if (next == '&' || next == '|' && (i + 2 >= length || sql.charAt(i + 2) != '|')) {
+                        // JSON key operators; ?|| is a placeholder followed by concatenation
+                        i++;
+                    } else {
+                        if (count == placeholders.length) placeholders = Arrays.copyOf(placeholders, Math.max(8, count * 2));
+                        placeholders[count++] = i - (unescaped == null ? 0 : copied - unescaped.length());
+                    }
+                }
+                default -> {}
+            }
+        }
+        String inlined = sql;
+        if (unescaped != null) inlined = unescaped.append(sql, copied, length).toString();
+        return new ParsedSql(sql, inlined, count == placeholders.length ? placeholders : Arrays.copyOf(placeholders, count));
+    }
+
+    // '...' with doubled quotes, or E'...' which also takes backslash escapes; returns the closing quote's index
+    private static int skipString(String sql, int start, boolean backslashEscapes) {
+        char quote = sql.charAt(start);
+        for (int i = start + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\\' && backslashEscapes) {
+                i++;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) i++;
+                else return i;
+            }
+        }
+        return sql.length() - 1;
+    }
+
+    private static boolean isEscapeString(String sql, int quote) {
+        if (quote == 0) return false;
+        char prefix = sql.charAt(quote - 1);
+        return (prefix == 'E' || prefix == 'e') && (quote == 1 || !isIdentifierChar(sql.charAt(quote - 2)));
+    }
+
+    private static int skipLineComment(String sql, int start) {
+        int end = sql.indexOf('\n', start);
+        return end < 0 ? sql.length() - 1 : end;
+    }
+
+    // Block comments nest, as in PostgreSQL and DuckDB
+    private static int skipBlockComment(String sql, int start) {
+        int depth = 0;
+        for (int i = start; i + 1 < sql.length(); i++) {
+            if (sql.charAt(i) == '/' && sql.charAt(i + 1) == '*') {
+                depth++;
+                i++;
+            } else if (sql.charAt(i) == '*' && sql.charAt(i + 1) == '/') {
+                i++;
+                if (--depth == 0) return i;
+            }
+        }
+        return sql.length() - 1;
+    }
+
+    // $$...$$ or $tag$...$tag$; a $ that does not open a dollar quote ($1, a$b) is returned as is
+    private static int skipDollarQuoted(String sql, int start) {
+        if (start > 0 && isIdentifierChar(sql.charAt(start - 1))) return start;
+        int end = start + 1;
+        if (end < sql.length() && (Character.isLetter(sql.charAt(end)) || sql.charAt(end) == '_')) {
+            while (end < sql.length() && isIdentifierChar(sql.charAt(end)) && sql.charAt(end) != '$') end++;
+        }
+        if (end >= sql.length() || sql.charAt(end) != '$') return start;
+        String tag = sql.substring(start, end + 1);
+        int close = sql.indexOf(tag, end + 1);
+        return close < 0 ? sql.length() - 1 : close + tag.length() - 1;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    // The statement as written, ?? escapes included, for servers that bind the parameters themselves
+    public String sql() {
+        return sql;
+    }
+
+    // The statement embedded between prefix and suffix, e.g. as a subquery; its trailing semicolons are dropped.
+    // The suffix goes on a line of its own, so a trailing -- comment cannot swallow it.
+    public ParsedSql wrap(String prefix, String suffix) {
+        if (!suffix.startsWith("\n")) suffix = "\n" + suffix;
+        int[] shifted = new int[placeholders.length];
+        for (int i = 0; i < shifted.length; i++) shifted[i] = placeholders[i] + prefix.length();
+        String wrapped = prefix + trimmed(sql) + suffix;
+        return new ParsedSql(wrapped, sql == inlined ? wrapped : prefix + trimmed(inlined) + suffix, shifted);
+    }
+
+    private static String trimmed(String text) {
+        int end = text.length();
+        while (end > 0 && (text.charAt(end - 1) == ';' || Character.isWhitespace(text.charAt(end - 1)))) end--;
+        return text.substring(0, end);
+    }
+
+    public int parameterCount() {
+        return placeholders.length;
+    }
+
+    // Writes the statement with the given values in place of its placeholders and ?? collapsed to ?;
+    // placeholders beyond the values are left as ?
+    public void write(RequestBuffer out, List<QueryRequest.Parameter> parameters, ValueWriter values) {
+        int start = 0;
+        int count = Math.min(placeholders.length, parameters.size());
+        for (int i = 0; i < count; i++) {
+            out.writeUtf8(inlined, start, placeholders[i]);
+            values.write(parameters.get(i), out);
+            start = placeholders[i] + 1;
+        }
+        out.writeUtf8(inlined, start, inlined.length());
+    }
+
+    public interface ValueWriter {
+        void write(QueryRequest.Parameter parameter, RequestBuffer out);
+    }
+
+    // Races between threads only recompute the same values
+    public String normalized() {
+        String n = normalized;
+        if (n == null) normalized = n = SqlClassifier.normalize(sql);
+        return n;
+    }
+
+    public SqlClassifier.Kind kind() {
+        SqlClassifier.Kind k = kind;
+        if (k == null) kind = k = SqlClassifier.classifyNormalized(normalized());
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
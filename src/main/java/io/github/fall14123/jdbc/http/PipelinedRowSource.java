@@ -0,0 +1,100 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+// Decode stage of the pipeline: a decoder thread fills row batches from the underlying source while the
+// application works through earlier ones. Batches go to the consumer and come back for reuse over two
+// SpscQueues, so at most BATCHES + 1 are alive per result.
+public class PipelinedRowSource implements RowSource {
+    private static final int BATCHES = 4;
+    private static final int MAX_BATCH_ROWS = 1024;
+    private static final Object END = new Object();
+
+    private final RowSource source;
+    private final Supplier<RowBatch> newBatch;
+    private final SpscQueue<Object> decoded = new SpscQueue<>(BATCHES);  // RowBatch, END or the decoder's exception
+    private final SpscQueue<RowBatch> free = new SpscQueue<>(BATCHES + 1);
+    private final Runnable abort;
+    private RowBatch pending;  // partly copied batch, for fill() callers
+    private int pendingRow;
+    private boolean exhausted;
+
+    // abort unblocks a decoder waiting on the network, by closing the response it reads
+    public PipelinedRowSource(RowSource source, Supplier<RowBatch> newBatch, Runnable abort) {
+        this.source = source;
+        this.newBatch = newBatch;
+        this.abort = abort;
+        for (int i = 0; i < BATCHES; i++) free.offer(newBatch.get());
+        Thread.ofVirtual().name("http-jdbc-decode").start(this::decodeLoop);
+    }
+
+    private void decodeLoop() {
+        int batchSize = 1;
+        try {
+            while (true) {
+                RowBatch batch = free.take();
+                if (batch == null) return;
+                batch.clear();
+                if (source.fill(batch, batchSize) == 0) {
+                    decoded.put(END);
+                    return;
+                }
+                // Batches grow geometrically, so the first row is available as soon as it arrives
+                batchSize = Math.min(batchSize * 2, MAX_BATCH_ROWS);
+                if (!decoded.put(batch)) return;
+            }
+        } catch (SQLException | RuntimeException e) {
+            decoded.put(e);
+        } finally {
+            source.close();
+        }
+    }
+
+    // Swaps batches with the decoder instead of copying rows; maxRows is up to the decoder
+    @Override
+    public RowBatch nextBatch(RowBatch previous, int maxRows) throws SQLException {
+        if (exhausted) return null;
+        Object next = decoded.take();
+        if (next instanceof RowBatch batch) {
+            free.offer(previous);
+            return batch;
+        }
+        exhausted = true;
+        previous.clear();
+        if (next instanceof SQLException e) throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        if (next instanceof RuntimeException e) throw new SQLException("Failed to decode result rows", e);
+        if (next == null) throw new SQLException("Result set is closed");
+        return null;
+    }
+
+    // Copies rows for callers that fill their own batch, e.g. QueryResult.materialize()
+    @Override
+    public int fill(RowBatch batch, int maxRows) throws SQLException {
+        int filled = 0;
+        while (filled < maxRows) {
+            if (pending == null || pendingRow >= pending.size()) {
+                RowBatch next = nextBatch(pending != null ? pending : newBatch.get(), maxRows);
+                if (next == null) break;
+                pending = next;
+                pendingRow = 0;
+            }
+            batch.appendRow(pending, pendingRow++);
+            filled++;
+        }
+        return filled;
+    }
+
+    @Override
+    public String nextPage() {
+        return exhausted ? source.nextPage() : null;
+    }
+
+    @Override
+    public void close() {
+        exhausted = true;
+        decoded.close();
+        free.close();
+        abort.run();
+    }
+}
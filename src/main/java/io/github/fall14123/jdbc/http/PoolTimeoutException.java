@@ -0,0 +1,12 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+
+// No pooled HTTP connection freed up in time: the request was never sent, and says nothing about the node
+public class PoolTimeoutException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public PoolTimeoutException(String message) {
+        super(message);
+    }
+}
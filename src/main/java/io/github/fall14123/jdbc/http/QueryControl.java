@@ -0,0 +1,114 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Aborts a statement's in-flight execution from another thread, when its query timeout expires or it is
+// cancelled. Each execution registers how to abort its exchange (cancel the pending send, close the
+// response); an abort runs those actions, after which the executing thread fails and translate() names
+// the reason.
+public class QueryControl {
+    // SQLState for an expired timeout
+    static final String TIMED_OUT = "HYT00";
+    // SQLState for a query cancelled on request
+    static final String CANCELLED = "57014";
+
+    // One daemon thread for every driver deadline; a deadline only closes a response, so it never blocks
+    private static final ScheduledThreadPoolExecutor DEADLINES = deadlines();
+
+    public enum Reason { TIMEOUT, CANCEL }
+
+    private long generation;
+    private long timeoutMs;
+    private boolean active;  // between begin() and finish()
+    private Reason reason;
+    private ScheduledFuture<?> deadline;
+    private List<Runnable> actions = new ArrayList<>();
+
+    private static ScheduledThreadPoolExecutor deadlines() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "http-jdbc-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most queries finish before their deadline, so cancelled timers must not pile up in the queue
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    // Starts an execution, replacing the previous one's deadline; timeoutMs 0 = no deadline
+    public synchronized long begin(long timeoutMs) {
+        long execution = ++generation;
+        if (deadline != null) deadline.cancel(false);
+        deadline = timeoutMs > 0 ? DEADLINES.schedule(() -> abort(execution, Reason.TIMEOUT), timeoutMs, TimeUnit.MILLISECONDS) : null;
+        this.timeoutMs = timeoutMs;
+        active = true;
+        reason = null;
+        actions.clear();
+        return execution;
+    }
+
+    // Runs the action on abort, or right away when the execution has been aborted already
+    public void onAbort(long execution, Runnable action) {
+        synchronized (this) {
+            if (execution == generation && reason == null) {
+                actions.add(action);
+                return;
+            }
+            if (execution != generation) return;
+        }
+        action.run();
+    }
+
+    public boolean isAborted(long execution) {
+        synchronized (this) {
+            return execution == generation && reason != null;
+        }
+    }
+
+    // The actions run outside the lock, so a slow close never holds up the executing thread
+    public void abort(long execution, Reason why) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (execution != generation || !active || reason != null) return;
+            reason = why;
+            pending = actions;
+            actions = new ArrayList<>();
+            if (deadline != null) deadline.cancel(false);
+            deadline = null;
+        }
+        for (Runnable action : pending) action.run();
+    }
+
+    // Aborts the execution in flight, if any
+    public void cancel() {
+        long execution;
+        synchronized (this) {
+            execution = generation;
+        }
+        abort(execution, Reason.CANCEL);
+    }
+
+    // The execution completed, its deadline no longer applies and it can no longer be cancelled
+    public synchronized void finish(long execution) {
+        if (execution != generation) return;
+        active = false;
+        if (deadline != null) deadline.cancel(false);
+        deadline = null;
+        actions.clear();
+    }
+
+    // The failure an aborted execution reports, in place of the I/O error the abort caused
+    public SQLException translate(long execution, SQLException e) {
+        synchronized (this) {
+            if (execution != generation || reason == null) return e;
+            if (reason == Reason.CANCEL) return new SQLException("Query was cancelled", CANCELLED, e);
+            return new SQLTimeoutException("Query timed out after " + timeoutMs + "ms", TIMED_OUT, e);
+        }
+    }
+}
@@ -1,21 +1,43 @@
 package io.github.fall14123.jdbc.http;
 
+import java.sql.SQLException;
 import java.util.List;
 
 public class QueryResult {
     private List<String> columns;
-    private List<List<Object>> rows;
+    private List<String> columnTypes;
+    private int[] sqlTypes;
+    private RowBatch rows;
+    private RowSource rowSource;
     private int updateCount;
+    private String nextPage;
 
     public QueryResult() {
     }
 
     public QueryResult(List<String> columns, List<List<Object>> rows, int updateCount) {
         this.columns = columns;
-        this.rows = rows;
+        this.rows = columns != null ? RowBatch.of(columns, null, rows) : null;
         this.updateCount = updateCount;
     }
 
+    public QueryResult(List<String> columns, List<String> columnTypes, int[] sqlTypes, RowBatch rows) {
+        this.columns = columns;
+        this.columnTypes = columnTypes;
+        this.sqlTypes = sqlTypes;
+        this.rows = rows;
+        this.updateCount = -1;
+    }
+
+    // Streaming result: rows are decoded from the open response as they are consumed
+    public QueryResult(List<String> columns, List<String> columnTypes, int[] sqlTypes, RowSource rowSource) {
+        this.columns = columns;
+        this.columnTypes = columnTypes;
+        this.sqlTypes = sqlTypes;
+        this.rowSource = rowSource;
+        this.updateCount = -1;
+    }
+
     public List<String> getColumns() {
         return columns;
     }
@@ -24,12 +46,32 @@ public class QueryResult {
         this.columns = columns;
     }
 
+    // Server type names, one per column; null when the schema reports none
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    // java.sql.Types of each column, resolved through the schema's type mapping; null when untyped
+    public int[] getSqlTypes() {
+        return sqlTypes;
+    }
+
+    // Empty storage laid out for this result's column types
+    public RowBatch newRowBatch() {
+        return new RowBatch(columns.size(), sqlTypes);
+    }
+
+    // Boxed view over the row storage; null for a streaming result until materialize() has been called
     public List<List<Object>> getRows() {
-        return rows;
+        return rows != null ? rows.rows() : null;
     }
 
     public void setRows(List<List<Object>> rows) {
-        this.rows = rows;
+        this.rows = RowBatch.of(columns, sqlTypes, rows);
+    }
+
+    public RowBatch getRowBatch() {
+        return rows;
     }
 
     public int getUpdateCount() {
@@ -39,4 +81,40 @@ public class QueryResult {
     public void setUpdateCount(int updateCount) {
         this.updateCount = updateCount;
     }
-}
\ No newline at end of file
+
+    // Token for the next page of a paged result when the response had one before its rows; a token
+    // after the rows is reported by the row source once it is exhausted
+    public String getNextPage() {
+        return nextPage;
+    }
+
+    public void setNextPage(String nextPage) {
+        this.nextPage = nextPage;
+    }
+
+    public boolean isStreaming() {
+        return rowSource != null;
+    }
+
+    // Hands the stream to a single consumer, which becomes responsible for closing it
+    public RowSource takeRowSource() {
+        RowSource source = rowSource;
+        rowSource = null;
+        return source;
+    }
+
+    // Drains a streaming result into memory, for callers that need random access
+    public QueryResult materialize() throws SQLException {
+        if (rowSource == null) return this;
+        try (RowSource source = takeRowSource()) {
+            RowBatch batch = newRowBatch();
+            while (source.fill(batch, 1024) > 0) {}
+            rows = batch;
+        }
+        return this;
+    }
+
+    public void close() {
+        if (rowSource != null) takeRowSource().close();
+    }
+}
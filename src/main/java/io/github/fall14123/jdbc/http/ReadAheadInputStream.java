@@ -0,0 +1,111 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// I/O stage of the decode pipeline: a reader thread copies the response body into pooled chunks ahead
+// of the parser, so socket reads overlap with decoding. At most CHUNKS chunks are allocated per body.
+public class ReadAheadInputStream extends InputStream {
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int CHUNKS = 8;
+
+    private record Chunk(byte[] data, int length, IOException error) {}
+
+    private static final Chunk END = new Chunk(null, 0, null);
+
+    private final InputStream source;
+    private final SpscQueue<Chunk> filled = new SpscQueue<>(CHUNKS);
+    private final SpscQueue<byte[]> free = new SpscQueue<>(CHUNKS);
+    private int allocated;  // reader thread only
+    private byte[] current;
+    private int position;
+    private int limit;
+    private boolean ended;
+
+    public ReadAheadInputStream(InputStream source) {
+        this.source = source;
+        Thread.ofVirtual().name("http-jdbc-read-ahead").start(this::readLoop);
+    }
+
+    // The same response, its body read ahead; closing it aborts the reader along with the exchange
+    public static TransportResponse wrap(TransportResponse response) {
+        return new TransportResponse(response.statusCode(), response.headers(),
+            new ReadAheadInputStream(response.body()), response::close);
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                byte[] buffer = free.poll();
+                if (buffer == null && allocated < CHUNKS) {
+                    buffer = new byte[CHUNK_SIZE];
+                    allocated++;
+                } else if (buffer == null) {
+                    buffer = free.take();
+                    if (buffer == null) return;
+                }
+                // Whatever has arrived, so the parser never waits for a full chunk
+                int n = source.read(buffer, 0, buffer.length);
+                if (n < 0) {
+                    filled.put(END);
+                    return;
+                }
+                if (!filled.put(new Chunk(buffer, n, null))) return;
+            }
+        } catch (IOException e) {
+            filled.put(new Chunk(null, 0, e));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == limit) {
+            if (!advance()) return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (position == limit) {
+            if (!advance()) return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    // Hands the drained chunk back to the reader and waits for the next one
+    private boolean advance() throws IOException {
+        if (current != null) {
+            free.offer(current);
+            current = null;
+            position = limit = 0;
+        }
+        if (ended) return false;
+        Chunk chunk = filled.take();
+        if (chunk == null) throw new IOException("Response stream closed");
+        if (chunk.error() != null) throw new IOException("Failed to read response", chunk.error());
+        if (chunk == END) {
+            ended = true;
+            return false;
+        }
+        current = chunk.data();
+        limit = chunk.length();
+        return true;
+    }
+
+    // Stops the reader; the caller aborts the underlying exchange to unblock a pending socket read
+    @Override
+    public void close() {
+        filled.close();
+        free.close();
+    }
+}
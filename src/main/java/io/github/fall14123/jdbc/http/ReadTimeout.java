@@ -0,0 +1,176 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// readTimeout for response bodies the JDK client delivers: HttpRequest.timeout only bounds the wait for
+// the headers. Waiting readTimeout for the body without a byte arriving aborts the exchange, failing it
+// as a socket read timeout would. Time the caller spends between reads of a streamed body does not count.
+public class ReadTimeout {
+    // One daemon thread for every body's watchdog; it only looks at timestamps, and aborts stalled bodies
+    private static final ScheduledThreadPoolExecutor WATCHDOG = watchdog();
+
+    private final long timeoutNanos;
+    private final Runnable abort;
+    private volatile long waitingSince;  // nanoTime the wait for data started, 0 when nothing waits
+    private volatile boolean expired;
+    private boolean done;
+    private ScheduledFuture<?> check;
+
+    private ReadTimeout(long timeoutMs, Runnable abort) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.abort = abort;
+        schedule(timeoutNanos);
+    }
+
+    private static ScheduledThreadPoolExecutor watchdog() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "http-jdbc-read-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    // A streamed body: abort closes the exchange, failing a read blocked on it
+    public static InputStream wrap(InputStream body, long timeoutMs, Runnable abort) {
+        return new Stream(body, new ReadTimeout(timeoutMs, abort));
+    }
+
+    // A body collected in the background, by the client: the data must keep coming until it is complete
+    public static <T> HttpResponse.BodyHandler<T> wrap(HttpResponse.BodyHandler<T> handler, long timeoutMs) {
+        return info -> new Subscriber<>(handler.apply(info), timeoutMs);
+    }
+
+    private synchronized void schedule(long delayNanos) {
+        if (!done) check = WATCHDOG.schedule(this::check, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Re-arms for the current wait's deadline, or a full timeout from now when nothing waits
+    private void check() {
+        long since = waitingSince;
+        long remaining = since == 0 ? timeoutNanos : since + timeoutNanos - System.nanoTime();
+        if (remaining > 0) {
+            schedule(remaining);
+            return;
+        }
+        expired = true;
+        abort.run();
+    }
+
+    private void waiting() { waitingSince = System.nanoTime(); }
+    private void idle() { waitingSince = 0; }
+
+    private synchronized void done() {
+        done = true;
+        if (check != null) check.cancel(false);
+    }
+
+    private SocketTimeoutException timeout() {
+        return new SocketTimeoutException("Read timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms without data");
+    }
+
+    private IOException translate(IOException e) {
+        if (!expired) return e;
+        SocketTimeoutException timeout = timeout();
+        timeout.initCause(e);
+        return timeout;
+    }
+
+    private static class Stream extends FilterInputStream {
+        private final ReadTimeout timeout;
+
+        Stream(InputStream in, ReadTimeout timeout) {
+            super(in);
+            this.timeout = timeout;
+        }
+
+        @Override
+        public int read() throws IOException {
+            timeout.waiting();
+            try {
+                int b = super.read();
+                if (b < 0) timeout.done();
+                return b;
+            } catch (IOException e) {
+                throw timeout.translate(e);
+            } finally {
+                timeout.idle();
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            timeout.waiting();
+            try {
+                int n = super.read(buffer, offset, length);
+                if (n < 0) timeout.done();
+                return n;
+            } catch (IOException e) {
+                throw timeout.translate(e);
+            } finally {
+                timeout.idle();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            timeout.done();
+            super.close();
+        }
+    }
+
+    // Every chunk restarts the wait; a stall cancels the subscription and fails the body
+    private static class Subscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final CompletableFuture<T> body = new CompletableFuture<>();
+        private final ReadTimeout timeout;
+        private volatile Flow.Subscription subscription;
+
+        Subscriber(HttpResponse.BodySubscriber<T> delegate, long timeoutMs) {
+            this.delegate = delegate;
+            this.timeout = new ReadTimeout(timeoutMs, this::expire);
+            timeout.waiting();
+            delegate.getBody().whenComplete((result, error) -> {
+                timeout.done();
+                if (error != null) body.completeExceptionally(error);
+                else body.complete(result);
+            });
+        }
+
+        // The body fails first, so the timeout is what the caller sees rather than the cancelled subscription
+        private void expire() {
+            body.completeExceptionally(timeout.timeout());
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            timeout.waiting();
+            delegate.onNext(item);
+        }
+
+        @Override public void onError(Throwable throwable) { delegate.onError(throwable); }
+        @Override public void onComplete() { delegate.onComplete(); }
+        @Override public CompletionStage<T> getBody() { return body; }
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Growable byte buffer that request bodies are written into as UTF-8, reused across executions of a statement
+public class RequestBuffer extends OutputStream {
+    // Buffers grown past this by one large request are dropped on reset rather than kept for the statement's lifetime
+    private static final int MAX_RETAINED = 1 << 20;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private byte[] bytes;
+    private int size;
+
+    public RequestBuffer() {
+        this(256);
+    }
+
+    public RequestBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    public void reset() {
+        if (bytes.length > MAX_RETAINED) bytes = new byte[256];
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    @Override
+    public void write(int b) {
+        ensure(1);
+        bytes[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(len);
+        System.arraycopy(b, off, bytes, size, len);
+        size += len;
+    }
+
+    public void writeUtf8(String s) {
+        writeUtf8(s, 0, s.length());
+    }
+
+    public void writeUtf8(String s, int start, int end) {
+        ensure((end - start) * 3);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else {
+                i = writeNonAscii(s, i, end);
+            }
+        }
+    }
+
+    // Characters of s escaped for use inside a JSON string literal, without the surrounding quotes
+    public void writeJsonString(String s) {
+        int end = s.length();
+        ensure(end * 3);
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                i = writeNonAscii(s, i, end);
+            } else if (c == '"' || c == '\\') {
+                bytes[size++] = '\\';
+                bytes[size++] = (byte) c;
+            } else if (c < 0x20) {
+                ensure(6 + (end - i) * 3);
+                writeControl(c);
+            } else {
+                bytes[size++] = (byte) c;
+            }
+        }
+    }
+
+    private void writeControl(char c) {
+        bytes[size++] = '\\';
+        switch (c) {
+            case '\n' -> bytes[size++] = 'n';
+            case '\r' -> bytes[size++] = 'r';
+            case '\t' -> bytes[size++] = 't';
+            case '\b' -> bytes[size++] = 'b';
+            case '\f' -> bytes[size++] = 'f';
+            default -> {
+                bytes[size++] = 'u';
+                bytes[size++] = '0';
+                bytes[size++] = '0';
+                bytes[size++] = HEX[c >> 4];
+                bytes[size++] = HEX[c & 0xf];
+            }
+        }
+    }
+
+    // Encodes the character at i (two for a surrogate pair) and returns the index of the last one consumed.
+    // Capacity for three bytes per remaining char is already reserved, which also covers a pair's four.
+    private int writeNonAscii(String s, int i, int end) {
+        char c = s.charAt(i);
+        if (c < 0x800) {
+            bytes[size++] = (byte) (0xc0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            bytes[size++] = (byte) (0xf0 | (cp >> 18));
+            bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            bytes[size++] = (byte) (0x80 | (cp & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogate, replaced like String.getBytes does
+            bytes[size++] = '?';
+        } else {
+            bytes[size++] = (byte) (0xe0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            bytes[size++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return i;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra <= bytes.length) return;
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+    }
+}
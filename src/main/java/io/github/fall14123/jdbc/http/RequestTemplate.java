@@ -0,0 +1,82 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// A schema request template split once into literal segments and ${name} placeholders, so a body is
+// written segment by segment instead of through one String.replace per placeholder. Placeholders that
+// are not among the template's known names stay in the output as written.
+public class RequestTemplate {
+    public interface Values {
+        // Writes the value of placeholder names[index]; quoted is true when it sits inside a JSON string literal
+        void write(int index, boolean quoted, RequestBuffer out) throws IOException;
+    }
+
+    private final byte[][] literals;
+    private final int[] placeholders;
+    private final boolean[] quoted;
+
+    private RequestTemplate(byte[][] literals, int[] placeholders, boolean[] quoted) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.quoted = quoted;
+    }
+
+    // json enables quote tracking, so a placeholder written as "${sql}" is JSON-escaped
+    public static RequestTemplate compile(String template, boolean json, String... names) {
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> placeholders = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean inString = false;
+        for (int i = 0; i < template.length(); i++) {
+            int index = template.startsWith("${", i) ? placeholder(template, i, names) : -1;
+            if (index >= 0) {
+                literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+                literal.setLength(0);
+                placeholders.add(index);
+                quoted.add(json && inString);
+                i += names[index].length() + 2;
+                continue;
+            }
+            char c = template.charAt(i);
+            if (c == '"' && !escaped(template, i)) inString = !inString;
+            literal.append(c);
+        }
+        literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+
+        boolean[] quotedFlags = new boolean[quoted.size()];
+        for (int i = 0; i < quotedFlags.length; i++) quotedFlags[i] = quoted.get(i);
+        return new RequestTemplate(literals.toArray(new byte[0][]),
+            placeholders.stream().mapToInt(Integer::intValue).toArray(), quotedFlags);
+    }
+
+    public boolean isEmpty() {
+        return placeholders.length == 0 && literals[0].length == 0;
+    }
+
+    public void write(RequestBuffer out, Values values) throws IOException {
+        out.write(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            values.write(placeholders[i], quoted[i], out);
+            out.write(literals[i + 1]);
+        }
+    }
+
+    // Index into names of the placeholder starting at i, or -1
+    private static int placeholder(String template, int i, String[] names) {
+        for (int n = 0; n < names.length; n++) {
+            String name = names[n];
+            if (template.startsWith(name, i + 2) && template.startsWith("}", i + 2 + name.length())) return n;
+        }
+        return -1;
+    }
+
+    private static boolean escaped(String template, int i) {
+        int backslashes = 0;
+        while (i - backslashes > 0 && template.charAt(i - backslashes - 1) == '\\') backslashes++;
+        return backslashes % 2 == 1;
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Driver-wide LRU cache of read-only query results, bounded by entries and approximate bytes, with a TTL per entry.
+// Entries hold fully decoded rows that every hit shares read-only. Any write through the driver clears the cache.
+public class ResultCache {
+    public record Key(String endpoint, String user, String sql, List<QueryRequest.Parameter> parameters) {}
+
+    private record Entry(List<String> columns, List<String> columnTypes, int[] sqlTypes, RowBatch rows, long bytes, long expiresAt) {}
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int maxEntries;
+    private volatile long maxBytes;
+    private long bytes;
+
+    // Bounds are fixed by the first connection that enables the cache
+    public void configure(int maxEntries, long maxBytes) {
+        lock.lock();
+        try {
+            if (this.maxEntries > 0) return;
+            this.maxBytes = maxBytes;
+            this.maxEntries = maxEntries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public QueryResult get(Key key) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                entry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new QueryResult(entry.columns, entry.columnTypes, entry.sqlTypes, entry.rows);
+    }
+
+    // Read before executing a cacheable query and passed to put, so rows fetched while a write ran are not cached
+    public long generation() {
+        return generation.get();
+    }
+
+    // Rows larger than this are not cached under the key: the entry would take over a quarter of the byte bound
+    public long maxResultBytes(Key key) {
+        return maxBytes / 4 - overhead(key);
+    }
+
+    private static long overhead(Key key) {
+        return key.sql().length() * 2L + 64;
+    }
+
+    // Stores a materialized result; results larger than a quarter of the byte bound are not cached
+    public void put(Key key, QueryResult result, long ttlMs, long generationAtStart) {
+        RowBatch rows = result.getRowBatch();
+        if (maxEntries <= 0 || rows == null || result.getColumns() == null) return;
+        long size = rows.estimatedBytes() + overhead(key);
+        if (size > maxBytes / 4) return;
+        Entry entry = new Entry(result.getColumns(), result.getColumnTypes(), result.getSqlTypes(), rows, size,
+            System.nanoTime() + ttlMs * 1_000_000L);
+        lock.lock();
+        try {
+            if (generation.get() != generationAtStart) return;
+            Entry previous = entries.put(key, entry);
+            if (previous != null) bytes -= previous.bytes;
+            bytes += size;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                bytes -= evicted.bytes;
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            if (entries.isEmpty()) return;
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) bytes -= removed.bytes;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, evictions=%d, entries=%d, bytes=%d",
+            getHits(), getMisses(), getEvictions(), size(), getBytes());
+    }
+}
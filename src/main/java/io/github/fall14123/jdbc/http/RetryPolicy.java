@@ -0,0 +1,89 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// When a failed statement may run again, and after how long. A statement is only retried when running it
+// twice is harmless: any statement whose request never reached the server (connection refused) or was
+// turned away unprocessed (429, 503), and reads whatever happened to them (a reset keep-alive socket, a
+// 502). Timeouts, error answers, aborted executions and waits for a pooled connection are final. Waits
+// back off exponentially, with jitter, unless the server asked for a wait with Retry-After.
+public class RetryPolicy {
+    public enum Failure {
+        NOT_SENT,   // the server never saw the request
+        REJECTED,   // the server answered without running the statement
+        UNKNOWN,    // the request may have run
+        FINAL       // retrying would not help, or must not happen
+    }
+
+    private final int maxRetries;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+
+    public RetryPolicy(int maxRetries, long backoffMs, long maxBackoffMs) {
+        this.maxRetries = maxRetries;
+        this.backoffMs = Math.max(1, backoffMs);
+        this.maxBackoffMs = Math.max(this.backoffMs, maxBackoffMs);
+    }
+
+    public boolean isEnabled() {
+        return maxRetries > 0;
+    }
+
+    public static Failure classify(SQLException e) {
+        if (e instanceof ServerUnavailableException unavailable) {
+            // A gateway's 502 may come after the backend ran the statement
+            return unavailable.getStatusCode() == 502 ? Failure.UNKNOWN : Failure.REJECTED;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            // The driver's own pool is exhausted: another attempt would only join the queue for it
+            if (cause instanceof UnknownHostException || cause instanceof PoolTimeoutException) return Failure.FINAL;
+            // An open breaker stopped the request before it was sent; another node may take it
+            if (cause instanceof CircuitOpenException || cause instanceof ConnectException || cause instanceof NoRouteToHostException
+                || cause instanceof HttpConnectTimeoutException) return Failure.NOT_SENT;
+            // The statement may still be running: a second copy only adds to the load
+            if (cause instanceof InterruptedIOException || cause instanceof HttpTimeoutException) return Failure.FINAL;
+            if (cause instanceof IOException) return Failure.UNKNOWN;
+        }
+        return Failure.FINAL;
+    }
+
+    // How long to wait before retry number retry (from 0) of a failed statement, -1 when it must not be retried
+    public long backoffMs(SQLException e, int retry, boolean write) {
+        if (retry >= maxRetries) return -1;
+        Failure failure = classify(e);
+        if (failure == Failure.FINAL || failure == Failure.UNKNOWN && write) return -1;
+        long retryAfter = e instanceof ServerUnavailableException unavailable ? unavailable.getRetryAfterMs() : -1;
+        // A server asking for a longer break than we would wait is not coming back in time
+        if (retryAfter >= 0) return retryAfter <= maxBackoffMs ? retryAfter : -1;
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(retry, 30));
+        // Half fixed, half random: callers that failed together do not come back together
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    // Retry-After is either seconds or an HTTP date; -1 when absent or unreadable
+    public static long retryAfterMs(String header) {
+        if (header == null || header.isBlank()) return -1;
+        try {
+            return Math.max(0, Long.parseLong(header.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+            } catch (DateTimeParseException unreadable) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+
+// Columnar row storage: one ColumnVector per column, typed from the columns' java.sql.Types
+public class RowBatch {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ColumnVector[] vectors;
+    private int size;
+
+    // Without sql types every column keeps its decoded objects
+    public RowBatch(int columnCount, int[] sqlTypes) {
+        this.vectors = new ColumnVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            vectors[i] = sqlTypes != null && i < sqlTypes.length
+                ? ColumnVector.forSqlType(sqlTypes[i], INITIAL_CAPACITY) : new ColumnVector.ObjectVector(INITIAL_CAPACITY);
+        }
+    }
+
+    public static RowBatch of(List<String> columns, int[] sqlTypes, List<List<Object>> rows) {
+        RowBatch batch = new RowBatch(columns.size(), sqlTypes);
+        if (rows == null) return batch;
+        for (List<Object> row : rows) {
+            int index = batch.beginRow();
+            for (int c = 0; c < batch.vectors.length && c < row.size(); c++) batch.set(c, index, row.get(c));
+        }
+        return batch;
+    }
+
+    public int size() { return size; }
+    public int columnCount() { return vectors.length; }
+    public ColumnVector column(int index) { return vectors[index]; }
+
+    // Appends a row whose columns are all null until set
+    public int beginRow() {
+        int row = size++;
+        for (ColumnVector vector : vectors) {
+            vector.ensureCapacity(size);
+            vector.setNull(row, true);
+        }
+        return row;
+    }
+
+    public void set(int column, int row, Object value) {
+        if (value == null) return;
+        ColumnVector vector = vectors[column];
+        try {
+            vector.set(row, value);
+        } catch (IllegalArgumentException e) {
+            // The server sent something the column type cannot hold, keep this column as objects
+            vector = ColumnVector.promote(vector, row);
+            vectors[column] = vector;
+            vector.set(row, value);
+        }
+        vector.setNull(row, false);
+    }
+
+    // Appends a copy of another batch's row, column by column
+    public int appendRow(RowBatch source, int sourceRow) {
+        int row = beginRow();
+        for (int c = 0; c < vectors.length && c < source.vectors.length; c++) {
+            ColumnVector column = source.vectors[c];
+            if (!column.isNull(sourceRow)) set(c, row, column.getObject(sourceRow));
+        }
+        return row;
+    }
+
+    // Decodes the parser's current value into the column without boxing it first
+    public void read(int column, int row, JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return;
+        ColumnVector vector = vectors[column];
+        try {
+            vector.read(row, parser);
+        } catch (IllegalArgumentException e) {
+            vector = ColumnVector.promote(vector, row);
+            vectors[column] = vector;
+            vector.read(row, parser);
+        }
+        vector.setNull(row, false);
+    }
+
+    public long estimatedBytes() {
+        long bytes = 16;
+        for (ColumnVector vector : vectors) bytes += vector.estimatedBytes(size);
+        return bytes;
+    }
+
+    // Drops the rows from size on
+    public void truncate(int size) {
+        if (size < this.size) this.size = size;
+    }
+
+    // Empties the batch for reuse, keeping the allocated vectors
+    public void clear() {
+        size = 0;
+        for (ColumnVector vector : vectors) vector.reset();
+    }
+
+    // Boxed view of one row, for callers that still work on List<Object> rows
+    public List<Object> row(int row) {
+        return new AbstractList<>() {
+            @Override public Object get(int column) { return vectors[column].isNull(row) ? null : vectors[column].getObject(row); }
+            @Override public int size() { return vectors.length; }
+        };
+    }
+
+    public List<List<Object>> rows() {
+        return new AbstractList<>() {
+            @Override public List<Object> get(int index) { return row(index); }
+            @Override public int size() { return size; }
+        };
+    }
+}
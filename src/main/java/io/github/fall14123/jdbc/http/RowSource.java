@@ -0,0 +1,27 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLException;
+
+// Forward-only supplier of decoded rows, backed by an open HTTP response
+public interface RowSource extends AutoCloseable {
+    // Appends up to maxRows rows to the batch; returns 0 once the response is exhausted
+    int fill(RowBatch batch, int maxRows) throws SQLException;
+
+    // The next batch of rows in place of the consumer's previous one, which a source may keep for
+    // reuse; null once exhausted, leaving previous with the caller, emptied
+    default RowBatch nextBatch(RowBatch previous, int maxRows) throws SQLException {
+        previous.clear();
+        return fill(previous, maxRows) > 0 ? previous : null;
+    }
+
+    // Continuation token that followed the rows in the response, known once fill() has returned 0
+    default String nextPage() {
+        return null;
+    }
+
+    // Rows to request per page from now on, for sources that fetch their rows in pages
+    default void setFetchSize(int rows) {}
+
+    @Override
+    void close();
+}
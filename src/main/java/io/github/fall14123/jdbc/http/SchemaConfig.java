@@ -1,9 +1,11 @@
 package io.github.fall14123.jdbc.http;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class SchemaConfig {
     // Request config
@@ -11,6 +13,14 @@ public class SchemaConfig {
     public String requestTemplate = "{\"sql\": \"${sql}\", \"parameters\": ${parameters}}";
     public String parameterTemplate = "{\"value\": ${value}, \"type\": \"${type}\"}";
     public String urlSuffix = "";  // e.g., "?default_format=JSONCompact"
+    public String batchTemplate = "";  // e.g., {"statements": [${statements}]}; empty = no batch endpoint
+    public String prepareTemplate = "";  // e.g., {"prepare": "${sql}"}; empty = no server-side prepared statements
+    public String executeTemplate = "";  // e.g., {"statementId": "${statementId}", "parameters": ${parameters}}
+    public String pageTemplate = "";  // e.g., {"cursor": "${cursor}", "fetchSize": ${fetchSize}}; empty = no paging
+    public String limitTemplate = "";  // SQL around a query for setMaxRows, e.g. SELECT * FROM (${sql}) LIMIT ${maxRows}
+    public String timeoutHeader = "";  // header carrying a statement's query timeout in ms, e.g. X-Query-Timeout-Ms
+    public String queryIdHeader = "";  // header carrying a client-generated ID per execution, e.g. X-Query-Id
+    public String cancelTemplate = "";  // e.g., {"sql": "KILL QUERY WHERE query_id = '${queryId}'"}; empty = no server-side cancel
     
     // Response config
     public boolean responseNdjson = true;
@@ -21,8 +31,47 @@ public class SchemaConfig {
     public String updateCountPath = "$.updateCount";
     public boolean rowsAsObjects = true;  // true = {"col": "val"}, false = ["val"]
     public String rowsPath = "$.data[*]"; // only used when rowsAsObjects=false and responseNdjson=false
+    public String batchUpdateCountsPath = "$.updateCounts"; // only used with batchTemplate
+    public String statementIdPath = "$.statementId"; // handle in a prepare response, only used with prepareTemplate
+    public String nextPagePath = "";  // continuation token of a paged result, only used with pageTemplate
+    // Error messages meaning a statement handle is unknown to the server (besides HTTP 404/410)
+    public String unknownStatementError = "(?i)(unknown|invalid|expired) (prepared )?statement|statement .*not found";
 
+    // Server type name -> java.sql.Types, extended by types.<NAME>=<JDBC type> entries
+    public TypeMapping typeMapping = TypeMapping.DEFAULT;
+
+    // Response paths compiled once per schema, see compilePaths()
+    public CompiledPath compiledColumnsPath;
+    public CompiledPath compiledErrorPath;
+    public CompiledPath compiledUpdateCountPath;
+    public CompiledPath compiledRowsPath;
+    public CompiledPath compiledBatchUpdateCountsPath;
+    public CompiledPath compiledStatementIdPath;
+    public Pattern compiledUnknownStatementError;
+    public CompiledPath compiledNextPagePath;  // null when the schema does not page results
+
+    // Request templates split once into segments, see compileTemplates()
+    public RequestTemplate compiledRequestTemplate;
+    public RequestTemplate compiledParameterTemplate;
+    public RequestTemplate compiledBatchTemplate;
+    public RequestTemplate compiledPrepareTemplate;
+    public RequestTemplate compiledExecuteTemplate;
+    public RequestTemplate compiledPageTemplate;
+    public RequestTemplate compiledCancelTemplate;
+
+    private static final Map<String, SchemaConfig> loaded = new ConcurrentHashMap<>();
+
+    // Schemas are immutable once loaded, so every connection using a schema shares one instance.
+    // The resource is read outside the map so no lock is held across the I/O.
     public static SchemaConfig load(String name) {
+        SchemaConfig config = loaded.get(name);
+        if (config != null) return config;
+        config = loadResource(name);
+        SchemaConfig existing = loaded.putIfAbsent(name, config);
+        return existing != null ? existing : config;
+    }
+
+    private static SchemaConfig loadResource(String name) {
         SchemaConfig config = new SchemaConfig();
         String resourcePath = "/schemas/" + name + ".properties";
         try (InputStream is = SchemaConfig.class.getResourceAsStream(resourcePath)) {
@@ -39,9 +88,33 @@ public class SchemaConfig {
         } catch (IOException e) {
             // Return defaults
         }
+        config.compilePaths();
+        config.compileTemplates();
         return config;
     }
 
+    public void compilePaths() {
+        compiledColumnsPath = CompiledPath.compile(columnsPath);
+        compiledErrorPath = CompiledPath.compile(errorPath);
+        compiledUpdateCountPath = CompiledPath.compile(updateCountPath);
+        compiledRowsPath = CompiledPath.compile(rowsPath);
+        compiledBatchUpdateCountsPath = CompiledPath.compile(batchUpdateCountsPath);
+        compiledStatementIdPath = CompiledPath.compile(statementIdPath);
+        compiledUnknownStatementError = Pattern.compile(unknownStatementError);
+        compiledNextPagePath = nextPagePath.isEmpty() ? null : CompiledPath.compile(nextPagePath);
+    }
+
+    public void compileTemplates() {
+        boolean json = requestContentType.contains("json");
+        compiledRequestTemplate = RequestTemplate.compile(requestTemplate, json, "sql", "parameters", "fetchSize", "timeoutMs");
+        compiledParameterTemplate = RequestTemplate.compile(parameterTemplate, json, "value", "type");
+        compiledBatchTemplate = RequestTemplate.compile(batchTemplate, json, "statements");
+        compiledPrepareTemplate = RequestTemplate.compile(prepareTemplate, json, "sql");
+        compiledExecuteTemplate = RequestTemplate.compile(executeTemplate, json, "statementId", "parameters", "fetchSize", "timeoutMs");
+        compiledPageTemplate = RequestTemplate.compile(pageTemplate, json, "cursor", "fetchSize");
+        compiledCancelTemplate = RequestTemplate.compile(cancelTemplate, json, "queryId");
+    }
+
     private void loadFromProperties(InputStream is) throws IOException {
         Properties props = new Properties();
         props.load(is);
@@ -50,6 +123,14 @@ public class SchemaConfig {
         requestTemplate = props.getProperty("request.template", requestTemplate);
         parameterTemplate = props.getProperty("request.parameterTemplate", parameterTemplate);
         urlSuffix = props.getProperty("request.urlSuffix", urlSuffix);
+        batchTemplate = props.getProperty("request.batchTemplate", batchTemplate);
+        prepareTemplate = props.getProperty("request.prepareTemplate", prepareTemplate);
+        executeTemplate = props.getProperty("request.executeTemplate", executeTemplate);
+        pageTemplate = props.getProperty("request.pageTemplate", pageTemplate);
+        limitTemplate = props.getProperty("request.limitTemplate", limitTemplate);
+        timeoutHeader = props.getProperty("request.timeoutHeader", timeoutHeader);
+        queryIdHeader = props.getProperty("request.queryIdHeader", queryIdHeader);
+        cancelTemplate = props.getProperty("request.cancelTemplate", cancelTemplate);
         
         responseNdjson = Boolean.parseBoolean(props.getProperty("response.ndjson", String.valueOf(responseNdjson)));
         columnsPath = props.getProperty("response.columnsPath", columnsPath);
@@ -59,5 +140,11 @@ public class SchemaConfig {
         updateCountPath = props.getProperty("response.updateCountPath", updateCountPath);
         rowsAsObjects = Boolean.parseBoolean(props.getProperty("response.rowsAsObjects", String.valueOf(rowsAsObjects)));
         rowsPath = props.getProperty("response.rowsPath", rowsPath);
+        batchUpdateCountsPath = props.getProperty("response.batchUpdateCountsPath", batchUpdateCountsPath);
+        statementIdPath = props.getProperty("response.statementIdPath", statementIdPath);
+        unknownStatementError = props.getProperty("response.unknownStatementError", unknownStatementError);
+        nextPagePath = props.getProperty("response.nextPagePath", nextPagePath);
+
+        typeMapping = TypeMapping.DEFAULT.withOverrides(props);
     }
 }
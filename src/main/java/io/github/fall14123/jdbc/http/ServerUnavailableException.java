@@ -0,0 +1,25 @@
+package io.github.fall14123.jdbc.http;
+
+import java.sql.SQLTransientException;
+
+// An error answer saying the server could not take the request right now (HTTP 429, 502 or 503), with
+// the wait its Retry-After header asked for, if any
+public class ServerUnavailableException extends SQLTransientException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final long retryAfterMs;  // -1 without a Retry-After header
+
+    public ServerUnavailableException(String message, int statusCode, long retryAfterMs) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public int getStatusCode() { return statusCode; }
+    public long getRetryAfterMs() { return retryAfterMs; }
+
+    public static boolean isUnavailable(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503;
+    }
+}
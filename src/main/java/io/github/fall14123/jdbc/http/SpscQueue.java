@@ -0,0 +1,92 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded single-producer/single-consumer ring joining two pipeline stages without locks. A blocked
+// side spins briefly, then parks until the other side makes progress; close() wakes both for good.
+public class SpscQueue<T> {
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 1_000_000;  // re-check bound, a lost unpark costs at most this
+
+    private final Object[] items;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // next slot to take, advanced by the consumer only
+    private final AtomicLong tail = new AtomicLong();  // next slot to fill, advanced by the producer only
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+    private volatile boolean closed;
+
+    // Capacity is rounded up to a power of two
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.items = new Object[size];
+        this.mask = size - 1;
+    }
+
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() == items.length) return false;
+        items[(int) t & mask] = item;
+        tail.set(t + 1);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) return null;
+        int index = (int) h & mask;
+        T item = (T) items[index];
+        items[index] = null;
+        head.set(h + 1);
+        Thread producer = parkedProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        return item;
+    }
+
+    // Blocks while the queue is full; false once it is closed
+    public boolean put(T item) {
+        for (int spins = 0; !closed; spins++) {
+            if (offer(item)) return true;
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parkedProducer = Thread.currentThread();
+                if (tail.get() - head.get() == items.length && !closed) LockSupport.parkNanos(this, PARK_NANOS);
+                parkedProducer = null;
+            }
+        }
+        return false;
+    }
+
+    // Blocks while the queue is empty; null once it is closed
+    public T take() {
+        for (int spins = 0; !closed; spins++) {
+            T item = poll();
+            if (item != null) return item;
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parkedConsumer = Thread.currentThread();
+                if (head.get() == tail.get() && !closed) LockSupport.parkNanos(this, PARK_NANOS);
+                parkedConsumer = null;
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        closed = true;
+        Thread producer = parkedProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
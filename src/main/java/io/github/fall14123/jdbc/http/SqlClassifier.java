@@ -0,0 +1,99 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Coarse statement classification for the result cache: which statements only read, which of those
+// always return the same rows, and a normalized text to key them on.
+public class SqlClassifier {
+    private static final Set<String> READ_KEYWORDS = Set.of(
+        "SELECT", "WITH", "VALUES", "TABLE", "FROM", "SHOW", "DESCRIBE", "DESC", "EXPLAIN", "SUMMARIZE");
+    private static final Set<String> QUERY_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "FROM");
+    private static final Set<String> WRITE_KEYWORDS = Set.of(
+        "INSERT", "UPDATE", "DELETE", "MERGE", "COPY", "CREATE", "DROP", "ALTER", "TRUNCATE", "ANALYZE", "INTO");
+    private static final Pattern NON_WORD = Pattern.compile("[^A-Z_]+");
+    // Calls by name, with or without a space before the parenthesis, and the special values taking none
+    private static final Pattern VOLATILE_FUNCTIONS = Pattern.compile(
+        "\\b(random|rand|setseed|uuid|gen_random_uuid|nextval|currval|now|today|get_current_time)\\s*\\("
+            + "|\\b(current_timestamp|current_date|current_time|localtimestamp|localtime)\\b", Pattern.CASE_INSENSITIVE);
+
+    public enum Kind {
+        CACHEABLE_READ,  // read-only and free of functions whose result changes between executions
+        READ,            // read-only, but e.g. calls random() or now()
+        WRITE            // anything that may change data, including statements not recognized
+    }
+
+    public static Kind classify(String sql) {
+        return classifyNormalized(normalize(sql));
+    }
+
+    // Same as classify, for text that already went through normalize()
+    public static Kind classifyNormalized(String normalized) {
+        if (!READ_KEYWORDS.contains(firstKeyword(normalized))) return Kind.WRITE;
+        // A DML keyword anywhere (e.g. in a CTE) makes it a write; literals may cause false positives, which are safe
+        for (String word : NON_WORD.split(normalized.toUpperCase(Locale.ROOT))) {
+            if (WRITE_KEYWORDS.contains(word)) return Kind.WRITE;
+        }
+        return VOLATILE_FUNCTIONS.matcher(normalized).find() ? Kind.READ : Kind.CACHEABLE_READ;
+    }
+
+    // A read that can stand as a subquery, unlike e.g. SHOW or EXPLAIN
+    public static boolean isQuery(String normalized) {
+        return QUERY_KEYWORDS.contains(firstKeyword(normalized)) && classifyNormalized(normalized) != Kind.WRITE;
+    }
+
+    // Drops comments, collapses whitespace and trailing semicolons outside string literals and quoted identifiers
+    public static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') i++;
+                pendingSpace = true;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && sb.length() > 0) sb.append(' ');
+                pendingSpace = false;
+                if (c == '\'' || c == '"') {
+                    int end = closingQuote(sql, i);
+                    sb.append(sql, i, end + 1);
+                    i = end;
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        int end = sb.length();
+        while (end > 0 && (sb.charAt(end - 1) == ';' || sb.charAt(end - 1) == ' ')) end--;
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static String firstKeyword(String normalized) {
+        int start = 0;
+        while (start < normalized.length() && (normalized.charAt(start) == '(' || normalized.charAt(start) == ' ')) start++;
+        int end = start;
+        while (end < normalized.length() && Character.isLetter(normalized.charAt(end))) end++;
+        return normalized.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    // Index of the quote closing the literal opened at start (doubled quotes escape), or the last index if unterminated
+    private static int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        for (int i = start + 1; i < sql.length(); i++) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) i++;
+                else return i;
+            }
+        }
+        return sql.length() - 1;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// LRU cache of prepared statement plans keyed by SQL text, so preparing the same statement again skips
+// lexing it and reuses the parameter list of a closed statement. Per connection, or shared by the
+// driver's connections with prepStmtCacheScope=driver.
+public class StatementCache {
+    // Everything derived from the SQL text alone, shared by all statements prepared from it
+    public static class Plan {
+        private static final Object NOT_REWRITABLE = new Object();
+
+        private final String text;
+        private final ParsedSql sql;
+        private final AtomicReference<List<QueryRequest.Parameter>> freeParameters = new AtomicReference<>();
+        private Object insert;  // null until parsed
+        private final Map<String, String> statementIds = new ConcurrentHashMap<>();
+
+        Plan(String text) {
+            this.text = text;
+            this.sql = ParsedSql.parse(text);
+        }
+
+        // The SQL as passed to prepareStatement
+        public String text() {
+            return text;
+        }
+
+        public ParsedSql sql() {
+            return sql;
+        }
+
+        // The multi-row INSERT rewrite of the statement, or null when it cannot be rewritten.
+        // Races between threads only parse it again.
+        public MultiRowInsert multiRowInsert() {
+            Object parsed = insert;
+            if (parsed == null) {
+                MultiRowInsert rewrite = MultiRowInsert.parse(text);
+                insert = parsed = rewrite != null ? rewrite : NOT_REWRITABLE;
+            }
+            return parsed instanceof MultiRowInsert rewrite ? rewrite : null;
+        }
+
+        // Server-side handle of this statement for a connection's endpoint and user, or null when not prepared there
+        public String statementId(String scope) {
+            return statementIds.get(scope);
+        }
+
+        public void statementId(String scope, String statementId) {
+            statementIds.put(scope, statementId);
+        }
+
+        public void forgetStatementId(String scope, String statementId) {
+            statementIds.remove(scope, statementId);
+        }
+
+        // A list of nulls, one per placeholder, recycled from a closed statement when there is one
+        public List<QueryRequest.Parameter> parameters() {
+            List<QueryRequest.Parameter> parameters = freeParameters.getAndSet(null);
+            if (parameters != null) return parameters;
+            return new ArrayList<>(Collections.nCopies(sql.parameterCount(), null));
+        }
+
+        // Called by a statement on close; it must not touch the list afterwards
+        public void release(List<QueryRequest.Parameter> parameters) {
+            Collections.fill(parameters, null);
+            freeParameters.compareAndSet(null, parameters);
+        }
+    }
+
+    private final int maxSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Plan> plans;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // maxSize 0 disables caching: every statement gets a fresh plan
+    public StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                return size() > StatementCache.this.maxSize;
+            }
+        };
+    }
+
+    public Plan plan(String sql) {
+        if (maxSize <= 0) return new Plan(sql);
+        lock.lock();
+        try {
+            Plan plan = plans.get(sql);
+            if (plan != null) {
+                hits.increment();
+                return plan;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Lexed outside the lock; a concurrent miss on the same SQL keeps whichever plan lands first
+        Plan created = new Plan(sql);
+        misses.increment();
+        lock.lock();
+        try {
+            Plan existing = plans.putIfAbsent(sql, created);
+            return existing != null ? existing : created;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return plans.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, hitRate=%.2f, plans=%d", getHits(), getMisses(), getHitRate(), size());
+    }
+}
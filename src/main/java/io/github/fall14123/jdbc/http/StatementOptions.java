@@ -0,0 +1,24 @@
+package io.github.fall14123.jdbc.http;
+
+// Per-statement execution settings, handed to the connection with every query a statement runs
+public class StatementOptions {
+    public int fetchSize = 0;  // rows per page when the schema pages results; 0 = all rows in one response
+    public int maxRows = 0;  // rows a result set returns at most; 0 = no limit
+    public long queryTimeoutMs = 0;  // the query is aborted once it has run this long; 0 = no timeout
+    public final QueryControl control;
+
+    public StatementOptions() {
+        this(new QueryControl());
+    }
+
+    private StatementOptions(QueryControl control) {
+        this.control = control;
+    }
+
+    // For the statements of a batch: the same query timeout and control, without the result set settings
+    public StatementOptions forBatch() {
+        StatementOptions batch = new StatementOptions(control);
+        batch.queryTimeoutMs = queryTimeoutMs;
+        return batch;
+    }
+}
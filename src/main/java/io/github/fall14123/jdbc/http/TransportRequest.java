@@ -0,0 +1,6 @@
+package io.github.fall14123.jdbc.http;
+
+import java.net.URI;
+import java.util.Map;
+
+public record TransportRequest(URI uri, Map<String, String> headers, byte[] body, int timeoutMs) {}
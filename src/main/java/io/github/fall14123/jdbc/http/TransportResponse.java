@@ -0,0 +1,45 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TransportResponse implements AutoCloseable {
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public TransportResponse(int statusCode, Map<String, List<String>> headers, InputStream body, Runnable onClose) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.body = body != null ? body : InputStream.nullInputStream();
+        this.onClose = onClose;
+    }
+
+    public int statusCode() { return statusCode; }
+    public InputStream body() { return body; }
+    public Map<String, List<String>> headers() { return headers; }
+
+    public String header(String name) {
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (e.getKey() != null && e.getKey().equalsIgnoreCase(name) && !e.getValue().isEmpty()) return e.getValue().get(0);
+        }
+        return null;
+    }
+
+    // Closing before the body is fully read aborts the exchange instead of draining it
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            body.close();
+        } catch (IOException ignored) {
+        } finally {
+            if (onClose != null) onClose.run();
+        }
+    }
+}
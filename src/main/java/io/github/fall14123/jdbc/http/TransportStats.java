@@ -0,0 +1,40 @@
+package io.github.fall14123.jdbc.http;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TransportStats {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    void requestStarted(int bodyBytes) {
+        requests.increment();
+        bytesSent.add(bodyBytes);
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+    }
+
+    void requestFinished() { inFlight.decrementAndGet(); }
+    void bytesReceived(long bytes) { bytesReceived.add(bytes); }
+    void requestFailed() { failures.increment(); }
+
+    public long getRequests() { return requests.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public long getBytesSent() { return bytesSent.sum(); }
+    // Response body bytes as transferred, i.e. before decompression
+    public long getBytesReceived() { return bytesReceived.sum(); }
+    public int getInFlight() { return inFlight.get(); }
+
+    // Most requests in flight at once; with HTTP/1.1 also the most sockets the transport had busy together
+    public int getPeakInFlight() { return peakInFlight.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d, failures=%d, inFlight=%d, peakInFlight=%d, bytesSent=%d, bytesReceived=%d",
+            getRequests(), getFailures(), getInFlight(), getPeakInFlight(), getBytesSent(), getBytesReceived());
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.fall14123.jdbc.http;
+
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+// Maps server type names to java.sql.Types. The defaults cover DuckDB/Flock type names;
+// a schema can add or override entries with types.<NAME>=<java.sql.Types name>.
+public class TypeMapping {
+    public static final TypeMapping DEFAULT = new TypeMapping(defaults());
+
+    private final Map<String, Integer> types;
+
+    private TypeMapping(Map<String, Integer> types) {
+        this.types = types;
+    }
+
+    private static Map<String, Integer> defaults() {
+        Map<String, Integer> types = new HashMap<>();
+        put(types, Types.BOOLEAN, "BOOLEAN", "BOOL", "LOGICAL");
+        put(types, Types.TINYINT, "TINYINT", "INT1");
+        put(types, Types.SMALLINT, "SMALLINT", "INT2", "SHORT", "UTINYINT");
+        put(types, Types.INTEGER, "INTEGER", "INT", "INT4", "SIGNED", "USMALLINT");
+        put(types, Types.BIGINT, "BIGINT", "INT8", "LONG", "UINTEGER");
+        put(types, Types.NUMERIC, "UBIGINT", "HUGEINT", "UHUGEINT", "INT128", "VARINT");
+        put(types, Types.DECIMAL, "DECIMAL", "NUMERIC");
+        put(types, Types.REAL, "REAL", "FLOAT", "FLOAT4");
+        put(types, Types.DOUBLE, "DOUBLE", "FLOAT8");
+        put(types, Types.VARCHAR, "VARCHAR", "STRING", "TEXT", "CHAR", "BPCHAR");
+        put(types, Types.DATE, "DATE");
+        put(types, Types.TIME, "TIME");
+        put(types, Types.TIME_WITH_TIMEZONE, "TIMETZ", "TIME WITH TIME ZONE");
+        put(types, Types.TIMESTAMP, "TIMESTAMP", "DATETIME", "TIMESTAMP_S", "TIMESTAMP_MS", "TIMESTAMP_NS");
+        put(types, Types.TIMESTAMP_WITH_TIMEZONE, "TIMESTAMPTZ", "TIMESTAMP WITH TIME ZONE");
+        put(types, Types.VARBINARY, "BLOB", "BYTEA", "BINARY", "VARBINARY");
+        put(types, Types.ARRAY, "LIST", "ARRAY");
+        put(types, Types.STRUCT, "STRUCT");
+        return types;
+    }
+
+    private static void put(Map<String, Integer> types, int sqlType, String... names) {
+        for (String name : names) types.put(name, sqlType);
+    }
+
+    // Copy of this mapping with the schema's types.* entries applied; unknown JDBC type names are ignored
+    public TypeMapping withOverrides(Properties props) {
+        Map<String, Integer> merged = new HashMap<>(types);
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith("types.")) continue;
+            try {
+                JDBCType jdbcType = JDBCType.valueOf(props.getProperty(key).trim().toUpperCase(Locale.ROOT));
+                merged.put(normalize(key.substring("types.".length())), jdbcType.getVendorTypeNumber());
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return new TypeMapping(merged);
+    }
+
+    // Types.OTHER when the server reported no type or one this mapping does not know
+    public int sqlType(String typeName) {
+        if (typeName == null) return Types.OTHER;
+        String name = normalize(typeName);
+        Integer sqlType = types.get(name);
+        if (sqlType != null) return sqlType;
+        if (name.endsWith("[]")) return Types.ARRAY;
+        return Types.OTHER;
+    }
+
+    public int[] sqlTypes(List<String> typeNames) {
+        if (typeNames == null) return null;
+        int[] sqlTypes = new int[typeNames.size()];
+        for (int i = 0; i < sqlTypes.length; i++) sqlTypes[i] = sqlType(typeNames.get(i));
+        return sqlTypes;
+    }
+
+    // Class of the values getObject returns for a column, which follows the vector chosen in ColumnVector.forSqlType
+    public static String className(int sqlType) {
+        return switch (sqlType) {
+            case Types.BOOLEAN, Types.BIT -> Boolean.class.getName();
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> Integer.class.getName();
+            case Types.BIGINT -> Long.class.getName();
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Double.class.getName();
+            case Types.DECIMAL, Types.NUMERIC -> BigDecimal.class.getName();
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                 Types.DATE, Types.TIME, Types.TIME_WITH_TIMEZONE,
+                 Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> String.class.getName();
+            default -> Object.class.getName();
+        };
+    }
+
+    // Upper-cased base name: DECIMAL(18,3) -> DECIMAL, but INTEGER[] keeps its suffix
+    static String normalize(String typeName) {
+        String name = typeName.trim().toUpperCase(Locale.ROOT);
+        int paren = name.indexOf('(');
+        if (paren > 0 && !name.endsWith("[]")) name = name.substring(0, paren).trim();
+        return name;
+    }
+}
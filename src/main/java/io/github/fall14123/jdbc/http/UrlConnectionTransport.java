@@ -0,0 +1,39 @@
+package io.github.fall14123.jdbc.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.function.Consumer;
+
+public class UrlConnectionTransport extends HttpTransport {
+    private final int connectTimeoutMs;
+    private final boolean keepAlive;
+
+    public UrlConnectionTransport(ConnectionConfig config) {
+        super(config);
+        this.connectTimeoutMs = config.connectTimeoutMs;
+        this.keepAlive = config.keepAlive;
+    }
+
+    @Override
+    protected TransportResponse exchange(TransportRequest request, Consumer<Runnable> onAbort) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) request.uri().toURL().openConnection();
+        // Disconnecting closes the socket, failing a write or a read blocked on it
+        if (onAbort != null) onAbort.accept(conn::disconnect);
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(request.timeoutMs());
+        conn.setRequestProperty("Connection", keepAlive ? "keep-alive" : "close");
+        request.headers().forEach(conn::setRequestProperty);
+
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(request.body());
+        }
+
+        int responseCode = conn.getResponseCode();
+        InputStream body = responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        return new TransportResponse(responseCode, conn.getHeaderFields(), body, keepAlive ? null : conn::disconnect);
+    }
+}
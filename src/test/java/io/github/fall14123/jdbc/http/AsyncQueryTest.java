@@ -0,0 +1,72 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Non-blocking queries through the unwrapped HttpJdbcAsyncConnection, against an in-process stub server.
+ */
+public class AsyncQueryTest {
+    private static final int QUERIES = 64;
+
+    private Connection getConnection(StubHttpServer server) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "httpserver");
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    @Test
+    void testQueriesAreInFlightConcurrently() throws Exception {
+        // Every request is held until all of them have arrived, so this only completes if none waits for another
+        CountDownLatch allArrived = new CountDownLatch(QUERIES);
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            String sql = StubHttpServer.readBody(exchange);
+            allArrived.countDown();
+            try {
+                allArrived.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String n = sql.substring("SELECT ".length());
+            StubHttpServer.respond(exchange, 200, "{\"meta\":[{\"name\":\"n\",\"type\":\"INTEGER\"}],\"data\":[[" + n + "]],\"rows\":1}");
+        })) {
+            try (Connection conn = getConnection(server)) {
+                assertTrue(conn.isWrapperFor(HttpJdbcAsyncConnection.class));
+                HttpJdbcAsyncConnection async = conn.unwrap(HttpJdbcAsyncConnection.class);
+                List<CompletableFuture<QueryResult>> futures = new ArrayList<>();
+                for (int i = 0; i < QUERIES; i++) futures.add(async.executeQueryAsync("SELECT " + i));
+                for (int i = 0; i < QUERIES; i++) {
+                    QueryResult result = futures.get(i).get(10, TimeUnit.SECONDS);
+                    assertFalse(result.isStreaming());
+                    assertEquals(List.of(List.of(i)), result.getRows());
+                }
+                assertEquals(0, ((HttpJdbcConnection) conn).getTransportStats().getInFlight());
+            }
+        }
+    }
+
+    @Test
+    void testServerErrorCompletesExceptionally() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 500, "{\"error\":\"Parser Error: syntax error\"}");
+        })) {
+            try (Connection conn = getConnection(server)) {
+                CompletableFuture<QueryResult> future = conn.unwrap(HttpJdbcAsyncConnection.class).executeQueryAsync("SELEC 1");
+                ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(SQLException.class, e.getCause());
+                assertEquals("Parser Error: syntax error", e.getCause().getMessage());
+                assertThrows(SQLException.class, () -> conn.unwrap(DatabaseMetaData.class));
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch execution against an in-process stub server: batch template, multi-row INSERT rewrite and per-statement fallback.
+ */
+public class BatchExecutionTest {
+
+    private Connection getConnection(StubHttpServer server, String schema) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", schema);
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    @Test
+    void testPreparedInsertIsRewrittenToOneRequest() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            requests.add(StubHttpServer.readBody(exchange));
+            StubHttpServer.respond(exchange, 200, "{\"rows\":3}");
+        })) {
+            try (Connection conn = getConnection(server, "httpserver");
+                 PreparedStatement ps = conn.prepareStatement("INSERT INTO t (id, name) VALUES (?, ?)")) {
+                for (int i = 1; i <= 3; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, "n'" + i);
+                    ps.addBatch();
+                }
+                assertArrayEquals(new int[] {1, 1, 1}, ps.executeBatch());
+                assertArrayEquals(new int[0], ps.executeBatch());
+            }
+        }
+        assertEquals(List.of("INSERT INTO t (id, name) VALUES (1, 'n''1'), (2, 'n''2'), (3, 'n''3')"), requests);
+    }
+
+    @Test
+    void testStatementBatchFallsBackToOneRequestPerStatement() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            String sql = StubHttpServer.readBody(exchange);
+            requests.add(sql);
+            if (sql.startsWith("DELETE FROM missing")) StubHttpServer.respond(exchange, 200, "{\"error\":\"Table missing\"}");
+            else StubHttpServer.respond(exchange, 200, sql.startsWith("UPDATE") ? "{\"rows\":5}" : "{\"rows\":1}");
+        })) {
+            try (Connection conn = getConnection(server, "httpserver");
+                 Statement stmt = conn.createStatement()) {
+                stmt.addBatch("INSERT INTO t VALUES (1)");
+                stmt.addBatch("UPDATE t SET x = 1");
+                assertArrayEquals(new int[] {1, 5}, stmt.executeBatch());
+
+                stmt.addBatch("INSERT INTO t VALUES (2)");
+                stmt.addBatch("DELETE FROM missing");
+                stmt.addBatch("INSERT INTO t VALUES (3)");
+                BatchUpdateException e = assertThrows(BatchUpdateException.class, stmt::executeBatch);
+                assertArrayEquals(new int[] {1}, e.getUpdateCounts());
+                assertEquals("Table missing", e.getMessage());
+            }
+        }
+        assertEquals(4, requests.size());
+    }
+
+    @Test
+    void testBatchTemplateSendsOneRequest() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            requests.add(StubHttpServer.readBody(exchange));
+            StubHttpServer.respond(exchange, 200, "{\"updateCounts\":[1,1]}");
+        })) {
+            try (Connection conn = getConnection(server, "batchstub");
+                 PreparedStatement ps = conn.prepareStatement("INSERT INTO t VALUES (?)")) {
+                ps.setInt(1, 1);
+                ps.addBatch();
+                ps.setInt(1, 2);
+                ps.addBatch();
+                assertArrayEquals(new int[] {1, 1}, ps.executeBatch());
+            }
+        }
+        assertEquals(List.of("{\"statements\": [{\"sql\": \"INSERT INTO t VALUES (?)\", \"parameters\": [{\"value\": 1, \"type\": \"int\"}]},"
+            + "{\"sql\": \"INSERT INTO t VALUES (?)\", \"parameters\": [{\"value\": 2, \"type\": \"int\"}]}]}"), requests);
+    }
+
+    @Test
+    void testMultiRowInsertParsing() {
+        assertEquals("INSERT INTO t VALUES (?, 'a)'), (?, 'a)')", MultiRowInsert.parse("INSERT INTO t VALUES (?, 'a)');").sql(2));
+        assertNull(MultiRowInsert.parse("INSERT INTO t SELECT ? FROM s"));
+        assertNull(MultiRowInsert.parse("INSERT INTO t VALUES (?) ON CONFLICT DO NOTHING"));
+        assertNull(MultiRowInsert.parse("UPDATE t SET x = ? WHERE id IN (VALUES (1))"));
+        assertNull(MultiRowInsert.parse("INSERT INTO t (a) SELECT ? UNION ALL VALUES (?)"));
+    }
+}
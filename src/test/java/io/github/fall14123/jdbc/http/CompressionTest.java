@@ -0,0 +1,133 @@
+package io.github.fall14123.jdbc.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Content-Encoding negotiation against an in-process stub server.
+ */
+public class CompressionTest {
+    private static final int ROWS = 5000;
+
+    private static String ndjson() {
+        StringBuilder sb = new StringBuilder("{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"label\",\"type\":\"VARCHAR\"}]}}\n");
+        for (int i = 0; i < ROWS; i++) sb.append("{\"id\":").append(i).append(",\"label\":\"row-label-").append(i % 10).append("\"}\n");
+        return sb.toString();
+    }
+
+    private static byte[] compress(String coding, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encoder = switch (coding) {
+            case "gzip" -> new GZIPOutputStream(out);
+            case "deflate" -> new DeflaterOutputStream(out);
+            default -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        }) {
+            encoder.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    // Compresses with the first coding the client accepts; rawDeflate sends headerless deflate data
+    private static void respond(HttpExchange exchange, String body, boolean rawDeflate) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (accept != null) {
+            String coding = accept.split(",")[0].trim();
+            bytes = compress(rawDeflate && coding.equals("deflate") ? "raw" : coding, bytes);
+            exchange.getResponseHeaders().set("Content-Encoding", coding);
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private Connection getConnection(StubHttpServer server, String compression) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("compression", compression);
+        props.setProperty("requestCompressionThreshold", "64");
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    private static int readAll(Connection conn) throws SQLException {
+        int rows = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, label FROM t")) {
+            while (rs.next()) {
+                assertEquals(rows, rs.getInt(1));
+                assertEquals("row-label-" + (rows % 10), rs.getString(2));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void testCompressedResponsesAreDecodedAndSmallerOnTheWire() throws Exception {
+        String body = ndjson();
+        List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            acceptEncodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+            respond(exchange, body, false);
+        })) {
+            for (String compression : List.of("none", "gzip", "deflate", "auto")) {
+                try (Connection conn = getConnection(server, compression)) {
+                    assertEquals(ROWS, readAll(conn));
+                    long received = ((HttpJdbcConnection) conn).getTransportStats().getBytesReceived();
+                    if (compression.equals("none")) assertTrue(received >= body.length());
+                    else assertTrue(received < body.length() / 5, compression + " received " + received);
+                }
+            }
+        }
+        assertEquals(List.of("null", "gzip", "deflate", "gzip, deflate"), acceptEncodings);
+    }
+
+    @Test
+    void testRawDeflateResponse() throws Exception {
+        String body = ndjson();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            respond(exchange, body, true);
+        })) {
+            try (Connection conn = getConnection(server, "deflate")) {
+                assertEquals(ROWS, readAll(conn));
+            }
+        }
+    }
+
+    @Test
+    void testLargeRequestBodiesAreCompressed() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            byte[] raw = exchange.getRequestBody().readAllBytes();
+            boolean gzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            received.add((gzip ? "gzip:" : "plain:") + new String(gzip ? new GZIPInputStream(new java.io.ByteArrayInputStream(raw)).readAllBytes() : raw, StandardCharsets.UTF_8));
+            StubHttpServer.respond(exchange, 200, "{\"updateCount\":1}");
+        })) {
+            try (Connection conn = getConnection(server, "gzip");
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM t");
+                String insert = "INSERT INTO t VALUES " + "(1, 'a'), ".repeat(20) + "(1, 'a')";
+                stmt.executeUpdate(insert);
+            }
+        }
+        assertEquals(2, received.size());
+        assertTrue(received.get(0).startsWith("plain:"));
+        assertTrue(received.get(1).startsWith("gzip:") && received.get(1).contains("(1, 'a'), (1, 'a')"));
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads on a read-only connection are hedged to a second replica when the first is slower than its usual
+ * response time; the first answer wins.
+ */
+public class HedgingTest {
+    private static final int SLOW_MS = 1000;
+
+    private static Connection connect(LoadBalancingTest.Replica a, LoadBalancingTest.Replica b) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("hedgePercentile", "90");
+        props.setProperty("hedgeMinDelay", "50");
+        return DriverManager.getConnection("jdbc:http://" + a.host() + "," + b.host() + "/", props);
+    }
+
+    // Round robin gives both nodes enough samples for their percentiles
+    private static void warmUp(Statement stmt) throws SQLException {
+        for (int i = 0; i < 2 * Hedging.MIN_SAMPLES; i++) query(stmt);
+    }
+
+    private static long query(Statement stmt) throws SQLException {
+        long start = System.nanoTime();
+        try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(-1, histogram.percentile(50));
+        for (int i = 1; i <= 100; i++) histogram.record(i * 1_000_000L);
+        assertEquals(100, histogram.count());
+        // Buckets are within 12.5% of the value
+        assertEquals(50, histogram.percentile(50) / 1_000_000.0, 50 * 0.125);
+        assertEquals(90, histogram.percentile(90) / 1_000_000.0, 90 * 0.125);
+        assertEquals(100, histogram.percentile(100) / 1_000_000.0, 100 * 0.125);
+        for (long micros : new long[] {0, 7, 8, 9, 1000, 123_456_789}) {
+            assertTrue(LatencyHistogram.upperBound(LatencyHistogram.bucket(micros)) >= micros);
+        }
+    }
+
+    @Test
+    void testSlowNodeIsHedgedOnReadOnlyConnection() throws Exception {
+        try (LoadBalancingTest.Replica a = new LoadBalancingTest.Replica(); LoadBalancingTest.Replica b = new LoadBalancingTest.Replica();
+             Connection conn = connect(a, b);
+             Statement stmt = conn.createStatement()) {
+            conn.setReadOnly(true);
+            assertTrue(conn.isReadOnly());
+            warmUp(stmt);
+            int answeredByB = b.queries.get();
+            a.delayMs = SLOW_MS;
+            for (int i = 0; i < 6; i++) {
+                long ms = query(stmt);
+                assertTrue(ms < SLOW_MS / 2, "hedged query took " + ms + "ms");
+            }
+            // Half went to the slow node first (more, when the fast one had a slow moment and was hedged
+            // too), and every one was answered by the fast node
+            int sentToA = a.queries.get() - Hedging.MIN_SAMPLES;
+            assertTrue(sentToA >= 3 && sentToA <= 6, "queries sent to the slow node: " + sentToA);
+            assertEquals(6, b.queries.get() - answeredByB);
+        }
+    }
+
+    @Test
+    void testNoHedgingForWritableConnectionsOrWrites() throws Exception {
+        try (LoadBalancingTest.Replica a = new LoadBalancingTest.Replica(); LoadBalancingTest.Replica b = new LoadBalancingTest.Replica();
+             Connection conn = connect(a, b);
+             Statement stmt = conn.createStatement()) {
+            warmUp(stmt);
+            a.delayMs = 300;
+            long slowest = Math.max(query(stmt), query(stmt));
+            assertTrue(slowest >= 300, "query was not hedged: " + slowest + "ms");
+
+            conn.setReadOnly(true);
+            int before = a.queries.get() + b.queries.get();
+            for (int i = 0; i < 2; i++) stmt.execute("INSERT INTO t VALUES (1)");
+            assertEquals(2, a.queries.get() + b.queries.get() - before);
+        }
+    }
+
+    @Test
+    void testLosingAttemptIsNotSentOnceAborted() throws Exception {
+        try (LoadBalancingTest.Replica a = new LoadBalancingTest.Replica(); LoadBalancingTest.Replica b = new LoadBalancingTest.Replica();
+             Connection conn = connect(a, b)) {
+            Endpoint endpoint = conn.unwrap(HttpJdbcConnection.class).getEndpointGroup().get(0);
+            TransportRequest request = new TransportRequest(endpoint.uri(), Map.of(), "SELECT 1".getBytes(), 1000);
+            // The race was lost while the body was built: the abort runs as soon as it is registered
+            assertThrows(IOException.class, () -> endpoint.send(request, Runnable::run));
+            Thread.sleep(50);
+            assertEquals(0, a.queries.get());
+            assertTrue(endpoint.isAvailable());
+            assertEquals(CircuitBreaker.State.CLOSED, endpoint.breaker().state());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The pooled DataSource: borrowing and returning, sizing and timeouts, and what a returned connection
+ * leaves behind.
+ */
+public class HttpJdbcDataSourceTest {
+    private static final String RESULT = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n{\"id\":1}\n";
+
+    private static StubHttpServer server() throws Exception {
+        return new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, RESULT);
+        });
+    }
+
+    private static HttpJdbcDataSource dataSource(String url, int min, int max) {
+        HttpJdbcDataSource ds = new HttpJdbcDataSource(url);
+        ds.setMinPoolSize(min);
+        ds.setMaxPoolSize(max);
+        ds.setConnectionTimeout(200);
+        return ds;
+    }
+
+    private static HttpJdbcConnection physical(Connection conn) throws SQLException {
+        return conn.unwrap(HttpJdbcConnection.class);
+    }
+
+    @Test
+    void testReturnedConnectionIsReused() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 4)) {
+            HttpJdbcConnection first;
+            try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+                first = physical(conn);
+            }
+            Connection conn = ds.getConnection();
+            assertSame(first, physical(conn));
+            assertFalse(first.isClosed());
+            assertEquals(1, ds.getPool().getTotalConnections());
+            assertEquals(0, ds.getPool().getIdleConnections());
+            conn.close();
+            assertTrue(conn.isClosed());
+            assertThrows(SQLException.class, conn::createStatement);
+            assertEquals(1, ds.getPool().getIdleConnections());
+            assertThrows(IllegalStateException.class, () -> ds.setMaxPoolSize(8));
+        }
+    }
+
+    @Test
+    void testReturnedConnectionIsReset() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 1)) {
+            Statement leaked;
+            try (Connection conn = ds.getConnection()) {
+                conn.setReadOnly(true);
+                conn.setAutoCommit(false);
+                leaked = conn.createStatement();
+            }
+            assertTrue(leaked.isClosed());
+            try (Connection conn = ds.getConnection()) {
+                assertFalse(conn.isReadOnly());
+                assertTrue(conn.getAutoCommit());
+            }
+        }
+    }
+
+    @Test
+    void testStatementsLeadBackToTheLogicalConnection() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 1)) {
+            HttpJdbcConnection physical;
+            try (Connection conn = ds.getConnection()) {
+                physical = physical(conn);
+                Statement stmt = conn.createStatement();
+                PreparedStatement ps = conn.prepareStatement("SELECT id FROM t WHERE id = ?");
+                assertSame(conn, stmt.getConnection());
+                assertSame(conn, ps.getConnection());
+                assertSame(conn, conn.getMetaData().getConnection());
+                // The usual cleanup through the statement returns the connection, rather than closing it
+                stmt.getConnection().close();
+                assertTrue(conn.isClosed());
+            }
+            assertFalse(physical.isClosed());
+            assertEquals(1, ds.getPool().getIdleConnections());
+            try (Connection conn = ds.getConnection()) {
+                assertSame(physical, physical(conn));
+            }
+        }
+    }
+
+    @Test
+    void testExhaustedPoolTimesOut() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 2)) {
+            Connection a = ds.getConnection();
+            Connection b = ds.getConnection();
+            assertNotSame(physical(a), physical(b));
+            long start = System.nanoTime();
+            SQLException e = assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150, e.getMessage());
+            a.close();
+            b.close();
+            assertEquals(2, ds.getPool().getTotalConnections());
+        }
+    }
+
+    @Test
+    void testWaiterGetsTheReturnedConnection() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 1)) {
+            ds.setConnectionTimeout(5000);
+            Connection held = ds.getConnection();
+            HttpJdbcConnection only = physical(held);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<HttpJdbcConnection> waiter = executor.submit(() -> {
+                    try (Connection conn = ds.getConnection()) {
+                        return physical(conn);
+                    }
+                });
+                while (ds.getPool().getWaiters() == 0) Thread.sleep(1);
+                held.close();
+                assertSame(only, waiter.get(5, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void testIdleConnectionsShrinkToMinimum() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 1, 3)) {
+            ds.setIdleTimeout(50);
+            Connection a = ds.getConnection();
+            Connection b = ds.getConnection();
+            Connection c = ds.getConnection();
+            assertEquals(3, ds.getPool().getTotalConnections());
+            a.close();
+            b.close();
+            c.close();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (ds.getPool().getTotalConnections() > 1 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(1, ds.getPool().getTotalConnections());
+        }
+    }
+
+    @Test
+    void testBrokenConnectionIsReplaced() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 1)) {
+            Connection conn = ds.getConnection();
+            HttpJdbcConnection broken = physical(conn);
+            broken.close();
+            conn.close();
+            try (Connection next = ds.getConnection()) {
+                assertNotSame(broken, physical(next));
+                assertTrue(next.isValid(1));
+            }
+            assertEquals(1, ds.getPool().getTotalConnections());
+        }
+    }
+
+    @Test
+    void testPooledConnectionEvents() throws Exception {
+        try (StubHttpServer server = server()) {
+            HttpJdbcDataSource ds = new HttpJdbcDataSource(server.jdbcUrl());
+            PooledConnection pooled = ds.getPooledConnection();
+            AtomicInteger closed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            pooled.addConnectionEventListener(new ConnectionEventListener() {
+                @Override public void connectionClosed(ConnectionEvent event) { closed.incrementAndGet(); }
+                @Override public void connectionErrorOccurred(ConnectionEvent event) { failed.incrementAndGet(); }
+            });
+            Connection first = pooled.getConnection();
+            // A second logical connection closes the first, which does not count as returned
+            Connection second = pooled.getConnection();
+            assertTrue(first.isClosed());
+            second.close();
+            second.close();
+            assertEquals(1, closed.get());
+            pooled.getConnection().abort(Runnable::run);
+            assertEquals(1, failed.get());
+            pooled.close();
+        }
+    }
+
+    @Test
+    void testConcurrentBorrowersNeverShareAConnection() throws Exception {
+        try (StubHttpServer server = server(); HttpJdbcDataSource ds = dataSource(server.jdbcUrl(), 0, 3)) {
+            ds.setConnectionTimeout(10000);
+            Set<HttpJdbcConnection> inUse = ConcurrentHashMap.newKeySet();
+            Set<HttpJdbcConnection> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger overlaps = new AtomicInteger();
+            int threads = 8;
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                Future<?>[] futures = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    futures[t] = executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 500; i++) {
+                            try (Connection conn = ds.getConnection()) {
+                                HttpJdbcConnection http = physical(conn);
+                                seen.add(http);
+                                if (!inUse.add(http)) overlaps.incrementAndGet();
+                                Thread.yield();
+                                inUse.remove(http);
+                            }
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+                for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(0, overlaps.get());
+            assertTrue(seen.size() <= 3);
+            assertEquals(ds.getPool().getTotalConnections(), ds.getPool().getIdleConnections());
+        }
+    }
+}
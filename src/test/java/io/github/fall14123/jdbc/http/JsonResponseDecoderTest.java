@@ -0,0 +1,115 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Single-pass decoding of httpserver (JSONCompact) responses against an in-process stub server.
+ */
+public class JsonResponseDecoderTest {
+
+    private Connection getConnection(StubHttpServer server) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "httpserver");
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    @Test
+    void testRowsStreamAfterMeta() throws Exception {
+        String body = "{\"meta\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}],"
+            + "\"data\":[[1,\"a\"],[2,\"b\"]],\"rows\":2,\"statistics\":{\"elapsed\":0.001}}";
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, body);
+        })) {
+            try (Connection conn = getConnection(server);
+                 Statement stmt = conn.createStatement()) {
+                for (int i = 0; i < 2; i++) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                        assertEquals(ResultSet.TYPE_FORWARD_ONLY, rs.getType());
+                        assertTrue(rs.next());
+                        assertEquals(1, rs.getInt("id"));
+                        assertTrue(rs.next());
+                        assertEquals("b", rs.getString("name"));
+                        assertFalse(rs.next());
+                    }
+                }
+                // Trailing fields were consumed, so the second query reused the socket
+                assertEquals(0, ((HttpJdbcConnection) conn).getTransportStats().getInFlight());
+            }
+        }
+    }
+
+    @Test
+    void testColumnTypesReachMetaDataAndGetters() throws Exception {
+        String body = "{\"meta\":[{\"name\":\"i\",\"type\":\"INTEGER\"},{\"name\":\"b\",\"type\":\"BIGINT\"},"
+            + "{\"name\":\"d\",\"type\":\"DECIMAL(18,3)\"},{\"name\":\"f\",\"type\":\"BOOLEAN\"},{\"name\":\"s\",\"type\":\"VARCHAR\"}],"
+            + "\"data\":[[1,\"9007199254740993\",12.345,true,\"x\"],[null,null,null,null,null]],\"rows\":2}";
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, body);
+        })) {
+            try (Connection conn = getConnection(server);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT i, b, d, f, s FROM t")) {
+                ResultSetMetaData meta = rs.getMetaData();
+                assertEquals(Types.INTEGER, meta.getColumnType(1));
+                assertEquals(Types.BIGINT, meta.getColumnType(2));
+                assertEquals(Types.DECIMAL, meta.getColumnType(3));
+                assertEquals("DECIMAL(18,3)", meta.getColumnTypeName(3));
+                assertEquals(18, meta.getPrecision(3));
+                assertEquals(3, meta.getScale(3));
+                assertEquals(Types.BOOLEAN, meta.getColumnType(4));
+                assertEquals(Types.VARCHAR, meta.getColumnType(5));
+                assertEquals("java.lang.Long", meta.getColumnClassName(2));
+
+                assertTrue(rs.next());
+                assertEquals(1, rs.getObject(1));
+                assertEquals(9007199254740993L, rs.getObject(2));
+                assertEquals(new java.math.BigDecimal("12.345"), rs.getBigDecimal(3));
+                assertTrue(rs.getBoolean(4));
+                assertEquals("x", rs.getObject(5));
+                assertTrue(rs.next());
+                for (int i = 1; i <= 5; i++) assertNull(rs.getObject(i));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    void testRowsBeforeMetaAreBuffered() throws Exception {
+        String body = "{\"data\":[[7,\"x\"]],\"meta\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}]}";
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, body);
+        })) {
+            try (Connection conn = getConnection(server);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                assertTrue(rs.next());
+                assertEquals(7, rs.getInt(1));
+                assertEquals("x", rs.getString(2));
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    void testUpdateCountAndError() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            String sql = StubHttpServer.readBody(exchange);
+            if (sql.startsWith("INSERT")) StubHttpServer.respond(exchange, 200, "{\"rows\":3}");
+            else StubHttpServer.respond(exchange, 200, "{\"error\":\"Catalog Error: Table missing\"}");
+        })) {
+            try (Connection conn = getConnection(server);
+                 Statement stmt = conn.createStatement()) {
+                assertEquals(3, stmt.executeUpdate("INSERT INTO t VALUES (1), (2), (3)"));
+                SQLException e = assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT * FROM missing"));
+                assertEquals("Catalog Error: Table missing", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several replicas in one URL: queries spread over them per query, failing nodes are ejected and probed.
+ */
+public class LoadBalancingTest {
+    private static final String RESULT = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n{\"id\":1}\n";
+
+    // Counts the queries it answers; can be made to answer 503, or to delay its responses
+    static class Replica implements AutoCloseable {
+        final AtomicInteger queries = new AtomicInteger();
+        volatile boolean down;
+        volatile int delayMs;
+        final StubHttpServer server;
+
+        Replica() throws IOException {
+            server = new StubHttpServer(exchange -> {
+                StubHttpServer.readBody(exchange);
+                if (down) {
+                    StubHttpServer.respond(exchange, 503, "{\"error\":\"unavailable\"}");
+                    return;
+                }
+                queries.incrementAndGet();
+                try {
+                    if (delayMs > 0) Thread.sleep(delayMs);
+                } catch (InterruptedException ignored) {
+                }
+                StubHttpServer.respond(exchange, 200, RESULT);
+            });
+        }
+
+        String host() {
+            return server.jdbcUrl().substring("jdbc:http://".length(), server.jdbcUrl().length() - 1);
+        }
+
+        @Override
+        public void close() {
+            server.close();
+        }
+    }
+
+    private static Connection connect(List<Replica> replicas, String loadBalance) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("loadBalance", loadBalance);
+        props.setProperty("ejectAfterFailures", "2");
+        props.setProperty("healthCheckInterval", "50");
+        StringBuilder url = new StringBuilder("jdbc:http://");
+        for (Replica replica : replicas) url.append(replica.host()).append(',');
+        url.setCharAt(url.length() - 1, '/');
+        return DriverManager.getConnection(url.toString(), props);
+    }
+
+    private static void query(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+            assertTrue(rs.next());
+        }
+    }
+
+    @Test
+    void testUrlListsEveryHost() throws Exception {
+        List<URL> urls = HttpJdbcDriver.parseJdbcUrl("jdbc:https://h1:9999, h2:9998,h3/query?format=json");
+        assertEquals(List.of("https://h1:9999/query?format=json", "https://h2:9998/query?format=json", "https://h3/query?format=json"),
+            urls.stream().map(URL::toString).toList());
+        assertEquals(List.of("http://h1:9999"), HttpJdbcDriver.parseJdbcUrl("jdbc:http://h1:9999").stream().map(URL::toString).toList());
+        assertThrows(IOException.class, () -> HttpJdbcDriver.parseJdbcUrl("jdbc:http://h1:9999,,h2/"));
+    }
+
+    @Test
+    void testRoundRobinSpreadsOneConnectionsQueries() throws Exception {
+        try (Replica a = new Replica(); Replica b = new Replica(); Replica c = new Replica();
+             Connection conn = connect(List.of(a, b, c), "roundRobin");
+             Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < 30; i++) query(stmt);
+            assertEquals(10, a.queries.get());
+            assertEquals(10, b.queries.get());
+            assertEquals(10, c.queries.get());
+        }
+    }
+
+    @Test
+    void testFailingNodeIsEjectedAndProbedBackIn() throws Exception {
+        try (Replica a = new Replica(); Replica b = new Replica();
+             Connection conn = connect(List.of(a, b), "roundRobin");
+             Statement stmt = conn.createStatement()) {
+            EndpointGroup group = conn.unwrap(HttpJdbcConnection.class).getEndpointGroup();
+            b.down = true;
+            int failed = 0;
+            for (int i = 0; i < 20; i++) {
+                try {
+                    query(stmt);
+                } catch (SQLException e) {
+                    failed++;
+                }
+            }
+            // Two failures in a row eject the node; everything after goes to the healthy one
+            assertEquals(2, failed);
+            assertFalse(group.get(1).isAvailable());
+            assertEquals(18, a.queries.get());
+
+            b.down = false;
+            for (int i = 0; i < 200 && !group.get(1).isAvailable(); i++) Thread.sleep(10);
+            assertTrue(group.get(1).isAvailable());
+            for (int i = 0; i < 10; i++) query(stmt);
+            assertTrue(b.queries.get() >= 4, "reinstated node takes queries again: " + b.queries.get());
+        }
+    }
+
+    @Test
+    void testLeastOutstandingAvoidsABusyNode() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger streamed = new AtomicInteger();
+        List<StubHttpServer> servers = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                servers.add(new StubHttpServer(exchange -> {
+                    String body = StubHttpServer.readBody(exchange);
+                    exchange.sendResponseHeaders(200, 0);
+                    try (OutputStream os = exchange.getResponseBody()) {
+                        os.write(RESULT.getBytes(StandardCharsets.UTF_8));
+                        if (body.contains("stream")) {
+                            streamed.incrementAndGet();
+                            os.flush();
+                            released.await(10, TimeUnit.SECONDS);
+                        }
+                    } catch (IOException | InterruptedException expected) {
+                        // client closed the result early
+                    }
+                }));
+            }
+            Properties props = new Properties();
+            props.setProperty("loadBalance", "leastOutstanding");
+            String url = servers.get(0).jdbcUrl().replaceAll("/$", "") + "," + servers.get(1).jdbcUrl().substring("jdbc:http://".length());
+            try (Connection conn = DriverManager.getConnection(url, props);
+                 Statement busy = conn.createStatement();
+                 Statement stmt = conn.createStatement()) {
+                EndpointGroup group = conn.unwrap(HttpJdbcConnection.class).getEndpointGroup();
+                ResultSet open = busy.executeQuery("SELECT stream FROM t");
+                assertTrue(open.next());
+                int busyNode = group.get(0).outstanding() == 1 ? 0 : 1;
+                long before = group.get(busyNode).stats().getRequests();
+                for (int i = 0; i < 10; i++) query(stmt);
+                assertEquals(before, group.get(busyNode).stats().getRequests());
+                open.close();
+            }
+        } finally {
+            released.countDown();
+            servers.forEach(StubHttpServer::close);
+        }
+    }
+
+    @Test
+    void testLatencyStrategyPrefersTheFastNode() throws Exception {
+        try (Replica slow = new Replica(); Replica fast = new Replica();
+             Connection conn = connect(List.of(slow, fast), "latency");
+             Statement stmt = conn.createStatement()) {
+            slow.delayMs = 50;
+            for (int i = 0; i < 20; i++) query(stmt);
+            // Each node is measured once, then the fast one wins every comparison
+            assertTrue(slow.queries.get() <= 2, "slow node queries: " + slow.queries.get());
+            assertEquals(20, slow.queries.get() + fast.queries.get());
+        }
+    }
+}
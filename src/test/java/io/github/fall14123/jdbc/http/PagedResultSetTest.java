@@ -0,0 +1,149 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fetch-size paging: pages follow continuation tokens as rows are consumed, wherever the token sits.
+ */
+public class PagedResultSetTest {
+    private static final int ROWS = 10;
+    private static final String META = "\"meta\":[{\"name\":\"n\",\"type\":\"INTEGER\"}]";
+
+    enum Layout { TOKEN_FIRST, TOKEN_LAST, ROWS_FIRST }
+
+    // Serves ids 0..ROWS-1 in pages of the requested fetch size; the cursor is the offset of the page
+    static class PagingServer implements AutoCloseable {
+        final ObjectMapper mapper = new ObjectMapper();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        volatile Layout layout = Layout.TOKEN_FIRST;
+        volatile boolean failPages;
+        final StubHttpServer server;
+
+        PagingServer() throws Exception {
+            server = new StubHttpServer(exchange -> {
+                JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+                int offset = request.has("cursor") ? Integer.parseInt(request.get("cursor").asText()) : 0;
+                int fetchSize = request.get("fetchSize").asInt();
+                requests.add(request.has("cursor") ? "page " + offset + "/" + fetchSize : "query " + fetchSize);
+                if (failPages && request.has("cursor")) {
+                    StubHttpServer.respond(exchange, 500, "{\"error\":\"Cursor expired\"}");
+                    return;
+                }
+                int end = fetchSize > 0 ? Math.min(ROWS, offset + fetchSize) : ROWS;
+                StringBuilder data = new StringBuilder("\"data\":[");
+                for (int i = offset; i < end; i++) data.append(i > offset ? "," : "").append('[').append(i).append(']');
+                data.append(']');
+                String next = "\"next\":" + (end < ROWS ? "\"" + end + "\"" : "null");
+                String body = switch (layout) {
+                    case TOKEN_FIRST -> "{" + next + "," + META + "," + data + "}";
+                    case TOKEN_LAST -> "{" + META + "," + data + "," + next + "}";
+                    case ROWS_FIRST -> "{" + data + "," + next + "," + META + "}";
+                };
+                StubHttpServer.respond(exchange, 200, body);
+            });
+        }
+
+        Connection connect() throws SQLException {
+            Properties props = new Properties();
+            props.setProperty("schema", "pagingstub");
+            return DriverManager.getConnection(server.jdbcUrl(), props);
+        }
+
+        @Override
+        public void close() {
+            server.close();
+        }
+    }
+
+    private static int count(ResultSet rs) throws SQLException {
+        int expected = 0;
+        while (rs.next()) assertEquals(expected++, rs.getInt(1));
+        return expected;
+    }
+
+    @Test
+    void testPagesFollowTokenInAnyPosition() throws Exception {
+        try (PagingServer server = new PagingServer();
+             Connection conn = server.connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(4);
+            assertEquals(4, stmt.getFetchSize());
+            for (Layout layout : Layout.values()) {
+                server.layout = layout;
+                server.requests.clear();
+                try (ResultSet rs = stmt.executeQuery("SELECT n FROM t")) {
+                    assertEquals(4, rs.getFetchSize());
+                    assertEquals(ROWS, count(rs), layout.name());
+                }
+                assertEquals(List.of("query 4", "page 4/4", "page 8/4"), server.requests, layout.name());
+            }
+        }
+    }
+
+    @Test
+    void testWithoutFetchSizeEverythingComesAtOnce() throws Exception {
+        try (PagingServer server = new PagingServer();
+             Connection conn = server.connect();
+             PreparedStatement ps = conn.prepareStatement("SELECT n FROM t WHERE n >= ?")) {
+            ps.setInt(1, 0);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertEquals(ROWS, count(rs));
+            }
+            assertEquals(List.of("query 0"), server.requests);
+            assertThrows(SQLException.class, () -> ps.setFetchSize(-1));
+        }
+    }
+
+    @Test
+    void testResultSetFetchSizeAppliesToLaterPages() throws Exception {
+        try (PagingServer server = new PagingServer();
+             Connection conn = server.connect();
+             Statement stmt = conn.createStatement()) {
+            server.layout = Layout.TOKEN_LAST;
+            stmt.setFetchSize(2);
+            try (ResultSet rs = stmt.executeQuery("SELECT n FROM t")) {
+                rs.setFetchSize(5);
+                assertEquals(ROWS, count(rs));
+            }
+            assertEquals(List.of("query 2", "page 2/5", "page 7/5"), server.requests);
+        }
+    }
+
+    @Test
+    void testClosingEarlyStopsPaging() throws Exception {
+        try (PagingServer server = new PagingServer();
+             Connection conn = server.connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(2);
+            try (ResultSet rs = stmt.executeQuery("SELECT n FROM t")) {
+                assertTrue(rs.next());
+            }
+            Thread.sleep(100);
+            // The first page and at most the one prefetched behind it
+            assertTrue(server.requests.size() <= 2, server.requests.toString());
+        }
+    }
+
+    @Test
+    void testPageErrorSurfacesFromNext() throws Exception {
+        try (PagingServer server = new PagingServer();
+             Connection conn = server.connect();
+             Statement stmt = conn.createStatement()) {
+            server.failPages = true;
+            stmt.setFetchSize(3);
+            try (ResultSet rs = stmt.executeQuery("SELECT n FROM t")) {
+                for (int i = 0; i < 3; i++) assertTrue(rs.next());
+                SQLException e = assertThrows(SQLException.class, rs::next);
+                assertEquals("Cursor expired", e.getMessage());
+            }
+        }
+    }
+}
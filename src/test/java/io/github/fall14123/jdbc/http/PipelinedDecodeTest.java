@@ -0,0 +1,118 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read-ahead and background decoding of streamed rows (pipelinedDecode=true).
+ */
+public class PipelinedDecodeTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}]}}\n";
+
+    private Connection getConnection(StubHttpServer server) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "flock");
+        props.setProperty("pipelinedDecode", "true");
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    private static StubHttpServer rowServer(int rows) throws IOException {
+        return new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(META.getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < rows; i++) os.write(("{\"id\":" + i + ",\"name\":\"row-" + i + "\"}\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException expected) {
+                // client aborted the stream
+            }
+        });
+    }
+
+    @Test
+    void testRowsArriveInOrder() throws Exception {
+        try (StubHttpServer server = rowServer(200_000);
+             Connection conn = getConnection(server);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            int expected = 0;
+            while (rs.next()) {
+                assertEquals(expected, rs.getInt(1));
+                assertEquals("row-" + expected, rs.getString(2));
+                expected++;
+            }
+            assertEquals(200_000, expected);
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    void testEarlyCloseAbortsBothStages() throws Exception {
+        try (StubHttpServer server = rowServer(1_000_000);
+             Connection conn = getConnection(server);
+             Statement stmt = conn.createStatement()) {
+            HttpJdbcConnection httpConn = conn.unwrap(HttpJdbcConnection.class);
+            ResultSet rs = stmt.executeQuery("SELECT id, name FROM big");
+            assertTrue(rs.next());
+            assertEquals(1, httpConn.getTransportStats().getInFlight());
+            rs.close();
+            assertEquals(0, httpConn.getTransportStats().getInFlight());
+        }
+    }
+
+    @Test
+    void testTruncatedStreamFailsNext() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"na");
+        })) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                try (Connection conn = getConnection(server);
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                    assertTrue(rs.next());
+                    assertThrows(SQLException.class, rs::next);
+                }
+            });
+        }
+    }
+
+    @Test
+    void testScrollableResultIsCopiedOut() throws Exception {
+        try (StubHttpServer server = rowServer(5000);
+             Connection conn = getConnection(server);
+             Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+            assertTrue(rs.last());
+            assertEquals(4999, rs.getInt(1));
+            assertTrue(rs.absolute(1234));
+            assertEquals("row-1233", rs.getString(2));
+        }
+    }
+
+    @Test
+    void testSpscQueueHandsOverInOrder() throws Exception {
+        SpscQueue<Integer> queue = new SpscQueue<>(4);
+        Thread producer = Thread.ofVirtual().start(() -> {
+            for (int i = 0; i < 100_000; i++) assertTrue(queue.put(i));
+        });
+        for (int i = 0; i < 100_000; i++) assertEquals(i, queue.take());
+        producer.join();
+        assertNull(queue.poll());
+
+        // close() releases a consumer blocked on an empty queue
+        Thread consumer = Thread.ofVirtual().start(() -> assertNull(queue.take()));
+        Thread.sleep(20);
+        queue.close();
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+        assertFalse(queue.put(1));
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.net.URL;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * readEndpoints and writeEndpoints: queries go to the replicas, writes to the primary, and a connection's
+ * reads follow its writes to the primary for the read-your-writes window.
+ */
+public class ReadWriteSplitTest {
+    private static Connection connect(String url, String property, String hosts, long window) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty(property, hosts);
+        props.setProperty("readYourWritesWindow", Long.toString(window));
+        return DriverManager.getConnection(url, props);
+    }
+
+    private static void query(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+        }
+    }
+
+    @Test
+    void testEndpointsTakeTheUrlsSchemeAndPath() throws Exception {
+        List<URL> urls = HttpJdbcDriver.endpointUrls("r1:9999,r2:9999", new URL("https://primary:9999/query?format=json"));
+        assertEquals(List.of("https://r1:9999/query?format=json", "https://r2:9999/query?format=json"),
+            urls.stream().map(URL::toString).toList());
+    }
+
+    @Test
+    void testQueriesGoToReplicasAndWritesToThePrimary() throws Exception {
+        try (LoadBalancingTest.Replica primary = new LoadBalancingTest.Replica();
+             LoadBalancingTest.Replica r1 = new LoadBalancingTest.Replica();
+             LoadBalancingTest.Replica r2 = new LoadBalancingTest.Replica();
+             Connection conn = connect(primary.server.jdbcUrl(), "readEndpoints", r1.host() + "," + r2.host(), 0);
+             Statement stmt = conn.createStatement()) {
+            for (int i = 0; i < 10; i++) query(stmt, "SELECT id FROM t");
+            try (PreparedStatement ps = conn.prepareStatement("WITH x AS (SELECT id FROM t WHERE id = ?) SELECT * FROM x")) {
+                ps.setInt(1, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                }
+            }
+            assertEquals(0, primary.queries.get());
+            assertEquals(11, r1.queries.get() + r2.queries.get());
+            assertTrue(r1.queries.get() >= 5 && r2.queries.get() >= 5, "replicas share the reads");
+
+            stmt.execute("INSERT INTO t VALUES (1)");
+            stmt.execute("CREATE TABLE u (id INTEGER)");
+            // Not a plain query: the primary answers, unless the connection is read-only
+            query(stmt, "SHOW TABLES");
+            assertEquals(3, primary.queries.get());
+            conn.setReadOnly(true);
+            query(stmt, "SHOW TABLES");
+            assertEquals(3, primary.queries.get());
+            assertEquals(12, r1.queries.get() + r2.queries.get());
+        }
+    }
+
+    @Test
+    void testReadsFollowAWriteDuringTheWindow() throws Exception {
+        try (LoadBalancingTest.Replica primary = new LoadBalancingTest.Replica();
+             LoadBalancingTest.Replica replica = new LoadBalancingTest.Replica();
+             Connection conn = connect(replica.server.jdbcUrl(), "writeEndpoints", primary.host(), 300);
+             Statement stmt = conn.createStatement()) {
+            HttpJdbcConnection http = conn.unwrap(HttpJdbcConnection.class);
+            assertNotSame(http.getEndpointGroup(), http.getReadEndpointGroup());
+            query(stmt, "SELECT id FROM t");
+            assertEquals(1, replica.queries.get());
+
+            stmt.execute("UPDATE t SET id = 2");
+            query(stmt, "SELECT id FROM t");
+            assertEquals(2, primary.queries.get());
+            assertEquals(1, replica.queries.get());
+
+            Thread.sleep(350);
+            query(stmt, "SELECT id FROM t");
+            assertEquals(2, primary.queries.get());
+            assertEquals(2, replica.queries.get());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Request bodies built from compiled templates and pre-split SQL.
+ */
+public class RequestBodyTest {
+
+    private HttpJdbcConnection connect(String schema) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", schema);
+        // No request is sent, bodies are only built
+        return DriverManager.getConnection("jdbc:http://localhost:1/", props).unwrap(HttpJdbcConnection.class);
+    }
+
+    private String body(HttpJdbcConnection conn, String sql, List<QueryRequest.Parameter> parameters) throws Exception {
+        return new String(conn.buildRequestBody(ParsedSql.parse(sql), parameters, new RequestBuffer()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testJsonTemplateEscapesSqlAndParameters() throws Exception {
+        HttpJdbcConnection conn = connect("flock");
+        String sql = "SELECT \"name\"\nFROM t WHERE a = ? AND b = ? AND c = ? -- é€😀";
+        String body = body(conn, sql, List.of(
+            new QueryRequest.Parameter("x\"\\\t\u0001", "string"),
+            new QueryRequest.Parameter(42L, "long"),
+            new QueryRequest.Parameter(null, "null")));
+
+        JsonNode json = new ObjectMapper().readTree(body);
+        assertEquals(sql, json.get("sql").asText());
+        assertEquals("x\"\\\t\u0001", json.get("parameters").get(0).get("value").asText());
+        assertEquals(42L, json.get("parameters").get(1).get("value").asLong());
+        assertEquals("long", json.get("parameters").get(1).get("type").asText());
+        assertTrue(json.get("parameters").get(2).get("value").isNull());
+        assertEquals(body, new String(conn.buildRequestBody(ParsedSql.parse(sql), List.of(
+            new QueryRequest.Parameter("x\"\\\t\u0001", "string"),
+            new QueryRequest.Parameter(42L, "long"),
+            new QueryRequest.Parameter(null, "null")), new RequestBuffer(1)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testInlinedParameters() throws Exception {
+        HttpJdbcConnection conn = connect("httpserver");
+        // Regex replacement syntax in values is taken literally
+        assertEquals("SELECT * FROM t WHERE a = 'it''s $1 \\' AND b = 7 AND c = NULL AND d = TRUE AND e = ?",
+            body(conn, "SELECT * FROM t WHERE a = ? AND b = ? AND c = ? AND d = ? AND e = ?", List.of(
+                new QueryRequest.Parameter("it's $1 \\", "string"),
+                new QueryRequest.Parameter(7, "int"),
+                new QueryRequest.Parameter(null, "null"),
+                new QueryRequest.Parameter(true, "boolean"))));
+    }
+
+    @Test
+    void testManyParameters() throws Exception {
+        HttpJdbcConnection conn = connect("httpserver");
+        StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE id IN (");
+        StringBuilder expected = new StringBuilder(sql);
+        List<QueryRequest.Parameter> parameters = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+            expected.append(i > 0 ? ", " : "").append(i);
+            parameters.add(new QueryRequest.Parameter(i, "int"));
+        }
+        assertEquals(1000, ParsedSql.parse(sql.toString()).parameterCount());
+        assertEquals(expected + ")", body(conn, sql + ")", parameters));
+    }
+
+    @Test
+    void testPlaceholderLexer() throws Exception {
+        assertEquals(0, ParsedSql.parse("SELECT '?', 'it''s ?', E'\\' ?', \"col?\" FROM t").parameterCount());
+        assertEquals(0, ParsedSql.parse("SELECT 1 -- why?\n/* a /* nested? */ b? */").parameterCount());
+        assertEquals(0, ParsedSql.parse("SELECT $$ ? $$, $fn$ it's ? $fn$, data ?| array['a'], data ?& array['b']").parameterCount());
+        assertEquals(2, ParsedSql.parse("SELECT $1 || ?, a$b FROM t WHERE x = ?").parameterCount());
+        assertEquals(1, ParsedSql.parse("SELECT ?||'x'").parameterCount());
+        assertEquals(0, ParsedSql.parse("SELECT 'unterminated ?").parameterCount());
+
+        HttpJdbcConnection conn = connect("httpserver");
+        assertEquals("SELECT data ? 'k', 1 WHERE '?' <> 'x' -- ?",
+            body(conn, "SELECT data ?? 'k', ? WHERE '?' <> ? -- ?", List.of(
+                new QueryRequest.Parameter(1, "int"),
+                new QueryRequest.Parameter("x", "string"))));
+        // Statements without parameters are sent as written
+        assertEquals("SELECT data ?? 'k'", new String(conn.buildRequestBody(ParsedSql.plain("SELECT data ?? 'k'"), List.of(), new RequestBuffer()), StandardCharsets.UTF_8));
+
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM t WHERE a = ? AND b = '?' -- ?")) {
+            ps.setInt(1, 1);
+            assertThrows(SQLException.class, () -> ps.setInt(2, 2));
+        }
+    }
+
+    @Test
+    void testBindingServersGetEscapesAsWritten() throws Exception {
+        String sql = "SELECT data ?? 'k' FROM t WHERE a = ?";
+        // The server binds the one parameter; ?? is its business
+        assertEquals("{\"sql\": \"" + sql + "\", \"parameters\": [{\"value\": 1, \"type\": \"int\"}]}",
+            body(connect("flock"), sql, List.of(new QueryRequest.Parameter(1, "int"))));
+
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            String body = StubHttpServer.readBody(exchange);
+            requests.add(body);
+            StubHttpServer.respond(exchange, 200, body.contains("prepare") ? "{\"statementId\":\"s1\"}"
+                : "{\"_meta\":{\"columns\":[{\"name\":\"v\",\"type\":\"INTEGER\"}]}}\n{\"v\":1}\n");
+        })) {
+            Properties props = new Properties();
+            props.setProperty("schema", "preparestub");
+            try (Connection conn = DriverManager.getConnection(server.jdbcUrl(), props);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, 1);
+                ps.executeQuery().close();
+            }
+        }
+        assertEquals("{\"prepare\": \"" + sql + "\"}", requests.get(0));
+    }
+
+    @Test
+    void testTemplateCompilation() throws Exception {
+        RequestTemplate template = RequestTemplate.compile("{\"q\": \"${sql}\", \"raw\": ${sql}, \"s\": \"\\\"${sql}\", \"x\": \"${other}\"}", true, "sql");
+        RequestBuffer out = new RequestBuffer();
+        template.write(out, (index, quoted, buf) -> buf.writeUtf8(quoted ? "Q" : "R"));
+        assertEquals("{\"q\": \"Q\", \"raw\": R, \"s\": \"\\\"Q\", \"x\": \"${other}\"}",
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(RequestTemplate.compile("", true, "statements").isEmpty());
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Client-side result cache: hits, invalidation by writes, TTL, bounds and statement classification.
+ */
+public class ResultCacheTest {
+    private static final String RESULT = "{\"meta\":[{\"name\":\"id\",\"type\":\"INTEGER\"}],\"data\":[[1],[2]]}";
+
+    private Connection getConnection(StubHttpServer server, long ttlMs) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "httpserver");
+        props.setProperty("resultCacheSize", "100");
+        props.setProperty("resultCacheTtl", String.valueOf(ttlMs));
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    private StubHttpServer countingServer(AtomicInteger reads, AtomicInteger writes) throws Exception {
+        return new StubHttpServer(exchange -> {
+            String sql = StubHttpServer.readBody(exchange);
+            if (sql.startsWith("SELECT")) {
+                reads.incrementAndGet();
+                StubHttpServer.respond(exchange, 200, RESULT);
+            } else {
+                writes.incrementAndGet();
+                StubHttpServer.respond(exchange, 200, "{\"rows\":1}");
+            }
+        });
+    }
+
+    private int sum(ResultSet rs) throws SQLException {
+        int sum = 0;
+        while (rs.next()) sum += rs.getInt(1);
+        rs.close();
+        return sum;
+    }
+
+    @Test
+    void testRepeatedQueryIsServedFromCache() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        try (StubHttpServer server = countingServer(reads, new AtomicInteger());
+             Connection conn = getConnection(server, 60000);
+             PreparedStatement ps = conn.prepareStatement("SELECT id FROM t WHERE x = ?")) {
+            ResultCache cache = conn.unwrap(HttpJdbcConnection.class).getResultCache();
+            long hits = cache.getHits();
+
+            Statement stmt = conn.createStatement();
+            assertEquals(3, sum(stmt.executeQuery("SELECT id FROM t")));
+            assertEquals(3, sum(stmt.executeQuery("  SELECT id\n  FROM t; -- again")));
+            assertEquals(1, reads.get());
+
+            // Parameters are part of the key
+            ps.setInt(1, 1);
+            sum(ps.executeQuery());
+            ps.setInt(1, 2);
+            sum(ps.executeQuery());
+            ps.setInt(1, 1);
+            sum(ps.executeQuery());
+            assertEquals(3, reads.get());
+            assertEquals(2, cache.getHits() - hits);
+
+            // Results that change between executions are never cached
+            sum(stmt.executeQuery("SELECT id FROM t WHERE random() < 2"));
+            sum(stmt.executeQuery("SELECT id FROM t WHERE random() < 2"));
+            assertEquals(5, reads.get());
+        }
+    }
+
+    @Test
+    void testWriteThroughAnotherConnectionInvalidates() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger writes = new AtomicInteger();
+        try (StubHttpServer server = countingServer(reads, writes);
+             Connection reader = getConnection(server, 60000);
+             Connection writer = getConnection(server, 60000)) {
+            sum(reader.createStatement().executeQuery("SELECT id FROM t"));
+            sum(reader.createStatement().executeQuery("SELECT id FROM t"));
+            assertEquals(1, reads.get());
+
+            assertEquals(1, writer.createStatement().executeUpdate("DELETE FROM t"));
+            sum(reader.createStatement().executeQuery("SELECT id FROM t"));
+            assertEquals(2, reads.get());
+            assertEquals(1, writes.get());
+        }
+    }
+
+    @Test
+    void testExpiredEntriesAreFetchedAgain() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        try (StubHttpServer server = countingServer(reads, new AtomicInteger());
+             Connection conn = getConnection(server, 50)) {
+            sum(conn.createStatement().executeQuery("SELECT id FROM t"));
+            Thread.sleep(100);
+            sum(conn.createStatement().executeQuery("SELECT id FROM t"));
+            assertEquals(2, reads.get());
+        }
+    }
+
+    @Test
+    void testEntryAndByteBounds() throws Exception {
+        ResultCache cache = new ResultCache();
+        cache.configure(2, 1 << 20);
+        for (int i = 0; i < 3; i++) cache.put(key("SELECT " + i), result(10), 60000, cache.generation());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(key("SELECT 0")));
+        assertNotNull(cache.get(key("SELECT 2")));
+        assertEquals(1, cache.getEvictions());
+
+        // Too large for the byte bound, so not cached at all
+        cache.put(key("SELECT big"), result(100_000), 60000, cache.generation());
+        assertNull(cache.get(key("SELECT big")));
+        assertTrue(cache.getBytes() <= 1 << 20);
+
+        // A write between execution and put keeps the stale result out
+        long generation = cache.generation();
+        cache.invalidateAll();
+        cache.put(key("SELECT 1"), result(10), 60000, generation);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testStreamedResultIsCachedOnceFullyRead() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        StringBuilder rows = new StringBuilder("{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n");
+        for (int i = 1; i <= 100; i++) rows.append("{\"id\":").append(i).append("}\n");
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            reads.incrementAndGet();
+            StubHttpServer.respond(exchange, 200, rows.toString());
+        })) {
+            Properties props = new Properties();
+            props.setProperty("schema", "flock");
+            props.setProperty("resultCacheSize", "100");
+            try (Connection conn = DriverManager.getConnection(server.jdbcUrl(), props);
+                 Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(10);
+                // Left after the first rows: nothing is cached
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM streamed")) {
+                    assertTrue(rs.next());
+                }
+                assertEquals(5050, sum(stmt.executeQuery("SELECT id FROM streamed")));
+                assertEquals(5050, sum(stmt.executeQuery("SELECT id FROM streamed")));
+                assertEquals(2, reads.get());
+            }
+        }
+    }
+
+    @Test
+    void testOversizedStreamStopsBeingCopied() throws Exception {
+        QueryResult rows = result(1000);
+        RowSource stream = new RowSource() {
+            int next;
+
+            @Override
+            public int fill(RowBatch batch, int maxRows) {
+                int filled = 0;
+                for (; filled < maxRows && next < rows.getRowBatch().size(); filled++) batch.appendRow(rows.getRowBatch(), next++);
+                return filled;
+            }
+
+            @Override public void close() {}
+        };
+        List<RowBatch> stored = new ArrayList<>();
+        CachingRowSource source = new CachingRowSource(stream, rows.newRowBatch(), 1024, stored::add);
+        RowBatch batch = rows.newRowBatch();
+        int read = 0;
+        for (int filled; (filled = source.fill(batch, 100)) > 0; batch.clear()) read += filled;
+        // Every row still reaches the reader, but the copy was given up once it passed the bound
+        assertEquals(1000, read);
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    void testClassification() {
+        assertEquals(SqlClassifier.Kind.CACHEABLE_READ, SqlClassifier.classify("select * from t where s = 'a  --b'"));
+        assertEquals(SqlClassifier.Kind.CACHEABLE_READ, SqlClassifier.classify("/* hint */ (SELECT 1)"));
+        assertEquals(SqlClassifier.Kind.READ, SqlClassifier.classify("SELECT now()"));
+        assertEquals(SqlClassifier.Kind.READ, SqlClassifier.classify("SELECT random ()"));
+        assertEquals(SqlClassifier.Kind.READ, SqlClassifier.classify("SELECT NOW\n(), x FROM t"));
+        assertEquals(SqlClassifier.Kind.READ, SqlClassifier.classify("SELECT * FROM t WHERE d < CURRENT_DATE"));
+        // Other identifiers that merely contain a function's name
+        assertEquals(SqlClassifier.Kind.CACHEABLE_READ, SqlClassifier.classify("SELECT my_random(x), snow(y), nowhere FROM t"));
+        assertEquals(SqlClassifier.Kind.WRITE, SqlClassifier.classify("WITH d AS (DELETE FROM t RETURNING *) SELECT * FROM d"));
+        assertEquals(SqlClassifier.Kind.WRITE, SqlClassifier.classify("INSERT INTO t SELECT 1"));
+        assertEquals(SqlClassifier.Kind.WRITE, SqlClassifier.classify("SET threads = 4"));
+        assertEquals("SELECT 'a  b' FROM t", SqlClassifier.normalize("SELECT  'a  b'\n\tFROM t ;"));
+    }
+
+    private static ResultCache.Key key(String sql) {
+        return new ResultCache.Key("http://localhost", "", sql, List.of());
+    }
+
+    private static QueryResult result(int rows) {
+        List<List<Object>> data = new ArrayList<>();
+        for (int i = 0; i < rows; i++) data.add(List.of(i));
+        int[] sqlTypes = {Types.INTEGER};
+        return new QueryResult(List.of("id"), List.of("INTEGER"), sqlTypes, RowBatch.of(List.of("id"), sqlTypes, data));
+    }
+}
@@ -0,0 +1,242 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.SocketTimeoutException;
+import java.sql.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Failed statements run again only when that is safe, with backoff; an open circuit breaker fails fast.
+ */
+public class RetryTest {
+    private static final String RESULT = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n{\"id\":1}\n";
+
+    // Fails the first `failures` requests: with a 503 and Retry-After, or by dropping the connection unanswered
+    private static StubHttpServer failing(AtomicInteger requests, int failures, boolean drop) throws IOException {
+        return new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            if (requests.incrementAndGet() > failures) {
+                StubHttpServer.respond(exchange, 200, RESULT);
+            } else if (drop) {
+                exchange.close();
+            } else {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                StubHttpServer.respond(exchange, 503, "{\"error\":\"overloaded\"}");
+            }
+        });
+    }
+
+    private static Connection connect(String url, int retries) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("retries", Integer.toString(retries));
+        props.setProperty("retryBackoff", "5");
+        return DriverManager.getConnection(url, props);
+    }
+
+    private static int deadPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void testClassification() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+        SQLException refused = new SQLException("Failed", new ConnectException("Connection refused"));
+        SQLException reset = new SQLException("Failed", new IOException("Connection reset"));
+        SQLException timedOut = new SQLException("Failed", new SocketTimeoutException("Read timed out"));
+        assertEquals(RetryPolicy.Failure.NOT_SENT, RetryPolicy.classify(refused));
+        assertEquals(RetryPolicy.Failure.UNKNOWN, RetryPolicy.classify(reset));
+        assertEquals(RetryPolicy.Failure.FINAL, RetryPolicy.classify(timedOut));
+        assertEquals(RetryPolicy.Failure.FINAL, RetryPolicy.classify(new SQLException("Syntax error")));
+        assertEquals(RetryPolicy.Failure.NOT_SENT, RetryPolicy.classify(new SQLException("Failed", new CircuitOpenException("open"))));
+        assertEquals(RetryPolicy.Failure.FINAL, RetryPolicy.classify(new SQLException("Failed", new PoolTimeoutException("pool"))));
+        assertEquals(RetryPolicy.Failure.REJECTED, RetryPolicy.classify(new ServerUnavailableException("busy", 429, -1)));
+        assertEquals(RetryPolicy.Failure.UNKNOWN, RetryPolicy.classify(new ServerUnavailableException("bad gateway", 502, -1)));
+
+        // Writes are retried only when they cannot have run
+        assertTrue(policy.backoffMs(refused, 0, true) >= 0);
+        assertEquals(-1, policy.backoffMs(reset, 0, true));
+        assertTrue(policy.backoffMs(reset, 0, false) >= 0);
+        assertEquals(-1, policy.backoffMs(reset, 3, false));
+        for (int retry = 0; retry < 3; retry++) {
+            long ceiling = Math.min(1000, 100L << retry);
+            long backoff = policy.backoffMs(refused, retry, false);
+            assertTrue(backoff >= ceiling / 2 && backoff <= ceiling, "backoff " + backoff + " for retry " + retry);
+        }
+        assertEquals(700, policy.backoffMs(new ServerUnavailableException("busy", 503, 700), 0, true));
+        assertEquals(-1, policy.backoffMs(new ServerUnavailableException("busy", 503, 5000), 0, true));
+    }
+
+    @Test
+    void testRetryAfterHeader() {
+        assertEquals(2000, RetryPolicy.retryAfterMs("2"));
+        assertEquals(-1, RetryPolicy.retryAfterMs(null));
+        assertEquals(-1, RetryPolicy.retryAfterMs("soon"));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(30));
+        long ms = RetryPolicy.retryAfterMs(date);
+        assertTrue(ms > 25000 && ms <= 30000, "Retry-After date: " + ms);
+    }
+
+    @Test
+    void testUnavailableServerIsRetried() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = failing(requests, 2, false);
+             Connection conn = connect(server.jdbcUrl(), 2);
+             Statement stmt = conn.createStatement()) {
+            // A 503 turned the write away unprocessed, so it may run again
+            assertTrue(stmt.execute("INSERT INTO t VALUES (1)"));
+            assertEquals(3, requests.get());
+        }
+        requests.set(0);
+        try (StubHttpServer server = failing(requests, 2, false);
+             Connection conn = connect(server.jdbcUrl(), 0);
+             Statement stmt = conn.createStatement()) {
+            SQLException e = assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT id FROM t"));
+            assertInstanceOf(ServerUnavailableException.class, e);
+            assertEquals("overloaded", e.getMessage());
+            assertEquals(1, requests.get());
+        }
+    }
+
+    @Test
+    void testDroppedConnectionRetriesReadsButNotWrites() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = failing(requests, 1, true);
+             Connection conn = connect(server.jdbcUrl(), 2);
+             Statement stmt = conn.createStatement()) {
+            assertThrows(SQLException.class, () -> stmt.executeUpdate("INSERT INTO t VALUES (1)"));
+            assertEquals(1, requests.get());
+            requests.set(0);
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+            }
+            assertEquals(2, requests.get());
+        }
+    }
+
+    @Test
+    void testRefusedConnectionMovesToAnotherNode() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = failing(requests, 0, false)) {
+            String live = server.jdbcUrl().substring("jdbc:http://".length());
+            try (Connection conn = connect("jdbc:http://127.0.0.1:" + deadPort() + "," + live, 1);
+                 Statement stmt = conn.createStatement()) {
+                // Whichever node each write picks first, it lands on the live one
+                for (int i = 0; i < 4; i++) stmt.execute("INSERT INTO t VALUES (1)");
+                assertEquals(4, requests.get());
+            }
+        }
+    }
+
+    @Test
+    void testCircuitBreakerFailsFastAndRecovers() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (StubHttpServer server = failing(requests, 3, false)) {
+            Properties props = new Properties();
+            props.setProperty("circuitBreakerThreshold", "3");
+            props.setProperty("circuitBreakerDelay", "200");
+            try (Connection conn = DriverManager.getConnection(server.jdbcUrl(), props);
+                 Statement stmt = conn.createStatement()) {
+                for (int i = 0; i < 3; i++) assertThrows(ServerUnavailableException.class, () -> stmt.executeQuery("SELECT id FROM t"));
+                CircuitBreaker breaker = conn.unwrap(HttpJdbcConnection.class).getEndpointGroup().get(0).breaker();
+                assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+                SQLException e = assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT id FROM t"));
+                assertInstanceOf(CircuitOpenException.class, e.getCause());
+                assertEquals(3, requests.get());
+
+                Thread.sleep(250);
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                    assertTrue(rs.next());
+                }
+                assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+            }
+        }
+    }
+
+    @Test
+    void testOpenBreakerTakesNodeOutOfRotation() throws Exception {
+        try (LoadBalancingTest.Replica down = new LoadBalancingTest.Replica(); LoadBalancingTest.Replica up = new LoadBalancingTest.Replica()) {
+            down.down = true;
+            Properties props = new Properties();
+            props.setProperty("circuitBreakerThreshold", "2");
+            props.setProperty("circuitBreakerDelay", "60000");
+            props.setProperty("ejectAfterFailures", "0");
+            try (Connection conn = DriverManager.getConnection("jdbc:http://" + down.host() + "," + up.host() + "/", props);
+                 Statement stmt = conn.createStatement()) {
+                EndpointGroup group = conn.unwrap(HttpJdbcConnection.class).getEndpointGroup();
+                while (group.get(0).breaker().state() != CircuitBreaker.State.OPEN) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                        assertTrue(rs.next());
+                    } catch (ServerUnavailableException expected) {
+                    }
+                }
+                assertFalse(group.get(0).isAvailable());
+                // Not ejected, only its breaker is open: the balancer passes it over all the same
+                for (int i = 0; i < 10; i++) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                        assertTrue(rs.next());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTrialThatThrowsReleasesTheBreaker() throws Exception {
+        ConnectionConfig config = ConnectionConfig.fromProperties(new Properties());
+        HttpTransport broken = new HttpTransport(config) {
+            @Override
+            protected TransportResponse exchange(TransportRequest request, Consumer<Runnable> onAbort) {
+                throw new IllegalStateException("bug");
+            }
+        };
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        Endpoint endpoint = new Endpoint(0, URI.create("http://127.0.0.1:1/"), broken, breaker);
+        breaker.failed();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        TransportRequest request = new TransportRequest(endpoint.uri(), Map.of(), new byte[0], 1000);
+        assertThrows(IllegalStateException.class, () -> endpoint.send(request, null));
+        // The trial came to nothing: the next request is the next trial, rather than the node staying refused
+        assertTrue(breaker.allow());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    void testPoolTimeoutIsNotANodeFailure() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("poolSize", "1");
+        props.setProperty("connectTimeout", "50");
+        HttpTransport transport = new HttpTransport(ConnectionConfig.fromProperties(props)) {
+            @Override
+            protected TransportResponse exchange(TransportRequest request, Consumer<Runnable> onAbort) {
+                return new TransportResponse(200, Map.of(), new ByteArrayInputStream(new byte[0]), null);
+            }
+        };
+        CircuitBreaker breaker = new CircuitBreaker(1, 60000);
+        Endpoint endpoint = new Endpoint(0, URI.create("http://127.0.0.1:1/"), transport, breaker);
+        TransportRequest request = new TransportRequest(endpoint.uri(), Map.of(), new byte[0], 1000);
+        try (TransportResponse held = endpoint.send(request, null)) {
+            assertThrows(PoolTimeoutException.class, () -> endpoint.send(request, null));
+            CompletionException e = assertThrows(CompletionException.class, () -> endpoint.sendAsync(request).join());
+            assertInstanceOf(PoolTimeoutException.class, e.getCause());
+        }
+        // Waiting on the driver's own pool says nothing about the node
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(endpoint.isAvailable());
+    }
+}
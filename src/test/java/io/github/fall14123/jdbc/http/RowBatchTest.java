@@ -0,0 +1,83 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Columnar row storage and the result set getters on top of it.
+ */
+public class RowBatchTest {
+
+    @Test
+    void testNumericColumnsAreStoredUnboxed() {
+        RowBatch batch = RowBatch.of(List.of("i", "l", "d", "s"), TypeMapping.DEFAULT.sqlTypes(List.of("INTEGER", "BIGINT", "DOUBLE", "VARCHAR")),
+            List.of(Arrays.asList(1, 2L, 1.5, "a"), Arrays.asList(null, null, null, null)));
+        assertInstanceOf(ColumnVector.IntVector.class, batch.column(0));
+        assertInstanceOf(ColumnVector.LongVector.class, batch.column(1));
+        assertInstanceOf(ColumnVector.DoubleVector.class, batch.column(2));
+        assertInstanceOf(ColumnVector.StringVector.class, batch.column(3));
+        assertEquals(1, batch.column(0).getInt(0));
+        assertEquals(2L, batch.column(1).getLong(0));
+        assertEquals(1.5, batch.column(2).getDouble(0));
+        assertEquals("a", batch.column(3).getString(0));
+        for (int c = 0; c < 4; c++) assertTrue(batch.column(c).isNull(1));
+    }
+
+    @Test
+    void testUnexpectedValueFallsBackToObjects() {
+        RowBatch batch = RowBatch.of(List.of("n"), new int[] {Types.INTEGER},
+            List.of(List.of(1), List.of(2.5), List.of(3)));
+        assertInstanceOf(ColumnVector.ObjectVector.class, batch.column(0));
+        assertEquals(List.of(1), batch.row(0));
+        assertEquals(List.of(2.5), batch.row(1));
+        assertEquals(3, batch.column(0).getInt(2));
+    }
+
+    @Test
+    void testHighCardinalityStringsLeaveDictionary() {
+        RowBatch batch = new RowBatch(1, new int[] {Types.VARCHAR});
+        for (int i = 0; i < 2000; i++) batch.set(0, batch.beginRow(), i % 3 == 0 ? "same" : "value-" + i);
+        for (int i = 0; i < 2000; i++) assertEquals(i % 3 == 0 ? "same" : "value-" + i, batch.column(0).getString(i));
+    }
+
+    @Test
+    void testSchemaTypeOverrides() {
+        Properties props = new Properties();
+        props.setProperty("types.UUID", "varchar");
+        props.setProperty("types.HUGEINT", "BIGINT");
+        props.setProperty("types.GEOMETRY", "not-a-type");
+        TypeMapping mapping = TypeMapping.DEFAULT.withOverrides(props);
+        assertEquals(Types.VARCHAR, mapping.sqlType("uuid"));
+        assertEquals(Types.BIGINT, mapping.sqlType("HUGEINT"));
+        assertEquals(Types.OTHER, mapping.sqlType("GEOMETRY"));
+        assertEquals(Types.DECIMAL, mapping.sqlType("DECIMAL(18,3)"));
+        assertEquals(Types.ARRAY, mapping.sqlType("INTEGER[]"));
+        assertEquals(Types.OTHER, TypeMapping.DEFAULT.sqlType("UUID"));
+    }
+
+    @Test
+    void testWasNullAndScrolling() throws SQLException {
+        int[] sqlTypes = {Types.INTEGER, Types.VARCHAR};
+        QueryResult result = new QueryResult(List.of("id", "name"), List.of("INTEGER", "VARCHAR"), sqlTypes,
+            RowBatch.of(List.of("id", "name"), sqlTypes, List.of(Arrays.asList(7, null), Arrays.asList(null, "b"))));
+        try (ResultSet rs = new HttpJdbcResultSet(result)) {
+            assertTrue(rs.next());
+            assertEquals(7, rs.getInt("id"));
+            assertFalse(rs.wasNull());
+            assertNull(rs.getString("name"));
+            assertTrue(rs.wasNull());
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+            assertTrue(rs.wasNull());
+            assertTrue(rs.previous());
+            assertEquals("7", rs.getString(1));
+        }
+    }
+}
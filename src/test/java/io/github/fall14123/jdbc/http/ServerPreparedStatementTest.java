@@ -0,0 +1,129 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Server-side prepared statement handles against a stub that keeps prepared SQL by id.
+ */
+public class ServerPreparedStatementTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"v\",\"type\":\"INTEGER\"}]}}\n";
+
+    // Prepares on {"prepare": sql}, executes {"statementId": id, "parameters": [...]} by echoing the first parameter
+    static class PreparingServer implements AutoCloseable {
+        final ObjectMapper mapper = new ObjectMapper();
+        final Map<String, String> statements = new ConcurrentHashMap<>();
+        final AtomicInteger ids = new AtomicInteger();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        volatile int unknownStatus = 404;
+        volatile String failure;
+        final StubHttpServer server;
+
+        PreparingServer() throws Exception {
+            server = new StubHttpServer(exchange -> {
+                JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+                if (request.has("prepare")) {
+                    String id = "s" + ids.incrementAndGet();
+                    statements.put(id, request.get("prepare").asText());
+                    requests.add("prepare " + request.get("prepare").asText());
+                    StubHttpServer.respond(exchange, 200, "{\"statementId\":\"" + id + "\"}");
+                } else if (request.has("statementId")) {
+                    String id = request.get("statementId").asText();
+                    requests.add("execute " + id);
+                    if (failure != null) {
+                        StubHttpServer.respond(exchange, 500, "{\"error\":\"" + failure + "\"}");
+                    } else if (!statements.containsKey(id)) {
+                        StubHttpServer.respond(exchange, unknownStatus, "{\"error\":\"Unknown statement " + id + "\"}");
+                    } else {
+                        StubHttpServer.respond(exchange, 200, META + "{\"v\":" + request.get("parameters").get(0).get("value") + "}\n");
+                    }
+                } else {
+                    requests.add("query " + request.get("sql").asText());
+                    StubHttpServer.respond(exchange, 200, META + "{\"v\":0}\n");
+                }
+            });
+        }
+
+        Connection connect() throws SQLException {
+            Properties props = new Properties();
+            props.setProperty("schema", "preparestub");
+            return DriverManager.getConnection(server.jdbcUrl(), props);
+        }
+
+        @Override
+        public void close() {
+            server.close();
+        }
+    }
+
+    private int queryValue(PreparedStatement ps, int value) throws SQLException {
+        ps.setInt(1, value);
+        try (ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testPreparesOnceAndExecutesByHandle() throws Exception {
+        try (PreparingServer server = new PreparingServer();
+             Connection conn = server.connect()) {
+            String sql = "SELECT v FROM t WHERE v = ?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                assertEquals(1, queryValue(ps, 1));
+                assertEquals(2, queryValue(ps, 2));
+            }
+            // A statement prepared again from the same SQL reuses the handle
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                assertEquals(3, queryValue(ps, 3));
+            }
+            // Plain statements still send SQL text
+            conn.createStatement().executeQuery("SELECT 1").close();
+            assertEquals(List.of("prepare " + sql, "execute s1", "execute s1", "execute s1", "query SELECT 1"), server.requests);
+        }
+    }
+
+    @Test
+    void testUnknownHandleIsPreparedAgain() throws Exception {
+        try (PreparingServer server = new PreparingServer();
+             Connection conn = server.connect();
+             PreparedStatement ps = conn.prepareStatement("SELECT v FROM t WHERE v = ?")) {
+            assertEquals(1, queryValue(ps, 1));
+
+            // Server restart: every handle is gone, reported with 404
+            server.statements.clear();
+            assertEquals(2, queryValue(ps, 2));
+
+            // Or reported as an error message in a 200 response
+            server.statements.clear();
+            server.unknownStatus = 200;
+            assertEquals(3, queryValue(ps, 3));
+            assertEquals(List.of("prepare SELECT v FROM t WHERE v = ?", "execute s1",
+                "execute s1", "prepare SELECT v FROM t WHERE v = ?", "execute s2",
+                "execute s2", "prepare SELECT v FROM t WHERE v = ?", "execute s3"), server.requests);
+        }
+    }
+
+    @Test
+    void testOtherErrorsAreNotRetried() throws Exception {
+        try (PreparingServer server = new PreparingServer();
+             Connection conn = server.connect();
+             PreparedStatement ps = conn.prepareStatement("SELECT v FROM t WHERE v = ?")) {
+            assertEquals(1, queryValue(ps, 1));
+            server.failure = "Division by zero";
+            SQLException e = assertThrows(SQLException.class, () -> queryValue(ps, 2));
+            assertEquals("Division by zero", e.getMessage());
+            assertEquals(List.of("prepare SELECT v FROM t WHERE v = ?", "execute s1", "execute s1"), server.requests);
+        }
+    }
+}
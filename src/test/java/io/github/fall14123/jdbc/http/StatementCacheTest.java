@@ -0,0 +1,105 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.sql.*;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prepared statement plan cache: hits, parameter list recycling and the driver-wide scope.
+ */
+public class StatementCacheTest {
+
+    private HttpJdbcConnection connect(String url, String scope, int size) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "httpserver");
+        props.setProperty("prepStmtCacheScope", scope);
+        props.setProperty("prepStmtCacheSize", String.valueOf(size));
+        return DriverManager.getConnection(url, props).unwrap(HttpJdbcConnection.class);
+    }
+
+    @Test
+    void testRepeatedPrepareHitsCacheAndRecyclesParameters() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            requests.add(StubHttpServer.readBody(exchange));
+            StubHttpServer.respond(exchange, 200, "{\"rows\":1}");
+        });
+             HttpJdbcConnection conn = connect(server.jdbcUrl(), "connection", 2)) {
+            StatementCache cache = conn.getStatementCache();
+            String sql = "UPDATE t SET a = ? WHERE b = ?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, 1);
+                ps.setInt(2, 2);
+                ps.executeUpdate();
+                ps.close();
+                assertThrows(SQLException.class, () -> ps.setInt(1, 5));
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                // The recycled parameter list starts out cleared
+                ps.setInt(1, 3);
+                ps.executeUpdate();
+            }
+            assertEquals(List.of("UPDATE t SET a = 1 WHERE b = 2", "UPDATE t SET a = 3 WHERE b = NULL"), requests);
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            // Least recently used plans are evicted past prepStmtCacheSize
+            conn.prepareStatement("SELECT 1").close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement(sql).close();
+            assertEquals(2, cache.size());
+            assertEquals(4, cache.getMisses());
+        }
+    }
+
+    @Test
+    void testClosedStatementCannotExecute() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            requests.add(StubHttpServer.readBody(exchange));
+            StubHttpServer.respond(exchange, 200, "{\"rows\":1}");
+        });
+             HttpJdbcConnection conn = connect(server.jdbcUrl(), "connection", 2)) {
+            String sql = "UPDATE t SET a = ?";
+            PreparedStatement closed = conn.prepareStatement(sql);
+            closed.close();
+            // The closed statement's parameter list now belongs to this one
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, 7);
+                assertThrows(SQLException.class, closed::executeQuery);
+                assertThrows(SQLException.class, closed::executeUpdate);
+                assertThrows(SQLException.class, closed::execute);
+            }
+            assertTrue(requests.isEmpty());
+        }
+    }
+
+    @Test
+    void testDriverScopeSharesPlans() throws Exception {
+        String url = "jdbc:http://localhost:1/";
+        try (HttpJdbcConnection first = connect(url, "driver", 16);
+             HttpJdbcConnection second = connect(url, "driver", 16);
+             HttpJdbcConnection own = connect(url, "connection", 16)) {
+            assertSame(first.getStatementCache(), second.getStatementCache());
+            assertNotSame(first.getStatementCache(), own.getStatementCache());
+            long hits = first.getStatementCache().getHits();
+            first.prepareStatement("SELECT * FROM shared WHERE id = ?").close();
+            second.prepareStatement("SELECT * FROM shared WHERE id = ?").close();
+            assertEquals(hits + 1, first.getStatementCache().getHits());
+        }
+    }
+
+    @Test
+    void testDisabledCache() throws Exception {
+        try (HttpJdbcConnection conn = connect("jdbc:http://localhost:1/", "connection", 0)) {
+            conn.prepareStatement("SELECT ?").close();
+            conn.prepareStatement("SELECT ?").close();
+            assertEquals(0, conn.getStatementCache().size());
+            assertEquals(0, conn.getStatementCache().getHits());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statement.cancel() from another thread: the exchange is aborted and the server is asked to stop the query.
+ */
+public class StatementCancelTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n";
+
+    // Holds queries until released; records the query ID of each query and of each cancel request
+    static class SlowServer implements AutoCloseable {
+        final ObjectMapper mapper = new ObjectMapper();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final CompletableFuture<String> queryId = new CompletableFuture<>();
+        final CompletableFuture<String> cancelled = new CompletableFuture<>();
+        final CompletableFuture<String> timeoutHint = new CompletableFuture<>();
+        final boolean streamFirstRow;
+        final StubHttpServer server;
+
+        SlowServer(boolean streamFirstRow) throws IOException {
+            this.streamFirstRow = streamFirstRow;
+            server = new StubHttpServer(exchange -> {
+                JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+                if (request.has("cancel")) {
+                    cancelled.complete(request.get("cancel").asText());
+                    StubHttpServer.respond(exchange, 200, "{}");
+                    return;
+                }
+                queryId.complete(exchange.getRequestHeaders().getFirst("X-Query-Id"));
+                timeoutHint.complete(exchange.getRequestHeaders().getFirst("X-Query-Timeout-Ms"));
+                try {
+                    if (streamFirstRow) {
+                        exchange.sendResponseHeaders(200, 0);
+                        OutputStream os = exchange.getResponseBody();
+                        os.write((META + "{\"id\":1}\n").getBytes(StandardCharsets.UTF_8));
+                        os.flush();
+                        started.countDown();
+                        released.await(10, TimeUnit.SECONDS);
+                        os.close();
+                    } else {
+                        started.countDown();
+                        released.await(10, TimeUnit.SECONDS);
+                        StubHttpServer.respond(exchange, 200, META + "{\"id\":1}\n");
+                    }
+                } catch (IOException | InterruptedException expected) {
+                    // client aborted the exchange
+                }
+            });
+        }
+
+        Connection connect(String schema) throws SQLException {
+            Properties props = new Properties();
+            props.setProperty("schema", schema);
+            props.setProperty("poolSize", "2");
+            return DriverManager.getConnection(server.jdbcUrl(), props);
+        }
+
+        @Override
+        public void close() {
+            released.countDown();
+            server.close();
+        }
+    }
+
+    @Test
+    void testCancelAbortsAPendingQuery() throws Exception {
+        try (SlowServer server = new SlowServer(false);
+             Connection conn = server.connect("cancelstub");
+             Statement stmt = conn.createStatement()) {
+            HttpJdbcConnection httpConn = conn.unwrap(HttpJdbcConnection.class);
+            Thread.ofVirtual().start(() -> {
+                try {
+                    server.started.await();
+                    stmt.cancel();
+                } catch (InterruptedException | SQLException ignored) {
+                }
+            });
+            SQLException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(SQLException.class, () -> stmt.executeQuery("SELECT slow()")));
+            assertEquals(QueryControl.CANCELLED, e.getSQLState());
+
+            // The server was asked to stop the same query
+            String queryId = server.queryId.get(5, TimeUnit.SECONDS);
+            assertNotNull(queryId);
+            assertEquals(queryId, server.cancelled.get(5, TimeUnit.SECONDS));
+            // Both the query and the cancel request give their pooled connections back
+            for (int i = 0; i < 100 && httpConn.getTransportStats().getInFlight() > 0; i++) Thread.sleep(10);
+            assertEquals(0, httpConn.getTransportStats().getInFlight());
+        }
+    }
+
+    @Test
+    void testCancelReleasesAPartlyReadResultSet() throws Exception {
+        try (SlowServer server = new SlowServer(true);
+             Connection conn = server.connect("flock");
+             Statement stmt = conn.createStatement()) {
+            HttpJdbcConnection httpConn = conn.unwrap(HttpJdbcConnection.class);
+            ResultSet rs = stmt.executeQuery("SELECT id FROM t");
+            assertTrue(rs.next());
+            assertEquals(1, httpConn.getTransportStats().getInFlight());
+            stmt.cancel();
+            assertEquals(0, httpConn.getTransportStats().getInFlight());
+            SQLException e = assertThrows(SQLException.class, rs::next);
+            assertEquals(QueryControl.CANCELLED, e.getSQLState());
+            rs.close();
+            // Without a query ID header, nothing identifies the query to the server
+            assertNull(server.queryId.get(5, TimeUnit.SECONDS));
+            assertFalse(server.cancelled.isDone());
+        }
+    }
+
+    @Test
+    void testCancelWithoutARunningQueryIsANoOp() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1}\n{\"id\":2}\n");
+        });
+             Connection conn = DriverManager.getConnection(server.jdbcUrl());
+             Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.cancel();
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                // A buffered result has completed; cancelling afterwards leaves it readable
+                stmt.cancel();
+                assertTrue(rs.last());
+                assertEquals(2, rs.getInt(1));
+            }
+            stmt.close();
+            assertThrows(SQLException.class, stmt::cancel);
+        }
+    }
+
+    private static void cancelOnceStarted(CountDownLatch started, Statement stmt) {
+        Thread.ofVirtual().start(() -> {
+            try {
+                started.await();
+                stmt.cancel();
+            } catch (InterruptedException | SQLException ignored) {
+            }
+        });
+    }
+
+    @Test
+    void testCancelAbortsABatch() throws Exception {
+        // One request per statement, and one request through the batch template
+        for (String schema : new String[] {"cancelstub", "batchstub"}) {
+            try (SlowServer server = new SlowServer(false);
+                 Connection conn = server.connect(schema);
+                 Statement stmt = conn.createStatement()) {
+                stmt.addBatch("INSERT INTO t VALUES (1)");
+                stmt.addBatch("INSERT INTO t VALUES (2)");
+                cancelOnceStarted(server.started, stmt);
+                BatchUpdateException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertThrows(BatchUpdateException.class, stmt::executeBatch));
+                assertEquals(QueryControl.CANCELLED, e.getSQLState(), schema);
+                assertEquals(0, e.getUpdateCounts().length);
+            }
+        }
+    }
+
+    @Test
+    void testQueryTimeoutAppliesToABatch() throws Exception {
+        try (SlowServer server = new SlowServer(false);
+             Connection conn = server.connect("limitstub");
+             Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(1);
+            stmt.addBatch("INSERT INTO t VALUES (1)");
+            BatchUpdateException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(BatchUpdateException.class, stmt::executeBatch));
+            assertEquals(QueryControl.TIMED_OUT, e.getSQLState());
+            // The server was told the timeout as well
+            assertEquals("1000", server.timeoutHint.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testCancelAbortsAPendingPage() throws Exception {
+        CountDownLatch pageRequested = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        ObjectMapper mapper = new ObjectMapper();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+            if (request.has("cursor")) {
+                pageRequested.countDown();
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            StubHttpServer.respond(exchange, 200, "{\"meta\":[{\"name\":\"n\",\"type\":\"INTEGER\"}],\"data\":[[0]],\"next\":\"1\"}");
+        })) {
+            Properties props = new Properties();
+            props.setProperty("schema", "pagingstub");
+            try (Connection conn = DriverManager.getConnection(server.jdbcUrl(), props);
+                 Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(1);
+                ResultSet rs = stmt.executeQuery("SELECT n FROM t");
+                assertTrue(rs.next());
+                cancelOnceStarted(pageRequested, stmt);
+                SQLException e = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(SQLException.class, rs::next));
+                assertEquals(QueryControl.CANCELLED, e.getSQLState());
+                rs.close();
+            } finally {
+                released.countDown();
+            }
+        }
+    }
+}
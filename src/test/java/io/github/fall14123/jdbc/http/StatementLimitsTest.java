@@ -0,0 +1,199 @@
+package io.github.fall14123.jdbc.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statement maxRows and queryTimeout: the stream is abandoned at the limit, a late query is aborted.
+ */
+public class StatementLimitsTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n";
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static Connection getConnection(StubHttpServer server, String schema, boolean pipelined) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", schema);
+        props.setProperty("pipelinedDecode", String.valueOf(pipelined));
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    private static StubHttpServer rowServer(int rows) throws IOException {
+        return new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(META.getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < rows; i++) os.write(("{\"id\":" + i + "}\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException expected) {
+                // client aborted the stream
+            }
+        });
+    }
+
+    @Test
+    void testMaxRowsStopsTheStream() throws Exception {
+        for (boolean pipelined : new boolean[] {false, true}) {
+            try (StubHttpServer server = rowServer(1_000_000);
+                 Connection conn = getConnection(server, "flock", pipelined);
+                 Statement stmt = conn.createStatement()) {
+                HttpJdbcConnection httpConn = conn.unwrap(HttpJdbcConnection.class);
+                stmt.setMaxRows(3);
+                assertEquals(3, stmt.getMaxRows());
+                ResultSet rs = stmt.executeQuery("SELECT id FROM big");
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                }
+                assertFalse(rs.next());
+                // The response was released at the limit, before the result set is closed
+                assertEquals(0, httpConn.getTransportStats().getInFlight());
+                rs.close();
+            }
+        }
+    }
+
+    @Test
+    void testMaxRowsTruncatesBufferedAndCachedResults() throws Exception {
+        try (StubHttpServer server = rowServer(10)) {
+            Properties props = new Properties();
+            props.setProperty("schema", "flock");
+            props.setProperty("resultCacheSize", "16");
+            try (Connection conn = DriverManager.getConnection(server.jdbcUrl(), props);
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setMaxRows(4);
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                    assertTrue(rs.last());
+                    assertEquals(4, rs.getRow());
+                }
+                // The cached result is shared and keeps all of its rows
+                stmt.setMaxRows(0);
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                    assertTrue(rs.last());
+                    assertEquals(10, rs.getRow());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMaxRowsIsPushedDownAsLimit() throws Exception {
+        List<String> statements = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            statements.add(mapper.readTree(StubHttpServer.readBody(exchange)).get("sql").asText());
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n");
+        });
+             Connection conn = getConnection(server, "limitstub", false);
+             PreparedStatement ps = conn.prepareStatement("SELECT id FROM t WHERE id > ? -- trailing comment\n;")) {
+            ps.setMaxRows(2);
+            ps.setInt(1, 0);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertTrue(rs.next());
+                assertFalse(rs.next());
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setMaxRows(5);
+                stmt.executeQuery("SHOW TABLES").close();
+            }
+            assertEquals(List.of("SELECT * FROM (SELECT id FROM t WHERE id > ? -- trailing comment\n) LIMIT 2", "SHOW TABLES"), statements);
+        }
+    }
+
+    @Test
+    void testLimitSuffixStartsOnItsOwnLine() {
+        // Even when the template has no newline before it
+        assertEquals("SELECT * FROM (SELECT id FROM t -- why\n) LIMIT 2",
+            ParsedSql.parse("SELECT id FROM t -- why").wrap("SELECT * FROM (", ") LIMIT 2").sql());
+        assertEquals("SELECT * FROM (SELECT id FROM t\n) LIMIT 2",
+            ParsedSql.parse("SELECT id FROM t;").wrap("SELECT * FROM (", "\n) LIMIT 2").sql());
+    }
+
+    @Test
+    void testTimeoutHintIsSent() throws Exception {
+        List<String> hints = new CopyOnWriteArrayList<>();
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            JsonNode request = mapper.readTree(StubHttpServer.readBody(exchange));
+            hints.add(exchange.getRequestHeaders().getFirst("X-Query-Timeout-Ms") + "/" + request.get("timeoutMs").asText());
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1}\n");
+        });
+             Connection conn = getConnection(server, "limitstub", false);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT 1").close();
+            stmt.setQueryTimeout(7);
+            assertEquals(7, stmt.getQueryTimeout());
+            stmt.executeQuery("SELECT 1").close();
+            assertEquals(List.of("null/0", "7000/7000"), hints);
+        }
+    }
+
+    @Test
+    void testQueryTimeoutAbortsTheRequest() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1}\n");
+        });
+             Connection conn = getConnection(server, "flock", false);
+             Statement stmt = conn.createStatement()) {
+            HttpJdbcConnection httpConn = conn.unwrap(HttpJdbcConnection.class);
+            stmt.setQueryTimeout(1);
+            long start = System.nanoTime();
+            SQLException e = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(SQLTimeoutException.class, () -> stmt.executeQuery("SELECT slow()")));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+            assertEquals(QueryControl.TIMED_OUT, e.getSQLState());
+            assertEquals(0, httpConn.getTransportStats().getInFlight());
+            released.countDown();
+
+            // The statement is usable again, and the expired deadline does not touch the next query
+            stmt.setQueryTimeout(0);
+            try (ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testQueryTimeoutAbortsAStalledStream() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write((META + "{\"id\":1}\n").getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                released.await(10, TimeUnit.SECONDS);
+            } catch (IOException | InterruptedException expected) {
+                // client aborted the stream
+            }
+        });
+             Connection conn = getConnection(server, "flock", false);
+             Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(1);
+            try (ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+                assertTrue(rs.next());
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(SQLTimeoutException.class, rs::next));
+            } finally {
+                released.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streaming NDJSON result sets against an in-process stub server.
+ */
+public class StreamingResultSetTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"},{\"name\":\"name\",\"type\":\"VARCHAR\"}]}}\n";
+
+    private Connection getConnection(StubHttpServer server) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("schema", "flock");
+        return DriverManager.getConnection(server.jdbcUrl(), props);
+    }
+
+    private static void writeLine(OutputStream os, String line) throws IOException {
+        os.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    @Test
+    void testFirstRowArrivesBeforeResponseCompletes() throws Exception {
+        CountDownLatch firstRowRead = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                writeLine(os, META);
+                writeLine(os, "{\"id\":1,\"name\":\"a\"}");
+                // Hold back the rest until the client has decoded the first row
+                firstRowRead.await(10, TimeUnit.SECONDS);
+                writeLine(os, "{\"id\":2,\"name\":\"b\"}");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                try (Connection conn = getConnection(server);
+                     Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                    assertEquals(ResultSet.TYPE_FORWARD_ONLY, rs.getType());
+                    assertTrue(rs.next());
+                    assertEquals(1, rs.getInt("id"));
+                    firstRowRead.countDown();
+                    assertTrue(rs.next());
+                    assertEquals("b", rs.getString(2));
+                    assertFalse(rs.next());
+                }
+            });
+        }
+    }
+
+    @Test
+    void testEarlyCloseReleasesConnection() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                writeLine(os, META);
+                for (int i = 0; i < 100_000; i++) writeLine(os, "{\"id\":" + i + ",\"name\":\"row\"}");
+            } catch (IOException expected) {
+                // client aborted the stream
+            }
+        })) {
+            try (Connection conn = getConnection(server)) {
+                HttpJdbcConnection httpConn = (HttpJdbcConnection) conn;
+                try (Statement stmt = conn.createStatement()) {
+                    ResultSet rs = stmt.executeQuery("SELECT id, name FROM big");
+                    assertTrue(rs.next());
+                    assertEquals(1, httpConn.getTransportStats().getInFlight());
+                    rs.close();
+                    assertEquals(0, httpConn.getTransportStats().getInFlight());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testScrollableResultSetIsBuffered() throws Exception {
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            StubHttpServer.respond(exchange, 200, META + "{\"id\":1,\"name\":\"a\"}\n{\"id\":2,\"name\":\"b\"}\n");
+        })) {
+            try (Connection conn = getConnection(server);
+                 Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+                 ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                assertTrue(rs.last());
+                assertEquals(2, rs.getInt("id"));
+                assertTrue(rs.first());
+                assertEquals("a", rs.getString("name"));
+            }
+        }
+    }
+
+    private static boolean timedOut(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException) return true;
+        }
+        return false;
+    }
+
+    // Sends the first row, then nothing until released
+    private static StubHttpServer stalling(CountDownLatch released) throws IOException {
+        return new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                writeLine(os, META);
+                writeLine(os, "{\"id\":1,\"name\":\"a\"}");
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private static String chain(Throwable e) {
+        StringBuilder out = new StringBuilder();
+        for (Throwable t = e; t != null; t = t.getCause()) out.append(t).append(" <- ");
+        return out.toString();
+    }
+
+    @Test
+    void testStalledBodyTimesOut() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        Properties props = new Properties();
+        props.setProperty("schema", "flock");
+        props.setProperty("readTimeout", "300");
+        try (StubHttpServer streamed = stalling(released); StubHttpServer buffered = stalling(released);
+             Connection conn = DriverManager.getConnection(streamed.jdbcUrl(), props);
+             Connection async = DriverManager.getConnection(buffered.jdbcUrl(), props)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT id, name FROM t")) {
+                    assertTrue(rs.next());
+                    // Time between reads is not a stalled read
+                    Thread.sleep(400);
+                    SQLException e = assertThrows(SQLException.class, rs::next);
+                    assertTrue(timedOut(e), chain(e));
+                }
+                ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> async.unwrap(HttpJdbcAsyncConnection.class).executeQueryAsync("SELECT id, name FROM t").get());
+                assertTrue(timedOut(e), chain(e));
+            });
+        } finally {
+            released.countDown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.fall14123.jdbc.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal in-process HTTP backend for tests and benchmarks that must not depend on a running server.
+ */
+public class StubHttpServer implements AutoCloseable {
+    private final HttpServer server;
+
+    public StubHttpServer(HttpHandler handler) throws IOException {
+        this(handler, Executors.newCachedThreadPool(), 0);
+    }
+
+    public StubHttpServer(HttpHandler handler, Executor executor, int backlog) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), backlog);
+        server.createContext("/", handler);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String jdbcUrl() {
+        return "jdbc:http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public static String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
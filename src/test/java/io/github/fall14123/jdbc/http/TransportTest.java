@@ -0,0 +1,184 @@
+package io.github.fall14123.jdbc.http;
+
+import org.junit.jupiter.api.Test;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The HTTP transports: poolSize bounding the exchanges per endpoint, their statistics, the
+ * HttpURLConnection fallback and the protocol setting.
+ */
+public class TransportTest {
+    private static final String META = "{\"_meta\":{\"columns\":[{\"name\":\"id\",\"type\":\"INTEGER\"}]}}\n";
+    private static final String RESULT = META + "{\"id\":1}\n";
+
+    // Answers after delayMs, recording how many exchanges it was handling at once
+    static class CountingServer implements AutoCloseable {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final List<String> connectionHeaders = new ArrayList<>();
+        final StubHttpServer server;
+
+        CountingServer(long delayMs) throws Exception {
+            server = new StubHttpServer(exchange -> {
+                StubHttpServer.readBody(exchange);
+                requests.incrementAndGet();
+                synchronized (connectionHeaders) {
+                    connectionHeaders.add(exchange.getRequestHeaders().getFirst("Connection"));
+                }
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ignored) {
+                } finally {
+                    active.decrementAndGet();
+                }
+                StubHttpServer.respond(exchange, 200, RESULT);
+            });
+        }
+
+        @Override
+        public void close() {
+            server.close();
+        }
+    }
+
+    private static Connection connect(String url, String... settings) throws SQLException {
+        Properties props = new Properties();
+        for (int i = 0; i < settings.length; i += 2) props.setProperty(settings[i], settings[i + 1]);
+        return DriverManager.getConnection(url, props);
+    }
+
+    private static int query(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT id FROM t")) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testPoolSizeBoundsConcurrentExchanges() throws Exception {
+        try (CountingServer server = new CountingServer(50)) {
+            int threads = 6;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Connection> connections = new ArrayList<>();
+            try {
+                for (int i = 0; i < threads; i++) connections.add(connect(server.server.jdbcUrl(), "poolSize", "2", "connectTimeout", "10000"));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> results = new ArrayList<>();
+                for (Connection conn : connections) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return query(conn);
+                    }));
+                }
+                start.countDown();
+                for (Future<Integer> result : results) assertEquals(1, result.get(30, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+                for (Connection conn : connections) conn.close();
+            }
+            assertEquals(threads, server.requests.get());
+            assertTrue(server.peak.get() <= 2, "peak " + server.peak.get());
+
+            // Every connection to the endpoint shares the transport, and so its statistics
+            TransportStats stats = connections.get(0).unwrap(HttpJdbcConnection.class).getTransportStats();
+            assertEquals(threads, stats.getRequests());
+            assertEquals(0, stats.getFailures());
+            assertEquals(0, stats.getInFlight());
+            assertTrue(stats.getPeakInFlight() >= 1 && stats.getPeakInFlight() <= 2, stats.toString());
+            assertTrue(stats.getBytesSent() > 0);
+            assertEquals((long) threads * RESULT.length(), stats.getBytesReceived());
+        }
+    }
+
+    @Test
+    void testExhaustedPoolFailsWithPoolTimeout() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        try (StubHttpServer server = new StubHttpServer(exchange -> {
+            StubHttpServer.readBody(exchange);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(RESULT.getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+             Connection conn = connect(server.jdbcUrl(), "poolSize", "1", "connectTimeout", "200");
+             Statement holder = conn.createStatement()) {
+            TransportStats stats = conn.unwrap(HttpJdbcConnection.class).getTransportStats();
+            // A streamed result holds its pooled connection until it is closed
+            ResultSet held = holder.executeQuery("SELECT id FROM t");
+            assertTrue(held.next());
+            assertEquals(1, stats.getInFlight());
+
+            SQLException e = assertThrows(SQLException.class, () -> query(conn));
+            assertInstanceOf(PoolTimeoutException.class, e.getCause());
+            assertEquals(1, stats.getRequests());
+
+            released.countDown();
+            held.close();
+            assertEquals(0, stats.getInFlight());
+            assertEquals(1, query(conn));
+            assertEquals(2, stats.getRequests());
+        } finally {
+            released.countDown();
+        }
+    }
+
+    @Test
+    void testUrlConnectionFallback() throws Exception {
+        try (CountingServer server = new CountingServer(0)) {
+            try (Connection conn = connect(server.server.jdbcUrl(), "transport", "urlconnection")) {
+                HttpJdbcConnection http = conn.unwrap(HttpJdbcConnection.class);
+                assertInstanceOf(UrlConnectionTransport.class, http.getEndpointGroup().get(0).transport());
+                assertEquals(1, query(conn));
+                assertEquals(1, http.getTransportStats().getRequests());
+            }
+            // java.net.http cannot send "Connection: close", so keepAlive=false falls back as well
+            try (Connection conn = connect(server.server.jdbcUrl(), "keepAlive", "false")) {
+                assertInstanceOf(UrlConnectionTransport.class, conn.unwrap(HttpJdbcConnection.class).getEndpointGroup().get(0).transport());
+                assertEquals(1, query(conn));
+            }
+            try (Connection conn = connect(server.server.jdbcUrl())) {
+                assertInstanceOf(JdkHttpTransport.class, conn.unwrap(HttpJdbcConnection.class).getEndpointGroup().get(0).transport());
+            }
+            synchronized (server.connectionHeaders) {
+                assertEquals(List.of("keep-alive", "close"), server.connectionHeaders);
+            }
+        }
+    }
+
+    @Test
+    void testH2cUsesTheJdkTransport() throws Exception {
+        try (CountingServer server = new CountingServer(0);
+             // HTTP/2 stays on java.net.http even with keepAlive=false
+             Connection conn = connect(server.server.jdbcUrl(), "protocol", "h2c", "keepAlive", "false")) {
+            assertInstanceOf(JdkHttpTransport.class, conn.unwrap(HttpJdbcConnection.class).getEndpointGroup().get(0).transport());
+            // The stub only speaks HTTP/1.1: the upgrade is declined and the query runs all the same
+            assertEquals(1, query(conn));
+        }
+    }
+
+    @Test
+    void testInvalidProtocolsAreRejected() {
+        SQLException cleartext = assertThrows(SQLException.class, () -> connect("jdbc:http://127.0.0.1:1/", "protocol", "h2"));
+        assertTrue(cleartext.getCause().getMessage().contains("requires a jdbc:https:// URL"), cleartext.getCause().getMessage());
+        SQLException unknown = assertThrows(SQLException.class, () -> connect("jdbc:http://127.0.0.1:1/", "protocol", "http2"));
+        assertTrue(unknown.getCause().getMessage().startsWith("Unknown protocol: http2"), unknown.getCause().getMessage());
+    }
+}